@@ -2,6 +2,9 @@ package com.ajjpj.asqlmapper;
 
 
 import java.sql.Connection;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Supplier;
 
 import com.ajjpj.acollections.immutable.AVector;
@@ -10,6 +13,7 @@ import com.ajjpj.asqlmapper.core.PrimitiveTypeHandler;
 import com.ajjpj.asqlmapper.core.SqlEngine;
 import com.ajjpj.asqlmapper.core.impl.Constants;
 import com.ajjpj.asqlmapper.core.listener.LoggingListener;
+import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 import com.ajjpj.asqlmapper.javabeans.BeanMetaDataRegistry;
 import com.ajjpj.asqlmapper.javabeans.BeanMetaDataRegistryImpl;
 import com.ajjpj.asqlmapper.javabeans.columnnames.ColumnNameExtractor;
@@ -20,12 +24,15 @@ import com.ajjpj.asqlmapper.javabeans.extractors.JavaBeansMetaDataExtractor;
 import com.ajjpj.asqlmapper.javabeans.extractors.LombokWithBuilderMetaDataExtractor;
 import com.ajjpj.asqlmapper.mapper.DatabaseDialect;
 import com.ajjpj.asqlmapper.mapper.SqlMapper;
+import com.ajjpj.asqlmapper.mapper.beans.BeanMappingRegistry;
 import com.ajjpj.asqlmapper.mapper.beans.BeanMappingRegistryImpl;
+import com.ajjpj.asqlmapper.mapper.beans.EntityCache;
 import com.ajjpj.asqlmapper.mapper.beans.primarykey.GuessingPkStrategyDecider;
 import com.ajjpj.asqlmapper.mapper.beans.primarykey.PkStrategyDecider;
 import com.ajjpj.asqlmapper.mapper.beans.relations.*;
 import com.ajjpj.asqlmapper.mapper.beans.tablename.DefaultTableNameExtractor;
 import com.ajjpj.asqlmapper.mapper.beans.tablename.TableNameExtractor;
+import com.ajjpj.asqlmapper.mapper.injectedproperties.RelationFetchMode;
 import com.ajjpj.asqlmapper.mapper.schema.SchemaRegistry;
 
 /**
@@ -57,6 +64,7 @@ public class SqlMapperBuilder {
     private BeanMetaDataRegistry beanMetaDataRegistry = new BeanMetaDataRegistryImpl(new JavaBeansMetaDataExtractor(columnNameExtractor));
 
     private AVector<PrimitiveTypeHandler> primitiveTypeHandlers = AVector.empty();
+    private AVector<SqlEngineEventListener> listeners = AVector.empty();
 
     private OneToManyResolver oneToManyResolver = new DefaultOneToManyResolver();
     private ManyToManyResolver manyToManyResolver = new DefaultManyToManyResolver();
@@ -64,8 +72,13 @@ public class SqlMapperBuilder {
 
     private TableNameExtractor tableNameExtractor = new DefaultTableNameExtractor();
     private PkStrategyDecider pkStrategyDecider = new GuessingPkStrategyDecider();
+    private RelationFetchMode relationFetchMode = RelationFetchMode.SUBQUERY;
 
     private int defaultFetchSize = Constants.DEFAULT_FETCH_SIZE;
+    private int statementCacheSize = 0;
+    private long queryCacheMaxRows = 0;
+    private Duration queryCacheTtl = Duration.ZERO;
+    private final Map<Class<?>, EntityCache> entityCaches = new LinkedHashMap<>();
 
     public SqlMapperBuilder withDefaultPkName(String defaultPkName) {
         this.defaultPkName = AOption.of(defaultPkName);
@@ -77,6 +90,14 @@ public class SqlMapperBuilder {
         return this;
     }
 
+    /**
+     * @see SqlEngine#withListener(SqlEngineEventListener)
+     */
+    public SqlMapperBuilder withListener(SqlEngineEventListener listener) {
+        this.listeners = listeners.append(listener);
+        return this;
+    }
+
     public SqlMapperBuilder withDefaultConnectionSupplier(Supplier<Connection> defaultConnectionSupplier) {
         this.defaultConnectionSupplier = AOption.some(defaultConnectionSupplier);
         return this;
@@ -135,11 +156,41 @@ public class SqlMapperBuilder {
         return this;
     }
 
+    public SqlMapperBuilder withRelationFetchMode(RelationFetchMode relationFetchMode) {
+        this.relationFetchMode = relationFetchMode;
+        return this;
+    }
+
     public SqlMapperBuilder withDefaultFetchSize(int defaultFetchSize) {
         this.defaultFetchSize = defaultFetchSize;
         return this;
     }
 
+    /**
+     * @see SqlEngine#withStatementCache(int)
+     */
+    public SqlMapperBuilder withStatementCache(int maxPerConnection) {
+        this.statementCacheSize = maxPerConnection;
+        return this;
+    }
+
+    /**
+     * @see SqlEngine#withQueryCache(long, Duration)
+     */
+    public SqlMapperBuilder withQueryCache(long maxRows, Duration ttl) {
+        this.queryCacheMaxRows = maxRows;
+        this.queryCacheTtl = ttl;
+        return this;
+    }
+
+    /**
+     * @see BeanMappingRegistry#registerEntityCache(Class, EntityCache)
+     */
+    public SqlMapperBuilder withEntityCache(Class<?> beanType, EntityCache entityCache) {
+        this.entityCaches.put(beanType, entityCache);
+        return this;
+    }
+
     private SqlEngine buildEngine() {
         SqlEngine result = SqlEngine.create();
 
@@ -147,6 +198,8 @@ public class SqlMapperBuilder {
             result = result.withDefaultPkName(defaultPkName.get());
         if(withLogging)
             result = result.withListener(LoggingListener.createWithStatistics(1000));
+        for(SqlEngineEventListener l: listeners)
+            result = result.withListener(l);
         if(defaultConnectionSupplier.isPresent())
             result = result.withDefaultConnectionSupplier(defaultConnectionSupplier.get());
 
@@ -154,20 +207,25 @@ public class SqlMapperBuilder {
             result = result.withPrimitiveHandler(h);
 
         result = result.withDefaultFetchSize(defaultFetchSize);
+        if(statementCacheSize > 0)
+            result = result.withStatementCache(statementCacheSize);
+        if(queryCacheMaxRows > 0)
+            result = result.withQueryCache(queryCacheMaxRows, queryCacheTtl);
 
         return result;
     }
 
     public SqlMapper build(DatabaseDialect databaseDialect) {
         final SchemaRegistry schemaRegistry = new SchemaRegistry(databaseDialect);
-        return new SqlMapper(buildEngine(), new BeanMappingRegistryImpl(
+        final BeanMappingRegistry beanMappingRegistry = new BeanMappingRegistryImpl(
                 schemaRegistry,
                 tableNameExtractor,
                 pkStrategyDecider,
                 beanMetaDataRegistry,
                 oneToManyResolver,
                 manyToManyResolver,
-                toOneResolver),
-                schemaRegistry, tableNameExtractor);
+                toOneResolver);
+        entityCaches.forEach(beanMappingRegistry::registerEntityCache);
+        return new SqlMapper(buildEngine(), beanMappingRegistry, schemaRegistry, tableNameExtractor, relationFetchMode);
     }
 }
@@ -12,7 +12,9 @@ import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.acollections.util.AUnchecker;
 import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
+import com.ajjpj.asqlmapper.core.impl.QueryCache;
 import com.ajjpj.asqlmapper.core.impl.SqlHelper;
+import com.ajjpj.asqlmapper.core.impl.StatementCache;
 import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 
 class ABatchUpdate {
@@ -21,18 +23,22 @@ class ABatchUpdate {
     private final PrimitiveTypeRegistry primTypes;
     private final AVector<SqlEngineEventListener> listeners;
     private final AOption<Supplier<Connection>> defaultConnectionSupplier;
+    private final StatementCache statementCache;
+    private final QueryCache queryCache;
 
     public ABatchUpdate(String sql, List<List<?>> params, PrimitiveTypeRegistry primTypes, AVector<SqlEngineEventListener> listeners,
-                        AOption<Supplier<Connection>> defaultConnectionSupplier) {
+                        AOption<Supplier<Connection>> defaultConnectionSupplier, StatementCache statementCache, QueryCache queryCache) {
         this.sql = sql;
         this.params = params;
         this.primTypes = primTypes;
         this.listeners = listeners;
         this.defaultConnectionSupplier = defaultConnectionSupplier;
+        this.statementCache = statementCache;
+        this.queryCache = queryCache;
     }
     public ABatchUpdate(List<SqlSnippet> items, PrimitiveTypeRegistry primTypes, AVector<SqlEngineEventListener> listeners,
-                        AOption<Supplier<Connection>> defaultConnectionSupplier) {
-        this(sql(items), params(items), primTypes, listeners, defaultConnectionSupplier);
+                        AOption<Supplier<Connection>> defaultConnectionSupplier, StatementCache statementCache, QueryCache queryCache) {
+        this(sql(items), params(items), primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache);
     }
 
     private static String sql(List<SqlSnippet> items) {
@@ -67,10 +73,11 @@ class ABatchUpdate {
     private <T> T doExecute(Connection conn, PsExecutor<T> executor) {
         listeners.forEach(l -> l.onBeforeBatchUpdate(sql, params.size()));
         try {
-            final PreparedStatement ps = conn.prepareStatement(sql);
+            final PreparedStatement ps = statementCache.prepare(conn, sql, listeners);
             try {
+                final SqlHelper.ParameterBinder binder = new SqlHelper.ParameterBinder(primTypes);
                 for (List<?> batchItem : params) {
-                    SqlHelper.bindParameters(ps, batchItem, primTypes);
+                    binder.bind(ps, batchItem);
                     ps.addBatch();
                 }
 
@@ -80,7 +87,8 @@ class ABatchUpdate {
                 return result;
             }
             finally {
-                SqlHelper.closeQuietly(ps);
+                statementCache.release(conn, ps);
+                queryCache.invalidateFor(conn, sql);
             }
         }
         catch (Throwable th) {
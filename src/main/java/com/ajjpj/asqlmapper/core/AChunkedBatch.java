@@ -0,0 +1,91 @@
+package com.ajjpj.asqlmapper.core;
+
+import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import com.ajjpj.acollections.util.AUnchecker;
+import com.ajjpj.asqlmapper.core.impl.QueryCache;
+
+/**
+ * Executes a batch from an iterator in chunks of a given size, holding no more than a single chunk in memory.
+ */
+class AChunkedBatch<T> {
+    private final Iterator<T> items;
+    private final int flushSize;
+    private final ChunkBoundary chunkBoundary;
+    private final QueryCache queryCache;
+    private final Function<List<T>, ABatchUpdate> batchFactory;
+
+    AChunkedBatch(Iterator<T> items, int flushSize, ChunkBoundary chunkBoundary, QueryCache queryCache, Function<List<T>, ABatchUpdate> batchFactory) {
+        if (flushSize <= 0) {
+            throw new IllegalArgumentException("flush size must be positive: " + flushSize);
+        }
+        this.items = items;
+        this.flushSize = flushSize;
+        this.chunkBoundary = chunkBoundary;
+        this.queryCache = queryCache;
+        this.batchFactory = batchFactory;
+    }
+
+    BatchSummary execute(Connection conn) {
+        long numItems = 0;
+        long numChunks = 0;
+        long numRowsAffected = 0;
+        long numUnknownResults = 0;
+
+        final List<T> chunk = new ArrayList<>(flushSize);
+        while (items.hasNext()) {
+            chunk.add(items.next());
+            if (chunk.size() < flushSize && items.hasNext()) {
+                continue;
+            }
+
+            for (long count: executeChunk(conn, chunk)) {
+                if (count >= 0) {
+                    numRowsAffected += count;
+                }
+                else if (count == Statement.SUCCESS_NO_INFO) {
+                    numUnknownResults += 1;
+                }
+            }
+            numItems += chunk.size();
+            numChunks += 1;
+            chunk.clear();
+        }
+        return new BatchSummary(numItems, numChunks, numRowsAffected, numUnknownResults);
+    }
+
+    private long[] executeChunk(Connection conn, List<T> chunk) {
+        final ABatchUpdate batch = batchFactory.apply(chunk);
+        switch (chunkBoundary) {
+            case COMMIT: {
+                final long[] result = batch.executeLarge(conn);
+                executeUnchecked(conn::commit);
+                queryCache.transactionEnded(conn);
+                return result;
+            }
+            case SAVEPOINT: {
+                final Savepoint savepoint = executeUnchecked(() -> conn.setSavepoint());
+                try {
+                    final long[] result = batch.executeLarge(conn);
+                    executeUnchecked(() -> conn.releaseSavepoint(savepoint));
+                    return result;
+                }
+                catch (Throwable th) {
+                    executeUnchecked(() -> conn.rollback(savepoint));
+                    AUnchecker.throwUnchecked(th);
+                    return null; // for the compiler
+                }
+            }
+            default:
+                return batch.executeLarge(conn);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ajjpj.asqlmapper.core;
+
+import com.ajjpj.acollections.AList;
+
+/**
+ * A demand driven view of a query's results: each call to {@link #next(int)} advances the underlying ResultSet by (at most) the
+ *  number of rows requested, and the JDBC fetch size follows the demand. This allows passing rows on to a slow consumer (e.g. a
+ *  reactive subscriber honoring {@code request(n)}) without reading ahead more than the consumer asked for.<p>
+ *
+ * Queries with injected properties that are loaded per window of rows (see {@link AQuery#stream(int)}) are the exception: their
+ *  windows have at least the engine's default fetch size regardless of the demand, so that small demands do not cause a detail query
+ *  per row. Rows beyond the demand are kept for subsequent calls.<p>
+ *
+ * A cursor holds an open statement from its first call to {@link #next(int)} until it is exhausted, fails or is closed. Closing is
+ *  idempotent, and code using a cursor <b>must</b> close it if it stops reading before the end of the results.
+ */
+public interface ACursor<T> extends AutoCloseable {
+    /**
+     * Reads up to {@code n} rows. This returns fewer rows only if the query has no more rows, and the cursor closes itself in that case.
+     *
+     * @throws IllegalArgumentException if n is not positive
+     */
+    AList<T> next(int n);
+
+    /**
+     * @return true if all rows were read or the cursor was closed
+     */
+    boolean isExhausted();
+
+    @Override void close();
+}
@@ -13,7 +13,9 @@ import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.acollections.util.AUnchecker;
 import com.ajjpj.asqlmapper.core.common.LiveSqlRow;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
+import com.ajjpj.asqlmapper.core.impl.QueryCache;
 import com.ajjpj.asqlmapper.core.impl.SqlHelper;
+import com.ajjpj.asqlmapper.core.impl.StatementCache;
 import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 
 class AInsertImpl<T> implements AInsert<T> {
@@ -24,9 +26,12 @@ class AInsertImpl<T> implements AInsert<T> {
     private final AVector<String> columnNames;
     private final AVector<SqlEngineEventListener> listeners;
     private final AOption<Supplier<Connection>> defaultConnectionSupplier;
+    private final StatementCache statementCache;
+    private final QueryCache queryCache;
 
     public AInsertImpl (Class<T> pkCls, SqlSnippet sql, PrimitiveTypeRegistry primTypes, RowExtractor rowExtractor,
-                        List<String> columnNames, AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier) {
+                        List<String> columnNames, AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier,
+                        StatementCache statementCache, QueryCache queryCache) {
         this.pkCls = pkCls;
         this.sql = sql;
         this.primTypes = primTypes;
@@ -34,6 +39,8 @@ class AInsertImpl<T> implements AInsert<T> {
         this.columnNames = AVector.from(columnNames);
         this.listeners = listeners;
         this.defaultConnectionSupplier = defaultConnectionSupplier;
+        this.statementCache = statementCache;
+        this.queryCache = queryCache;
     }
 
     @Override public T executeSingle () {
@@ -45,22 +52,25 @@ class AInsertImpl<T> implements AInsert<T> {
     @Override public T executeSingle (Connection conn) {
         listeners.forEach(l -> l.onBeforeInsert(sql, pkCls, columnNames));
         try {
-            final PreparedStatement ps = conn.prepareStatement(sql.getSql(), columnNames.toArray(new String[0]));
+            final PreparedStatement ps = statementCache.prepare(conn, sql.getSql(), columnNames.toArray(new String[0]), listeners);
             try {
                 SqlHelper.bindParameters(ps, sql.getParams(), primTypes);
                 ps.executeUpdate();
-                final ResultSet rs = ps.getGeneratedKeys();
-                if (!rs.next()) throw new IllegalStateException("no result");
-                final SqlRow row = new LiveSqlRow(primTypes, rs);
-                final T result = rowExtractor.fromSql(pkCls, primTypes, row, rowExtractor.mementoPerQuery(pkCls, primTypes, rs, false), false, Collections.emptyMap());
-                if (rs.next()) throw new IllegalStateException("more than one result row");
+                final T result;
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next()) throw new IllegalStateException("no result");
+                    final SqlRow row = new LiveSqlRow(primTypes, rs);
+                    result = rowExtractor.fromSql(pkCls, primTypes, row, rowExtractor.mementoPerQuery(pkCls, primTypes, rs, false), false, Collections.emptyMap());
+                    if (rs.next()) throw new IllegalStateException("more than one result row");
+                }
 
                 listeners.reverseIterator().forEachRemaining(l -> l.onAfterInsert(result));
 
                 return result;
             }
             finally {
-                SqlHelper.closeQuietly(ps);
+                statementCache.release(conn, ps);
+                queryCache.invalidateFor(conn, sql.getSql());
             }
         }
         catch(Throwable th) {
@@ -79,21 +89,23 @@ class AInsertImpl<T> implements AInsert<T> {
     @Override public AList<T> executeMulti (Connection conn) {
         listeners.forEach(l -> l.onBeforeInsert(sql, pkCls, columnNames));
         try {
-            final PreparedStatement ps = conn.prepareStatement(sql.getSql(), columnNames.toArray(new String[0]));
+            final PreparedStatement ps = statementCache.prepare(conn, sql.getSql(), columnNames.toArray(new String[0]), listeners);
             try {
                 SqlHelper.bindParameters(ps, sql.getParams(), primTypes);
                 ps.executeUpdate();
                 final AVector.Builder<T> builder = AVector.builder();
-                final ResultSet rs = ps.getGeneratedKeys();
-                final Object memento = rowExtractor.mementoPerQuery(pkCls, primTypes, rs, false);
-                final SqlRow row = new LiveSqlRow(primTypes, rs);
-                while (rs.next()) builder.add(rowExtractor.fromSql(pkCls, primTypes, row, memento, false, Collections.emptyMap()));
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    final Object memento = rowExtractor.mementoPerQuery(pkCls, primTypes, rs, false);
+                    final SqlRow row = new LiveSqlRow(primTypes, rs);
+                    while (rs.next()) builder.add(rowExtractor.fromSql(pkCls, primTypes, row, memento, false, Collections.emptyMap()));
+                }
                 final AList<T> result = builder.build();
                 listeners.reverseIterator().forEachRemaining(l -> l.onAfterInsert(result));
                 return result;
             }
             finally {
-                SqlHelper.closeQuietly(ps);
+                statementCache.release(conn, ps);
+                queryCache.invalidateFor(conn, sql.getSql());
             }
         }
         catch(Throwable th) {
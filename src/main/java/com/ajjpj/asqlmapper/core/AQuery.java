@@ -1,8 +1,12 @@
 package com.ajjpj.asqlmapper.core;
 
 import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Stream;
 
@@ -25,6 +29,19 @@ public interface AQuery<T> {
      */
     AQuery<T> withInjectedProperty(InjectedProperty injectedProperty);
 
+    /**
+     * Marks this query's results as cacheable in the engine's {@link SqlEngine#withQueryCache(long, java.time.Duration) query cache}, declaring
+     *  the tables the query reads. Writes to any of these tables through the engine invalidate the cached results, so the list of
+     *  tables <em>must</em> be complete, including tables that are only joined or read by injected properties.<p>
+     *
+     * Caching applies to {@link #single()}, {@link #optional()}, {@link #first()} and {@link #list()} (and their variants), while other ways of
+     *  executing the query always go to the database. This is a no-op if the engine has no query cache configured.<p>
+     *
+     * Queries share cached results if they have the same SQL, parameters and row type, and equal injected properties. The mapper's relations
+     *  and fetch graphs are equal if they load the same data, while other injected properties are only equal to themselves.
+     */
+    AQuery<T> cached(String table, String... moreTables);
+
     T single(Connection conn);
     T single();
     AOption<T> optional(Connection conn);
@@ -37,17 +54,74 @@ public interface AQuery<T> {
     <R,A> R collect(Connection conn, Collector<T,A,R> collector);
     <R,A> R collect(Collector<T,A,R> collector);
 
-    //TODO documentation
+    /**
+     * Executes the query asynchronously on a given executor. The connection is obtained from {@code connectionSupplier} on the executor's
+     *  thread and closed when the query is done, so the supplier should typically be a connection pool's {@code getConnection}. The
+     *  connection is used as it is returned, i.e. without starting a transaction.
+     */
+    CompletableFuture<T> singleAsync(Executor executor, Supplier<Connection> connectionSupplier);
+    /**
+     * @see #singleAsync(Executor, Supplier)
+     */
+    CompletableFuture<AList<T>> listAsync(Executor executor, Supplier<Connection> connectionSupplier);
+    /**
+     * @see #singleAsync(Executor, Supplier)
+     */
+    <R,A> CompletableFuture<R> collectAsync(Executor executor, Supplier<Connection> connectionSupplier, Collector<T,A,R> collector);
+
+    /**
+     * Returns a stream over this query's results that reads rows as they are consumed. The stream <b>must</b> be closed if it is not
+     *  read completely.<p>
+     *
+     * Injected properties that {@link InjectedProperty#supportsOwningRows() support it} (like the relations created by
+     *  {@link com.ajjpj.asqlmapper.mapper.SqlMapper}) are loaded per window of rows rather than for the entire result: the stream reads
+     *  as many rows as the fetch size, loads their related rows, emits them and then discards the window. Streaming with relations
+     *  therefore needs memory proportional to the fetch size rather than to the number of rows.
+     */
     Stream<T> stream(Connection conn);
     Stream<T> stream();
     Stream<T> stream(int fetchSize);
     Stream<T> stream(Connection conn, int fetchSize);
 
+    /**
+     * Splits this query into partitions and returns a parallel stream over all of them. Each partition is a separate query
+     *  {@code SELECT * FROM (<this query>) WHERE <partition filter>}, executed on its own connection, so partitions can be read and mapped
+     *  concurrently. The stream splits by partitions, so there should be (at least) as many partitions as there are cores to use.<p>
+     *
+     * Connections are obtained from {@code connectionSupplier} when a partition is started and closed when it is done, so the supplier should
+     *  typically be a connection pool's {@code getConnection}. Each partition sees its own transaction, so rows modified concurrently may be
+     *  seen inconsistently across partitions.<p>
+     *
+     * The stream's encounter order is the order of the partitions, but the order of rows within a partition is undefined because an
+     *  ORDER BY clause inside the partitioning sub-select is not guaranteed to be honored. Code using this method <b>must</b> close the
+     *  returned stream to release the connections of partitions that were not read completely.
+     */
+    Stream<T> parallelStream(Supplier<Connection> connectionSupplier, List<SqlSnippet> partitionFilters);
+
+    /**
+     * A convenience variant of {@link #parallelStream(Supplier, List)} that partitions by ranges of a column's values: n boundaries create
+     *  n+1 partitions {@code col < b0}, {@code b0 <= col < b1}, ..., {@code col >= bn-1}. Rows with null values in the column are not part of
+     *  any partition.
+     */
+    Stream<T> parallelStream(Supplier<Connection> connectionSupplier, String keyColumn, List<?> boundaries);
+
+    /**
+     * Returns a {@link ACursor cursor} over this query's results that reads rows only as they are requested. The query is executed on the
+     *  first call to {@link ACursor#next(int)}.
+     */
+    ACursor<T> cursor(Connection conn);
+    ACursor<T> cursor();
+
     void forEach(Connection conn, Consumer<T> consumer);
     void forEach(Consumer<T> consumer);
     void forEach(int fetchSize, Consumer<T> consumer);
     void forEach(Connection conn, int fetchSize, Consumer<T> consumer);
 
+    /**
+     * Iterates over this query's results, providing access to each bean's row. Unlike {@link #stream(Connection) streams}, this loads
+     *  injected properties for the entire result rather than per window of rows, which makes it suitable for reading detail queries
+     *  with relations of their own.
+     */
     void forEachWithRowAccess(Connection conn, BiConsumer<T, SqlRow> consumer);
     void forEachWithRowAccess(BiConsumer<T, SqlRow> consumer);
     void forEachWithRowAccess(int fetchSize, BiConsumer<T, SqlRow> consumer);
@@ -8,7 +8,9 @@ import java.util.function.Supplier;
 import com.ajjpj.acollections.immutable.AVector;
 import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.acollections.util.AUnchecker;
+import com.ajjpj.asqlmapper.core.impl.QueryCache;
 import com.ajjpj.asqlmapper.core.impl.SqlHelper;
+import com.ajjpj.asqlmapper.core.impl.StatementCache;
 import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 
 class AUpdateImpl implements AUpdate {
@@ -16,12 +18,17 @@ class AUpdateImpl implements AUpdate {
     private final PrimitiveTypeRegistry primTypes;
     private final AVector<SqlEngineEventListener> listeners;
     private final AOption<Supplier<Connection>> defaultConnectionSupplier;
+    private final StatementCache statementCache;
+    private final QueryCache queryCache;
 
-    public AUpdateImpl (SqlSnippet sql, PrimitiveTypeRegistry primTypes, AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier) {
+    public AUpdateImpl (SqlSnippet sql, PrimitiveTypeRegistry primTypes, AVector<SqlEngineEventListener> listeners,
+                        AOption<Supplier<Connection>> defaultConnectionSupplier, StatementCache statementCache, QueryCache queryCache) {
         this.sql = sql;
         this.primTypes = primTypes;
         this.listeners = listeners;
         this.defaultConnectionSupplier = defaultConnectionSupplier;
+        this.statementCache = statementCache;
+        this.queryCache = queryCache;
     }
 
     @Override public int execute () {
@@ -38,7 +45,7 @@ class AUpdateImpl implements AUpdate {
     private <T> T doExecute (Connection conn, PsExecutor<T> executor) {
         listeners.forEach(l -> l.onBeforeUpdate(sql));
         try {
-            final PreparedStatement ps = conn.prepareStatement(sql.getSql());
+            final PreparedStatement ps = statementCache.prepare(conn, sql.getSql(), listeners);
             try {
                 SqlHelper.bindParameters(ps, sql.getParams(), primTypes);
                 final T result = executor.execute(ps);
@@ -47,7 +54,8 @@ class AUpdateImpl implements AUpdate {
                 return result;
             }
             finally {
-                SqlHelper.closeQuietly(ps);
+                statementCache.release(conn, ps);
+                queryCache.invalidateFor(conn, sql.getSql());
             }
         }
         catch(Throwable th) {
@@ -0,0 +1,50 @@
+package com.ajjpj.asqlmapper.core;
+
+/**
+ * Aggregated results of a batch that was executed in chunks.
+ */
+public class BatchSummary {
+    private final long numItems;
+    private final long numChunks;
+    private final long numRowsAffected;
+    private final long numUnknownResults;
+
+    public BatchSummary(long numItems, long numChunks, long numRowsAffected, long numUnknownResults) {
+        this.numItems = numItems;
+        this.numChunks = numChunks;
+        this.numRowsAffected = numRowsAffected;
+        this.numUnknownResults = numUnknownResults;
+    }
+
+    public long numItems() {
+        return numItems;
+    }
+
+    public long numChunks() {
+        return numChunks;
+    }
+
+    /**
+     * @return the sum of the rows affected by all batch items whose row count was reported by the driver
+     */
+    public long numRowsAffected() {
+        return numRowsAffected;
+    }
+
+    /**
+     * @return the number of batch items that were executed successfully, but without the driver reporting the number of affected
+     *         rows (i.e. {@link java.sql.Statement#SUCCESS_NO_INFO})
+     */
+    public long numUnknownResults() {
+        return numUnknownResults;
+    }
+
+    @Override public String toString() {
+        return "BatchSummary{" +
+                "numItems=" + numItems +
+                ", numChunks=" + numChunks +
+                ", numRowsAffected=" + numRowsAffected +
+                ", numUnknownResults=" + numUnknownResults +
+                '}';
+    }
+}
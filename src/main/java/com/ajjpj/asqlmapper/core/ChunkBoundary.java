@@ -0,0 +1,17 @@
+package com.ajjpj.asqlmapper.core;
+
+/**
+ * Determines what happens between the chunks of a batch that is executed in chunks, e.g.
+ *  {@link SqlEngine#executeBatch(java.sql.Connection, String, java.util.stream.Stream, int, ChunkBoundary)}.
+ */
+public enum ChunkBoundary {
+    /** chunks are executed one after the other, and transaction handling is completely up to the caller */
+    NONE,
+    /** the connection is committed after each chunk, so a failure leaves all previous chunks committed */
+    COMMIT,
+    /**
+     * each chunk is executed inside a savepoint, and a failing chunk is rolled back to its savepoint before the exception is propagated.
+     *  This leaves the effects of all previous chunks in the (uncommitted) transaction.
+     */
+    SAVEPOINT
+}
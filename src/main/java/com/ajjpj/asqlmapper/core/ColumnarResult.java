@@ -0,0 +1,389 @@
+package com.ajjpj.asqlmapper.core;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ajjpj.acollections.immutable.AVector;
+
+/**
+ * A query result stored column by column in primitive arrays rather than as one object per row, which is far more compact for large
+ *  results that are read for aggregation or export. Columns are typed based on their JDBC type:
+ *  <ul>
+ *      <li> {@link LongColumn} for BIGINT, and for DECIMAL / NUMERIC with scale 0 and a precision of up to 18 digits
+ *      <li> {@link IntColumn} for INTEGER, SMALLINT and TINYINT
+ *      <li> {@link DoubleColumn} for DOUBLE, FLOAT and REAL, and for all other DECIMAL / NUMERIC columns. <b>This loses precision</b>
+ *           for values that have no exact binary representation, so code that needs exact decimals should use a regular query.
+ *      <li> {@link StringColumn} for character types, storing each distinct value once and an index into the distinct values per row
+ *      <li> {@link InstantColumn} for TIMESTAMP and DATE, storing epoch millis
+ *      <li> {@link ObjectColumn} for all other types, storing the values returned by {@link ResultSet#getObject(int)}
+ *  </ul>
+ *
+ * Every column tracks null values in a bit set, and the primitive accessors return 0 for null values. Values are read from JDBC as they
+ *  are, i.e. without applying the {@link PrimitiveTypeRegistry}'s conversions.
+ */
+public class ColumnarResult {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final AVector<Column> columns;
+    private final Map<String, Column> columnsByName;
+    private final int numRows;
+
+    private ColumnarResult(AVector<Column> columns, int numRows) {
+        this.columns = columns;
+        this.numRows = numRows;
+
+        this.columnsByName = new HashMap<>();
+        for (Column c: columns) {
+            columnsByName.putIfAbsent(c.name().toUpperCase(), c);
+        }
+    }
+
+    static ColumnarResult fromResultSet(ResultSet rs) throws SQLException {
+        final ResultSetMetaData meta = rs.getMetaData();
+        final List<Column> columns = new ArrayList<>(meta.getColumnCount());
+        for (int i=1; i<=meta.getColumnCount(); i++) {
+            columns.add(columnFor(meta, i));
+        }
+
+        int numRows = 0;
+        while (rs.next()) {
+            for (int i=0; i<columns.size(); i++) {
+                columns.get(i).read(rs, i+1, numRows);
+            }
+            numRows += 1;
+        }
+
+        for (Column c: columns) {
+            c.trim(numRows);
+        }
+        return new ColumnarResult(AVector.from(columns), numRows);
+    }
+
+    private static Column columnFor(ResultSetMetaData meta, int idx) throws SQLException {
+        final String name = meta.getColumnLabel(idx);
+        switch (meta.getColumnType(idx)) {
+            case Types.BIGINT:
+                return new LongColumn(name);
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return new IntColumn(name);
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                return new DoubleColumn(name);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                if (meta.getScale(idx) == 0 && meta.getPrecision(idx) > 0 && meta.getPrecision(idx) <= 18) {
+                    return new LongColumn(name);
+                }
+                return new DoubleColumn(name);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return new StringColumn(name);
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+            case Types.DATE:
+                return new InstantColumn(name);
+            default:
+                return new ObjectColumn(name);
+        }
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public AVector<Column> columns() {
+        return columns;
+    }
+
+    public AVector<String> columnNames() {
+        return columns.map(Column::name);
+    }
+
+    /**
+     * @param name the column's name, matched case insensitively
+     * @throws IllegalArgumentException if there is no column with the given name
+     */
+    public Column column(String name) {
+        final Column result = columnsByName.get(name.toUpperCase());
+        if (result == null) {
+            throw new IllegalArgumentException("no column " + name + " - columns are " + columnNames());
+        }
+        return result;
+    }
+
+    public LongColumn longColumn(String name) {
+        return column(name, LongColumn.class);
+    }
+    public IntColumn intColumn(String name) {
+        return column(name, IntColumn.class);
+    }
+    public DoubleColumn doubleColumn(String name) {
+        return column(name, DoubleColumn.class);
+    }
+    public StringColumn stringColumn(String name) {
+        return column(name, StringColumn.class);
+    }
+    public InstantColumn instantColumn(String name) {
+        return column(name, InstantColumn.class);
+    }
+
+    private <C extends Column> C column(String name, Class<C> columnType) {
+        final Column result = column(name);
+        if (!columnType.isInstance(result)) {
+            throw new IllegalArgumentException("column " + name + " is a " + result.getClass().getSimpleName() + ", not a " + columnType.getSimpleName());
+        }
+        return columnType.cast(result);
+    }
+
+    public static abstract class Column {
+        private final String name;
+        private long[] nulls = new long[1];
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean isNull(int row) {
+            final int word = row >>> 6;
+            return word < nulls.length && (nulls[word] & (1L << row)) != 0;
+        }
+
+        /**
+         * @return the value in a given row as an object, i.e. boxed for primitive columns
+         */
+        public abstract Object get(int row);
+
+        abstract void read(ResultSet rs, int columnIndex, int row) throws SQLException;
+
+        /** shrinks the column's storage to the number of rows that were actually read */
+        abstract void trim(int numRows);
+
+        void markNullIf(boolean isNull, int row) {
+            if (isNull) {
+                final int word = row >>> 6;
+                if (word >= nulls.length) {
+                    nulls = Arrays.copyOf(nulls, Math.max(word+1, 2*nulls.length));
+                }
+                nulls[word] |= 1L << row;
+            }
+        }
+
+        static int grownCapacity(int capacity) {
+            return Math.max(INITIAL_CAPACITY, 2*capacity);
+        }
+    }
+
+    public static class LongColumn extends Column {
+        private long[] values = new long[0];
+
+        LongColumn(String name) {
+            super(name);
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+        @Override public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        /**
+         * @return the column's values without copying them, so callers must not modify the array
+         */
+        public long[] values() {
+            return values;
+        }
+
+        @Override void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) values = Arrays.copyOf(values, grownCapacity(values.length));
+            values[row] = rs.getLong(columnIndex);
+            markNullIf(rs.wasNull(), row);
+        }
+        @Override void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+    }
+
+    public static class IntColumn extends Column {
+        private int[] values = new int[0];
+
+        IntColumn(String name) {
+            super(name);
+        }
+
+        public int getInt(int row) {
+            return values[row];
+        }
+        @Override public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        /**
+         * @return the column's values without copying them, so callers must not modify the array
+         */
+        public int[] values() {
+            return values;
+        }
+
+        @Override void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) values = Arrays.copyOf(values, grownCapacity(values.length));
+            values[row] = rs.getInt(columnIndex);
+            markNullIf(rs.wasNull(), row);
+        }
+        @Override void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+        private double[] values = new double[0];
+
+        DoubleColumn(String name) {
+            super(name);
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+        @Override public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        /**
+         * @return the column's values without copying them, so callers must not modify the array
+         */
+        public double[] values() {
+            return values;
+        }
+
+        @Override void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) values = Arrays.copyOf(values, grownCapacity(values.length));
+            values[row] = rs.getDouble(columnIndex);
+            markNullIf(rs.wasNull(), row);
+        }
+        @Override void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+    }
+
+    /**
+     * A dictionary encoded String column: each distinct value is stored once, and rows store the value's index in {@link #dictionary()}.
+     *  Null values have the code -1.
+     */
+    public static class StringColumn extends Column {
+        private int[] codes = new int[0];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+
+        StringColumn(String name) {
+            super(name);
+        }
+
+        public int getCode(int row) {
+            return codes[row];
+        }
+        @Override public String get(int row) {
+            final int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        public List<String> dictionary() {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        /**
+         * @return the codes of the column's rows without copying them, so callers must not modify the array
+         */
+        public int[] codes() {
+            return codes;
+        }
+
+        @Override void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == codes.length) codes = Arrays.copyOf(codes, grownCapacity(codes.length));
+            final String value = rs.getString(columnIndex);
+            markNullIf(value == null, row);
+            codes[row] = value == null ? -1 : codesByValue.computeIfAbsent(value, v -> {
+                dictionary.add(v);
+                return dictionary.size() - 1;
+            });
+        }
+        @Override void trim(int numRows) {
+            codes = Arrays.copyOf(codes, numRows);
+            codesByValue.clear();
+        }
+    }
+
+    public static class InstantColumn extends Column {
+        private long[] epochMillis = new long[0];
+
+        InstantColumn(String name) {
+            super(name);
+        }
+
+        public long getEpochMillis(int row) {
+            return epochMillis[row];
+        }
+        @Override public Instant get(int row) {
+            return isNull(row) ? null : Instant.ofEpochMilli(epochMillis[row]);
+        }
+
+        /**
+         * @return the column's values as epoch millis without copying them, so callers must not modify the array
+         */
+        public long[] epochMillis() {
+            return epochMillis;
+        }
+
+        @Override void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == epochMillis.length) epochMillis = Arrays.copyOf(epochMillis, grownCapacity(epochMillis.length));
+            final Timestamp value = rs.getTimestamp(columnIndex);
+            markNullIf(value == null, row);
+            epochMillis[row] = value == null ? 0 : value.getTime();
+        }
+        @Override void trim(int numRows) {
+            epochMillis = Arrays.copyOf(epochMillis, numRows);
+        }
+    }
+
+    public static class ObjectColumn extends Column {
+        private Object[] values = new Object[0];
+
+        ObjectColumn(String name) {
+            super(name);
+        }
+
+        @Override public Object get(int row) {
+            return values[row];
+        }
+
+        @Override void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) values = Arrays.copyOf(values, grownCapacity(values.length));
+            values[row] = rs.getObject(columnIndex);
+            markNullIf(values[row] == null, row);
+        }
+        @Override void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+    }
+}
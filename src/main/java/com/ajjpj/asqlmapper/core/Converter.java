@@ -0,0 +1,15 @@
+package com.ajjpj.asqlmapper.core;
+
+import java.sql.JDBCType;
+
+/**
+ * A conversion from raw JDBC values (as returned by {@link java.sql.ResultSet#getObject(int) ResultSet.getObject()}) to
+ *  a specific Java type. Converters are obtained from {@link PrimitiveTypeRegistry#converterFor(JDBCType, Class)} which
+ *  resolves all lookups once, so code that reads many values of the same column (typically all rows of a query) can
+ *  hold on to a converter instead of going through the registry for every value.<p>
+ *
+ * Converters handle {@code null} values, returning {@code null} for them.
+ */
+public interface Converter<T> {
+    T fromSql(Object raw);
+}
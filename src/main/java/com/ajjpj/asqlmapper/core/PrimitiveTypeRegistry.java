@@ -2,8 +2,14 @@ package com.ajjpj.asqlmapper.core;
 
 import com.ajjpj.acollections.AMap;
 import com.ajjpj.acollections.immutable.AHashMap;
+import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.core.impl.CanHandleRegistry;
 
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import static com.ajjpj.asqlmapper.core.common.CommonPrimitiveHandlers.*;
@@ -28,7 +34,10 @@ import static com.ajjpj.asqlmapper.core.common.CommonPrimitiveHandlers.*;
  *
  * A pre-configured instance with support for typical primitive types is available using {@link #defaults()}; this is
  *  what you want in the vast majority of cases. For the rare occasions when you want full control however you can
- *  start with {@link #empty()} and build up your registry from there.
+ *  start with {@link #empty()} and build up your registry from there.<p>
+ *
+ * Code that converts many values of the same column should use {@link #converterFor(JDBCType, Class)} to resolve the
+ *  conversion once and then apply the resulting {@link Converter} to each value.
  */
 public class PrimitiveTypeRegistry {
     /**
@@ -59,6 +68,10 @@ public class PrimitiveTypeRegistry {
     private final CanHandleRegistry<PrimitiveTypeHandler> handlers;
     private final AHashMap<Class<?>, Function<Object,Object>> rawTypeMappings;
 
+    // converters are derived from the (immutable) handlers and raw mappings, so they can be cached per instance
+    private final Map<ConverterKey, Converter<?>> converterCache = new ConcurrentHashMap<>();
+    private final Map<JDBCType, Converter<Object>> rawConverterCache = new ConcurrentHashMap<>();
+
     private PrimitiveTypeRegistry (CanHandleRegistry<PrimitiveTypeHandler> handlers, AHashMap<Class<?>, Function<Object, Object>> rawTypeMappings) {
         this.handlers = handlers;
         this.rawTypeMappings = rawTypeMappings;
@@ -110,6 +123,120 @@ public class PrimitiveTypeRegistry {
         return handlers.handlerFor(targetType).orElseThrow(() -> new IllegalArgumentException("no handler for " + targetType)).fromSql(targetType, o);
     }
 
+    /**
+     * Returns the {@link PrimitiveTypeHandler} for a given application type, i.e. the handler that {@link #toSql(Object)}
+     *  and {@link #fromSql(Class, Object)} would use for it. Callers binding many values of the same type can hold on to
+     *  the handler.
+     *
+     * @throws IllegalArgumentException if no matching handler was registered
+     */
+    public PrimitiveTypeHandler handlerFor(Class<?> cls) {
+        return handlers.handlerFor(cls).orElseThrow(() -> new IllegalArgumentException("no handler for " + cls));
+    }
+
+    /**
+     * Resolves the conversion of values from a column of a given JDBC type to a known application type, equivalent to
+     *  {@link #fromSql(Class, Object)} for each value but without any per-value lookups. Converters are cached per
+     *  combination of column type and target type.
+     */
+    public <T> Converter<T> converterFor(JDBCType columnType, Class<T> targetType) {
+        //noinspection unchecked
+        return (Converter<T>) converterCache.computeIfAbsent(new ConverterKey(columnType, targetType), k -> createConverter(columnType, targetType));
+    }
+
+    private <T> Converter<T> createConverter(JDBCType columnType, Class<T> targetType) {
+        final AOption<PrimitiveTypeHandler> optHandler = handlers.handlerFor(targetType);
+        if (optHandler.isEmpty()) {
+            return raw -> {
+                if (raw == null) return null;
+                if (raw.getClass() == targetType) //noinspection unchecked
+                    return (T) raw;
+                throw new IllegalArgumentException("no handler for " + targetType);
+            };
+        }
+
+        final PrimitiveTypeHandler handler = optHandler.get();
+        return raw -> {
+            if (raw == null) return null;
+            if (raw.getClass() == targetType) //noinspection unchecked
+                return (T) raw;
+            return handler.fromSql(targetType, raw);
+        };
+    }
+
+    /**
+     * Resolves the raw mapping for values from a column of a given JDBC type, equivalent to {@link #fromSql(Object)} for
+     *  each value.
+     */
+    public Converter<Object> rawConverterFor(JDBCType columnType) {
+        return rawConverterCache.computeIfAbsent(columnType, this::createRawConverter);
+    }
+
+    private Converter<Object> createRawConverter(JDBCType columnType) {
+        final Class<?> expectedType = defaultJavaType(columnType);
+        final Function<Object,Object> mapping = expectedType != null ? rawTypeMappings.get(expectedType) : null;
+        if (mapping == null) {
+            return raw -> (raw == null || raw.getClass() == expectedType) ? raw : fromSql(raw);
+        }
+        return raw -> {
+            if (raw == null) return null;
+            if (raw.getClass() == expectedType) return mapping.apply(raw);
+            return fromSql(raw);
+        };
+    }
+
+    /**
+     * The Java type that JDBC drivers typically return for columns of a given type. This is just a hint: drivers may
+     *  deviate from it, and converters must check actual values' types.
+     */
+    private static Class<?> defaultJavaType(JDBCType columnType) {
+        switch (columnType) {
+            case CHAR: case VARCHAR: case LONGVARCHAR: case NCHAR: case NVARCHAR: case LONGNVARCHAR:
+                return String.class;
+            case BIT: case BOOLEAN:
+                return Boolean.class;
+            case TINYINT: case SMALLINT: case INTEGER:
+                return Integer.class;
+            case BIGINT:
+                return Long.class;
+            case REAL:
+                return Float.class;
+            case FLOAT: case DOUBLE:
+                return Double.class;
+            case NUMERIC: case DECIMAL:
+                return BigDecimal.class;
+            case DATE:
+                return java.sql.Date.class;
+            case TIME:
+                return java.sql.Time.class;
+            case TIMESTAMP:
+                return java.sql.Timestamp.class;
+            default:
+                return null;
+        }
+    }
+
+    private static class ConverterKey {
+        private final JDBCType columnType;
+        private final Class<?> targetType;
+
+        ConverterKey (JDBCType columnType, Class<?> targetType) {
+            this.columnType = columnType;
+            this.targetType = targetType;
+        }
+
+        @Override public boolean equals (Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final ConverterKey that = (ConverterKey) o;
+            return columnType == that.columnType && Objects.equals(targetType, that.targetType);
+        }
+
+        @Override public int hashCode () {
+            return Objects.hash(columnType, targetType);
+        }
+    }
+
     /**
      * registers a new raw type mapping, returning a modified copy of the registry.
      * @return a modified copy of this registry, leaving the original unmodified.
@@ -4,20 +4,34 @@ import static com.ajjpj.asqlmapper.core.SqlSnippet.concat;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import com.ajjpj.acollections.AList;
 import com.ajjpj.acollections.immutable.AVector;
 import com.ajjpj.acollections.util.AOption;
+import com.ajjpj.acollections.util.AUnchecker;
 import com.ajjpj.asqlmapper.core.common.RawRowExtractor;
 import com.ajjpj.asqlmapper.core.common.ScalarRowExtractor;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
 import com.ajjpj.asqlmapper.core.impl.AQueryImpl;
 import com.ajjpj.asqlmapper.core.impl.CanHandleRegistry;
 import com.ajjpj.asqlmapper.core.impl.Constants;
+import com.ajjpj.asqlmapper.core.impl.QueryCache;
+import com.ajjpj.asqlmapper.core.impl.SqlHelper;
+import com.ajjpj.asqlmapper.core.impl.StatementCache;
 import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 
 /**
@@ -66,6 +80,8 @@ public class SqlEngine {
     private final AVector<SqlEngineEventListener> listeners;
     private final AOption<Supplier<Connection>> defaultConnectionSupplier;
     private final int defaultFetchSize;
+    private final StatementCache statementCache;
+    private final QueryCache queryCache;
 
     /**
      * Creates a SqlEngine initialized with default primitive type handlers. This is completely usable for simple cases, but building instances with a
@@ -81,18 +97,21 @@ public class SqlEngine {
      *  handlers being registered and do not want the defaults.
      */
     public static SqlEngine create(PrimitiveTypeRegistry primTypes) {
-        return new SqlEngine(primTypes, AOption.none(), CanHandleRegistry.empty(), AVector.empty(), AOption.empty(), Constants.DEFAULT_FETCH_SIZE);
+        return new SqlEngine(primTypes, AOption.none(), CanHandleRegistry.empty(), AVector.empty(), AOption.empty(), Constants.DEFAULT_FETCH_SIZE,
+                StatementCache.NONE, QueryCache.NONE);
     }
 
     private SqlEngine(PrimitiveTypeRegistry primTypes, AOption<String> optDefaultPkName, CanHandleRegistry<RowExtractor> rowExtractorRegistry,
                       AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier,
-                      int defaultFetchSize) {
+                      int defaultFetchSize, StatementCache statementCache, QueryCache queryCache) {
         this.primTypes = primTypes;
         this.optDefaultPkName = optDefaultPkName;
         this.rowExtractorRegistry = rowExtractorRegistry;
         this.listeners = listeners;
         this.defaultConnectionSupplier = defaultConnectionSupplier;
         this.defaultFetchSize = defaultFetchSize;
+        this.statementCache = statementCache;
+        this.queryCache = queryCache;
     }
 
     /**
@@ -125,11 +144,11 @@ public class SqlEngine {
     //--------------------------- generic update statements, i.e. statements not returning a result set
 
     private AUpdate update(SqlSnippet sql, SqlSnippet... moreSql) {
-        return new AUpdateImpl(concat(sql, moreSql), primTypes, listeners, defaultConnectionSupplier);
+        return new AUpdateImpl(concat(sql, moreSql), primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache);
     }
 
     private AUpdate update(String sql, Object... params) {
-        return new AUpdateImpl(SqlSnippet.sql(sql, params), primTypes, listeners, defaultConnectionSupplier);
+        return new AUpdateImpl(SqlSnippet.sql(sql, params), primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache);
     }
 
     /**
@@ -206,6 +225,25 @@ public class SqlEngine {
         return update(sql, params).executeLarge(conn);
     }
 
+    /**
+     * Executes a SQL update asynchronously on a given executor. The connection is obtained from {@code connectionSupplier} on the executor's thread
+     *  and closed when the update is done, so the supplier should typically be a connection pool's {@code getConnection}. The connection is
+     *  used as it is returned, which typically means the update is auto-committed.
+     *
+     * @return a future for the "number of rows affected"
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(Executor executor, Supplier<Connection> connectionSupplier, SqlSnippet sql, SqlSnippet... moreSql) {
+        final AUpdate update = update(sql, moreSql);
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, update::execute);
+    }
+    /**
+     * @see #executeUpdateAsync(Executor, Supplier, SqlSnippet, SqlSnippet...)
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(Executor executor, Supplier<Connection> connectionSupplier, String sql, Object... params) {
+        final AUpdate update = update(sql, params);
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, update::execute);
+    }
+
     //TODO expected '1 row affected'?
 
     //--------------------------- batch updates
@@ -222,7 +260,7 @@ public class SqlEngine {
      * @throws IllegalStateException if no default connection supplier is {@link #withDefaultConnectionSupplier(Supplier) registered}
      */
     public int[] executeBatch(String sql, List<List<?>> params) {
-        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier).execute();
+        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).execute();
     }
     /**
      * Executes a 'batch' of SQL statements in a single API call, taking a single (parameterized) SQL statement and a list of parameter lists.<p>
@@ -233,7 +271,7 @@ public class SqlEngine {
      * @return       The number of affected rows for each of the parameter lists. This array's size is the same as the param list's.
      */
     public int[] executeBatch(Connection conn, String sql, List<List<?>> params) {
-        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier).execute(conn);
+        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).execute(conn);
     }
 
     /**
@@ -241,14 +279,14 @@ public class SqlEngine {
      *  allowing updates affecting more than {@link Integer#MAX_VALUE} rows.
      */
     public long[] executeLargeBatch(String sql, List<List<?>> params) {
-        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier).executeLarge();
+        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).executeLarge();
     }
     /**
      * The same as {@link #executeBatch(Connection, String, List)} except that this method returns the number of affected rows as {@code long} values,
      *  allowing updates affecting more than {@link Integer#MAX_VALUE} rows.
      */
     public long[] executeLargeBatch(Connection conn, String sql, List<List<?>> params) {
-        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier).executeLarge(conn);
+        return new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).executeLarge(conn);
     }
 
     /**
@@ -266,7 +304,7 @@ public class SqlEngine {
      * @throws IllegalStateException if no default connection supplier is {@link #withDefaultConnectionSupplier(Supplier) registered}
      */
     public int[] executeBatch(List<SqlSnippet> items) {
-        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier).execute();
+        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).execute();
     }
     /**
      * Executes a 'batch' of SQL statements in a single API call.<p>
@@ -280,21 +318,152 @@ public class SqlEngine {
      * @return the number of rows affected by each of the batch items
      */
     public int[] executeBatch(Connection conn, List<SqlSnippet> items) {
-        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier).execute(conn);
+        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).execute(conn);
     }
     /**
      * The same as {@link #executeBatch(List)} except that this method returns the number of affected rows as {@code long} values,
      *  allowing updates affecting more than {@link Integer#MAX_VALUE} rows.
      */
     public long[] executeLargeBatch(List<SqlSnippet> items) {
-        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier).executeLarge();
+        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).executeLarge();
     }
     /**
      * The same as {@link #executeBatch(Connection, List)} except that this method returns the number of affected rows as {@code long} values,
      *  allowing updates affecting more than {@link Integer#MAX_VALUE} rows.
      */
     public long[] executeLargeBatch(Connection conn, List<SqlSnippet> items) {
-        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier).executeLarge(conn);
+        return new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache).executeLarge(conn);
+    }
+
+    /**
+     * Executes SQL statements with different SQL strings using as few JDBC batches as possible: items are grouped by their SQL string,
+     *  and each group is executed as a single batch. Groups are executed in the order of their first items, and items in a group are
+     *  executed in their original order, but items from different groups may be reordered relative to each other. Use
+     *  {@link #executeGroupedBatch(Connection, List, boolean)} if that is a problem.<p>
+     *
+     * This method uses the connection provided by the default connection supplier, which must be {@link #withDefaultConnectionSupplier(Supplier) registered}.
+     *
+     * @return the number of rows affected by each of the items, in the order of the items that were passed in
+     * @throws IllegalStateException if no default connection supplier is {@link #withDefaultConnectionSupplier(Supplier) registered}
+     */
+    public int[] executeGroupedBatch(List<SqlSnippet> items) {
+        return executeGroupedBatch(defaultConnection(), items);
+    }
+    /**
+     * Executes SQL statements with different SQL strings using as few JDBC batches as possible: items are grouped by their SQL string,
+     *  and each group is executed as a single batch. Groups are executed in the order of their first items, and items in a group are
+     *  executed in their original order, but items from different groups may be reordered relative to each other. Use
+     *  {@link #executeGroupedBatch(Connection, List, boolean)} if that is a problem.
+     *
+     * @return the number of rows affected by each of the items, in the order of the items that were passed in
+     */
+    public int[] executeGroupedBatch(Connection conn, List<SqlSnippet> items) {
+        return executeGroupedBatch(conn, items, false);
+    }
+    /**
+     * @param preserveOrder if true, only consecutive items with the same SQL string are grouped, so all items are executed in their
+     *                      original order. This is for items that depend on each other, e.g. an INSERT and an UPDATE of the same row.
+     * @see #executeGroupedBatch(Connection, List)
+     */
+    public int[] executeGroupedBatch(Connection conn, List<SqlSnippet> items, boolean preserveOrder) {
+        final List<List<Integer>> groups = new ArrayList<>();
+        final Map<String, List<Integer>> groupsBySql = new HashMap<>();
+        String prevSql = null;
+        for (int i = 0; i < items.size(); i++) {
+            final String sql = items.get(i).getSql();
+            List<Integer> group = preserveOrder
+                    ? (sql.equals(prevSql) ? groups.get(groups.size() - 1) : null)
+                    : groupsBySql.get(sql);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+                groupsBySql.put(sql, group);
+            }
+            group.add(i);
+            prevSql = sql;
+        }
+
+        final int[] result = new int[items.size()];
+        for (List<Integer> group : groups) {
+            final List<SqlSnippet> groupItems = new ArrayList<>(group.size());
+            for (int idx : group) {
+                groupItems.add(items.get(idx));
+            }
+
+            final int[] groupResult = new ABatchUpdate(groupItems, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache)
+                    .execute(conn);
+            for (int j = 0; j < group.size(); j++) {
+                result[group.get(j)] = groupResult[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executes a batch with parameter lists from a (potentially huge) stream, sending them to the database in chunks of {@code flushSize}
+     *  items. Only a single chunk is held in memory at any given time, so this allows e.g. loading large files with constant memory. The
+     *  stream is consumed but not closed.<p>
+     *
+     * This method uses the connection provided by the default connection supplier, which must be {@link #withDefaultConnectionSupplier(Supplier) registered}.
+     *
+     * @param chunkBoundary determines whether the connection is committed or a savepoint is used for each chunk
+     * @throws IllegalStateException if no default connection supplier is {@link #withDefaultConnectionSupplier(Supplier) registered}
+     */
+    public BatchSummary executeBatch(String sql, Stream<? extends List<?>> params, int flushSize, ChunkBoundary chunkBoundary) {
+        return executeBatch(defaultConnection(), sql, params, flushSize, chunkBoundary);
+    }
+    /**
+     * Executes a batch with parameter lists from a (potentially huge) stream, sending them to the database in chunks of {@code flushSize}
+     *  items. Only a single chunk is held in memory at any given time, so this allows e.g. loading large files with constant memory. The
+     *  stream is consumed but not closed.
+     *
+     * @param chunkBoundary determines whether the connection is committed or a savepoint is used for each chunk
+     */
+    public BatchSummary executeBatch(Connection conn, String sql, Stream<? extends List<?>> params, int flushSize, ChunkBoundary chunkBoundary) {
+        final Iterator<List<?>> it = params.<List<?>>map(p -> p).iterator();
+        return new AChunkedBatch<>(it, flushSize, chunkBoundary, queryCache,
+                chunk -> new ABatchUpdate(sql, chunk, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache))
+                .execute(conn);
+    }
+
+    /**
+     * The same as {@link #executeBatch(String, Stream, int, ChunkBoundary)}, except that it takes {@link SqlSnippet}s which must all have the
+     *  same SQL string.
+     *
+     * @throws IllegalStateException if no default connection supplier is {@link #withDefaultConnectionSupplier(Supplier) registered}
+     */
+    public BatchSummary executeBatch(Iterator<SqlSnippet> items, int flushSize, ChunkBoundary chunkBoundary) {
+        return executeBatch(defaultConnection(), items, flushSize, chunkBoundary);
+    }
+    /**
+     * The same as {@link #executeBatch(Connection, String, Stream, int, ChunkBoundary)}, except that it takes {@link SqlSnippet}s which must all
+     *  have the same SQL string.
+     */
+    public BatchSummary executeBatch(Connection conn, Iterator<SqlSnippet> items, int flushSize, ChunkBoundary chunkBoundary) {
+        return new AChunkedBatch<>(items, flushSize, chunkBoundary, queryCache,
+                chunk -> new ABatchUpdate(chunk, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache))
+                .execute(conn);
+    }
+
+    /**
+     * Executes a batch asynchronously on a given executor, obtaining a connection from {@code connectionSupplier} and closing it afterwards
+     *  (see {@link #executeUpdateAsync(Executor, Supplier, SqlSnippet, SqlSnippet...)}).
+     *
+     * @see #executeBatch(Connection, String, List)
+     */
+    public CompletableFuture<int[]> executeBatchAsync(Executor executor, Supplier<Connection> connectionSupplier, String sql, List<List<?>> params) {
+        final ABatchUpdate batch = new ABatchUpdate(sql, params, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache);
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, batch::execute);
+    }
+    /**
+     * Executes a batch asynchronously on a given executor, obtaining a connection from {@code connectionSupplier} and closing it afterwards
+     *  (see {@link #executeUpdateAsync(Executor, Supplier, SqlSnippet, SqlSnippet...)}).
+     *
+     * @see #executeBatch(Connection, List)
+     */
+    public CompletableFuture<int[]> executeBatchAsync(Executor executor, Supplier<Connection> connectionSupplier, List<SqlSnippet> items) {
+        final ABatchUpdate batch = new ABatchUpdate(items, primTypes, listeners, defaultConnectionSupplier, statementCache, queryCache);
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, batch::execute);
     }
 
     //--------------------------- insert statements, i.e. statements returning a generated primary key
@@ -616,35 +785,40 @@ public class SqlEngine {
         return insert(pkType, rowExtractor, sql, AVector.<String>builder().add(colName1).addAll(colNames).build());
     }
     public <T> T insert(Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, List<String> colNames) {
-        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier).executeSingle();
+        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier, statementCache, queryCache)
+                .executeSingle();
     }
 
     public <T> T insert(Connection conn, Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, String colName1, String... colNames) {
         return insert(conn, pkType, rowExtractor, sql, AVector.<String>builder().add(colName1).addAll(colNames).build());
     }
     public <T> T insert(Connection conn, Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, List<String> colNames) {
-        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier).executeSingle(conn);
+        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier, statementCache, queryCache)
+                .executeSingle(conn);
     }
 
     public <T> AList<T> insertMulti(Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, String colName1, String... colNames) {
         return insertMulti(pkType, rowExtractor, sql, AVector.<String>builder().add(colName1).addAll(colNames).build());
     }
     public <T> AList<T> insertMulti(Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, List<String> colNames) {
-        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier).executeMulti();
+        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier, statementCache, queryCache)
+                .executeMulti();
     }
 
     public <T> AList<T> insertMulti(Connection conn, Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, String colName1, String... colNames) {
         return insertMulti(conn, pkType, rowExtractor, sql, AVector.<String>builder().add(colName1).addAll(colNames).build());
     }
     public <T> AList<T> insertMulti(Connection conn, Class<T> pkType, RowExtractor rowExtractor, SqlSnippet sql, List<String> colNames) {
-        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier).executeMulti(conn);
+        return new AInsertImpl<>(pkType, sql, primTypes, rowExtractor, colNames, listeners, defaultConnectionSupplier, statementCache, queryCache)
+                .executeMulti(conn);
     }
 
     // -------------------------- select statements
 
     public <T> AQuery<T> scalarQuery(Class<T> columnType, SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(columnType, concat(sql, moreSql), primTypes, new ScalarRowExtractor(columnType), listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public <T> AQuery<T> scalarQuery(Class<T> columnType, String sql, Object... params) {
         return scalarQuery(columnType, SqlSnippet.sql(sql, params));
@@ -652,49 +826,56 @@ public class SqlEngine {
 
     public AQuery<Long> longQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(Long.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.LONG_EXTRACTOR, listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<Long> longQuery(String sql, Object... params) {
         return longQuery(SqlSnippet.sql(sql, params));
     }
     public AQuery<Integer> intQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(Integer.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.INT_EXTRACTOR, listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<Integer> intQuery(String sql, Object... params) {
         return intQuery(SqlSnippet.sql(sql, params));
     }
     public AQuery<String> stringQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(String.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.STRING_EXTRACTOR, listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<String> stringQuery(String sql, Object... params) {
         return stringQuery(SqlSnippet.sql(sql, params));
     }
     public AQuery<UUID> uuidQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(UUID.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.UUID_EXTRACTOR, listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<UUID> uuidQuery(String sql, Object... params) {
         return uuidQuery(SqlSnippet.sql(sql, params));
     }
     public AQuery<Double> doubleQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(Double.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.DOUBLE_EXTRACTOR, listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<Double> doubleQuery(String sql, Object... params) {
         return doubleQuery(SqlSnippet.sql(sql, params));
     }
     public AQuery<BigDecimal> bigDecimalQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(BigDecimal.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.BIG_DECIMAL_EXTRACTOR, listeners,
-                defaultConnectionSupplier, AVector.empty(), defaultFetchSize);
+                defaultConnectionSupplier, AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<BigDecimal> bigDecimalQuery(String sql, Object... params) {
         return bigDecimalQuery(SqlSnippet.sql(sql, params));
     }
     public AQuery<Boolean> booleanQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(Boolean.class, concat(sql, moreSql), primTypes, ScalarRowExtractor.BOOLEAN_EXTRACTOR, listeners,
-                defaultConnectionSupplier, AVector.empty(), defaultFetchSize);
+                defaultConnectionSupplier, AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<Boolean> booleanQuery(String sql, Object... params) {
         return booleanQuery(SqlSnippet.sql(sql, params));
@@ -704,11 +885,13 @@ public class SqlEngine {
 
     public AQuery<SqlRow> rawQuery(SqlSnippet sql, SqlSnippet... moreSql) {
         return new AQueryImpl<>(SqlRow.class, concat(sql, moreSql), primTypes, RawRowExtractor.INSTANCE, listeners, defaultConnectionSupplier, AVector.empty(),
-                defaultFetchSize);
+                defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
     public AQuery<SqlRow> rawQuery(String sql, Object... params) {
         return new AQueryImpl<>(SqlRow.class, SqlSnippet.sql(sql, params), primTypes, RawRowExtractor.INSTANCE, listeners, defaultConnectionSupplier,
-                AVector.empty(), defaultFetchSize);
+                AVector.empty(), defaultFetchSize, statementCache, queryCache,
+                AVector.empty());
     }
 
     public <T> AQuery<T> query(Class<T> targetType, SqlSnippet sql, SqlSnippet... moreSql) {
@@ -720,7 +903,65 @@ public class SqlEngine {
     }
 
     public <T> AQuery<T> query(Class<T> cls, RowExtractor rowExtractor, SqlSnippet sql, SqlSnippet... moreSql) { //TODO consistent ordering of parameters
-        return new AQueryImpl<>(cls, concat(sql, moreSql), primTypes, rowExtractor, listeners, defaultConnectionSupplier, AVector.empty(), defaultFetchSize);
+        return new AQueryImpl<>(cls, concat(sql, moreSql), primTypes, rowExtractor, listeners, defaultConnectionSupplier, AVector.empty(), defaultFetchSize,
+                statementCache, queryCache,
+                AVector.empty());
+    }
+
+    /**
+     * Executes a query and stores its results column by column in primitive arrays, see {@link ColumnarResult}. This is meant for analytical
+     *  reads of many rows, where it uses a fraction of the memory that mapping each row to an object would use.<p>
+     *
+     * This method uses the connection provided by the default connection supplier, which must be {@link #withDefaultConnectionSupplier(Supplier) registered}.
+     *
+     * @throws IllegalStateException if no default connection supplier is {@link #withDefaultConnectionSupplier(Supplier) registered}
+     */
+    public ColumnarResult columnarQuery(SqlSnippet sql, SqlSnippet... moreSql) {
+        return columnarQuery(defaultConnection(), sql, moreSql);
+    }
+    /**
+     * Executes a query and stores its results column by column in primitive arrays, see {@link ColumnarResult}. This is meant for analytical
+     *  reads of many rows, where it uses a fraction of the memory that mapping each row to an object would use.
+     */
+    public ColumnarResult columnarQuery(Connection conn, SqlSnippet sql, SqlSnippet... moreSql) {
+        return doColumnarQuery(conn, concat(sql, moreSql));
+    }
+    /**
+     * @see #columnarQuery(SqlSnippet, SqlSnippet...)
+     */
+    public ColumnarResult columnarQuery(String sql, Object... params) {
+        return columnarQuery(defaultConnection(), sql, params);
+    }
+    /**
+     * @see #columnarQuery(Connection, SqlSnippet, SqlSnippet...)
+     */
+    public ColumnarResult columnarQuery(Connection conn, String sql, Object... params) {
+        return doColumnarQuery(conn, SqlSnippet.sql(sql, params));
+    }
+
+    private ColumnarResult doColumnarQuery(Connection conn, SqlSnippet sql) {
+        listeners.forEach(l -> l.onBeforeQuery(sql, ColumnarResult.class));
+        try {
+            final PreparedStatement ps = statementCache.prepare(conn, sql.getSql(), listeners);
+            try {
+                ps.setFetchSize(defaultFetchSize);
+                SqlHelper.bindParameters(ps, sql.getParams(), primTypes);
+                try (ResultSet rs = ps.executeQuery()) {
+                    listeners.reverseIterator().forEachRemaining(SqlEngineEventListener::onAfterQueryExecution);
+                    final ColumnarResult result = ColumnarResult.fromResultSet(rs);
+                    listeners.reverseIterator().forEachRemaining(l -> l.onAfterQueryIteration(result.numRows()));
+                    return result;
+                }
+            }
+            finally {
+                statementCache.release(conn, ps);
+            }
+        }
+        catch (Throwable th) {
+            listeners.reverseIterator().forEachRemaining(l -> l.onFailed(th));
+            AUnchecker.throwUnchecked(th);
+            return null; // for the compiler
+        }
     }
 
     //TODO tuples as query results
@@ -744,29 +985,92 @@ public class SqlEngine {
         return listeners;
     }
 
+    public StatementCache statementCache() {
+        return statementCache;
+    }
+
+    public QueryCache queryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Closes all cached statements for a connection. Applications using a {@link #withStatementCache(int) statement cache} should call this before
+     *  returning a pooled connection to its pool: closing a pooled connection typically keeps the physical connection (and its statements) open.
+     */
+    public void releaseCachedStatements(Connection conn) {
+        statementCache.evict(conn);
+    }
+
+    /**
+     * Reports that a connection's transaction was committed or rolled back. Writes on connections that are not in auto-commit mode make the
+     *  {@link #withQueryCache(long, Duration) query cache} ignore the connection so that uncommitted changes do not leak to other
+     *  transactions, and this is how applications managing transactions themselves switch caching back on for the connection. It also
+     *  invalidates the tables the connection wrote once more, discarding entries other transactions cached before the commit.
+     */
+    public void transactionEnded(Connection conn) {
+        queryCache.transactionEnded(conn);
+    }
+
     public <T> SqlEngine withRawTypeMapping(Class<T> jdbcType, Function<T, Object> rawMapping) {
         return new SqlEngine(primTypes.withRawTypeMapping(jdbcType, rawMapping), optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier,
-                defaultFetchSize);
+                defaultFetchSize, statementCache, queryCache);
     }
     public SqlEngine withPrimitiveHandler(PrimitiveTypeHandler handler) {
-        return new SqlEngine(primTypes.withHandler(handler), optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize);
+        return new SqlEngine(primTypes.withHandler(handler), optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize,
+                statementCache, queryCache);
     }
 
     public SqlEngine withDefaultPkName(String pkName) {
-        return new SqlEngine(primTypes, AOption.of(pkName), rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize);
+        return new SqlEngine(primTypes, AOption.of(pkName), rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize,
+                statementCache, queryCache);
     }
 
     public SqlEngine withRowExtractor(RowExtractor rowExtractor) {
         return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry.withHandler(rowExtractor), listeners, defaultConnectionSupplier,
-                defaultFetchSize);
+                defaultFetchSize, statementCache, queryCache);
     }
 
     public SqlEngine withListener(SqlEngineEventListener listener) {
-        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners.append(listener), defaultConnectionSupplier, defaultFetchSize);
+        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners.append(listener), defaultConnectionSupplier, defaultFetchSize,
+                statementCache, queryCache);
     }
 
     public SqlEngine withDefaultFetchSize(int defaultFetchSize) {
-        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize);
+        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize,
+                statementCache, queryCache);
+    }
+
+    /**
+     * Keeps up to {@code maxPerConnection} prepared statements per {@link Connection} for reuse, evicting the least recently used statements
+     *  beyond that. This saves the cost of preparing statements that are executed repeatedly, most notably for databases that do server side
+     *  preparation. Cache hits and misses are reported to {@link SqlEngineEventListener}s.<p>
+     *
+     * Passing 0 switches statement caching off, which is the default. Every call to this method creates a new, empty cache.
+     *
+     * @see #releaseCachedStatements(Connection)
+     */
+    public SqlEngine withStatementCache(int maxPerConnection) {
+        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize,
+                maxPerConnection == 0 ? StatementCache.NONE : new StatementCache(maxPerConnection), queryCache);
+    }
+
+    /**
+     * Configures a cache for the results of queries that are explicitly marked as {@link AQuery#cached(String, String...) cached}. The cache holds
+     *  up to {@code maxRows} rows in total, evicting the least recently used results beyond that, and it keeps results for no longer than
+     *  {@code ttl}.<p>
+     *
+     * Cached results are tagged with the tables their query reads, and updates, batches and inserts executed by this engine invalidate
+     *  the results for the tables they write (see {@link QueryCache} for details). Writes that bypass the engine are not noticed and become
+     *  visible after the TTL expires. This is intended for 'read mostly' data like configuration or catalog data.<p>
+     *
+     * A connection that wrote through the engine outside of auto-commit mode bypasses the cache until {@link #transactionEnded(Connection)}
+     *  is called for it.<p>
+     *
+     * Passing 0 as {@code maxRows} switches query caching off, which is the default. Every call to this method creates a new, empty cache.
+     */
+    public SqlEngine withQueryCache(long maxRows, Duration ttl) {
+        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners, defaultConnectionSupplier, defaultFetchSize, statementCache,
+                maxRows == 0 ? QueryCache.NONE : new QueryCache(maxRows, ttl));
     }
 
     /**
@@ -775,6 +1079,7 @@ public class SqlEngine {
      * a thread pool or data source - that would cause a resource leak because the connection would never be closed.
      */
     public SqlEngine withDefaultConnectionSupplier(Supplier<Connection> supp) {
-        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners, AOption.some(supp), defaultFetchSize);
+        return new SqlEngine(primTypes, optDefaultPkName, rowExtractorRegistry, listeners, AOption.some(supp), defaultFetchSize, statementCache,
+                queryCache);
     }
 }
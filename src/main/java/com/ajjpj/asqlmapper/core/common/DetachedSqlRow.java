@@ -1,43 +1,146 @@
 package com.ajjpj.asqlmapper.core.common;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.ajjpj.acollections.AList;
-import com.ajjpj.acollections.AMap;
 import com.ajjpj.acollections.util.AUnchecker;
 import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 
 /**
  * A SqlRow implementation that copies row data, making it available independently of the
  *  ResultSet it originated from. This class is immutable and 'safe' to use in all contexts,
- *  incurring some additional cost for copying and storing field values.
+ *  incurring some additional cost for copying and storing field values.<p>
+ *
+ * Rows store their values in a flat array and share their {@link RowSchema} with all other rows
+ *  detached from the same ResultSet, keeping the per-row memory overhead low.<p>
+ *
+ * The only exception is {@link #wasNull()} which, just like {@link ResultSet#wasNull()}, refers to
+ *  the most recent primitive read and is therefore not meaningful when an instance is read concurrently.
  */
 public class DetachedSqlRow implements SqlRow {
-    private final AMap<String,Object> byLowerCaseColumn;
-    private final List<String> columnNames;
+    private final RowSchema schema;
+    private final Object[] values;
     private final PrimitiveTypeRegistry primTypes;
 
+    private boolean wasNull;
+
+    /**
+     * Copies the current row of a ResultSet, reading all columns described by the schema (by index).
+     */
+    public DetachedSqlRow (ResultSet rs, RowSchema schema, PrimitiveTypeRegistry primTypes) throws SQLException {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        this.primTypes = primTypes;
+
+        for (int i=0; i<values.length; i++) {
+            values[i] = rs.getObject(i+1);
+        }
+    }
+
+    /**
+     * Copies a given subset of the columns of a ResultSet's current row, reading them by name.
+     */
     public DetachedSqlRow (ResultSet rs, AList<String> columnNames, PrimitiveTypeRegistry primTypes) {
-        this.byLowerCaseColumn = columnNames.fold(AMap.empty(),
-                (res, el) -> res.plus(el.toLowerCase(), AUnchecker.executeUnchecked(() -> rs.getObject(el))));
-        this.columnNames = columnNames;
+        this.schema = new RowSchema(columnNames);
+        this.values = new Object[schema.size()];
         this.primTypes = primTypes;
+
+        for (int i=0; i<values.length; i++) {
+            final String columnName = columnNames.get(i);
+            values[i] = AUnchecker.executeUnchecked(() -> rs.getObject(columnName));
+        }
     }
 
     @Override public DetachedSqlRow detach () {
         return this;
     }
 
+    public RowSchema schema() {
+        return schema;
+    }
+
     @Override public List<String> columnNames() {
-        return columnNames;
+        return schema.columnNames();
+    }
+
+    @Override public int numColumns() {
+        return values.length;
+    }
+
+    private Object rawByName(String columnName) {
+        final int idx = schema.indexOf(columnName);
+        return idx < 0 ? null : values[idx];
     }
 
     @Override public <T> T get(Class<T> cls, String columnName) {
-        return primTypes.fromSql(cls, byLowerCaseColumn.get(columnName.toLowerCase()));
+        return primTypes.fromSql(cls, rawByName(columnName));
     }
     @Override public Object get(String columnName) {
-        return primTypes.fromSql(byLowerCaseColumn.get(columnName.toLowerCase()));
+        return primTypes.fromSql(rawByName(columnName));
+    }
+
+    @Override public <T> T get(Class<T> cls, int idx) {
+        return primTypes.fromSql(cls, values[idx]);
+    }
+    @Override public Object get(int idx) {
+        return primTypes.fromSql(values[idx]);
+    }
+
+    @Override public Object getRaw(int idx) {
+        return values[idx];
+    }
+
+    @Override public int getIntValue(String columnName) {
+        return intValue(rawByName(columnName));
+    }
+    @Override public int getIntValue(int idx) {
+        return intValue(values[idx]);
+    }
+    private int intValue(Object raw) {
+        wasNull = raw == null;
+        return raw instanceof Number ? ((Number) raw).intValue() : wasNull ? 0 : primTypes.fromSql(Integer.class, raw);
+    }
+
+    @Override public long getLongValue(String columnName) {
+        return longValue(rawByName(columnName));
+    }
+    @Override public long getLongValue(int idx) {
+        return longValue(values[idx]);
+    }
+    private long longValue(Object raw) {
+        wasNull = raw == null;
+        return raw instanceof Number ? ((Number) raw).longValue() : wasNull ? 0 : primTypes.fromSql(Long.class, raw);
+    }
+
+    @Override public double getDoubleValue(String columnName) {
+        return doubleValue(rawByName(columnName));
+    }
+    @Override public double getDoubleValue(int idx) {
+        return doubleValue(values[idx]);
+    }
+    private double doubleValue(Object raw) {
+        wasNull = raw == null;
+        return raw instanceof Number ? ((Number) raw).doubleValue() : wasNull ? 0 : primTypes.fromSql(Double.class, raw);
+    }
+
+    @Override public boolean getBooleanValue(String columnName) {
+        return booleanValue(rawByName(columnName));
+    }
+    @Override public boolean getBooleanValue(int idx) {
+        return booleanValue(values[idx]);
+    }
+    private boolean booleanValue(Object raw) {
+        wasNull = raw == null;
+        return raw instanceof Boolean ? (Boolean) raw : !wasNull && primTypes.fromSql(Boolean.class, raw);
+    }
+
+    @Override public boolean wasNull() {
+        return wasNull;
     }
 
     @Override public String toString () {
@@ -56,11 +159,30 @@ public class DetachedSqlRow implements SqlRow {
         return result.toString();
     }
 
+    /**
+     * Rows are compared by their column names (ignoring case and order) and the corresponding values.
+     */
     @Override public boolean equals(Object obj) {
         if(! (obj instanceof SqlRow)) {
             return false;
         }
 
-        return byLowerCaseColumn.equals(((SqlRow)obj).detach().byLowerCaseColumn);
+        final DetachedSqlRow other = ((SqlRow) obj).detach();
+        if (schema.equals(other.schema) && schema.hasUniqueNames()) {
+            return Arrays.equals(values, other.values);
+        }
+        return byLowerCaseColumn().equals(other.byLowerCaseColumn());
+    }
+
+    @Override public int hashCode() {
+        return byLowerCaseColumn().hashCode();
+    }
+
+    private Map<String,Object> byLowerCaseColumn() {
+        final Map<String,Object> result = new HashMap<>();
+        for (int i=0; i<values.length; i++) {
+            result.put(schema.columnNames().get(i).toLowerCase(), values[i]);
+        }
+        return result;
     }
 }
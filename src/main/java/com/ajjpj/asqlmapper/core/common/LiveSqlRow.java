@@ -3,12 +3,10 @@ package com.ajjpj.asqlmapper.core.common;
 import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
 
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.AbstractList;
 import java.util.List;
 
-import com.ajjpj.acollections.AList;
+import com.ajjpj.acollections.util.AUnchecker;
 import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 
 /**
@@ -19,33 +17,60 @@ import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
  *
  * This implementation is useful for working with streams of data where processing of one row
  *  is often completed before moving on to the next, and the number of rows being processed
- *  can be huge, making reduced garbage production attractive.
+ *  can be huge, making reduced garbage production attractive.<p>
+ *
+ * Column names are read once when the row is created, and all access by column name is mapped to
+ *  index based access on the ResultSet.
  */
 public class LiveSqlRow implements SqlRow {
     private final PrimitiveTypeRegistry primTypes;
     private final ResultSet rs;
-    private final List<String> columnNames;
+    private final RowSchema schema;
 
     public LiveSqlRow (PrimitiveTypeRegistry primTypes, ResultSet rs) throws SQLException {
+        this(primTypes, rs, RowSchema.of(rs.getMetaData()));
+    }
+
+    public LiveSqlRow (PrimitiveTypeRegistry primTypes, ResultSet rs, RowSchema schema) {
         this.primTypes = primTypes;
         this.rs = rs;
-        this.columnNames = new LiveColumnNames(rs);
+        this.schema = schema;
+    }
+
+    public RowSchema schema () {
+        return schema;
     }
 
     @Override public DetachedSqlRow detach () {
-        return new DetachedSqlRow(rs, AList.from(columnNames()), primTypes);
+        return executeUnchecked(() -> new DetachedSqlRow(rs, schema, primTypes));
     }
 
     @Override public List<String> columnNames () {
-        return columnNames;
+        return schema.columnNames();
+    }
+
+    @Override public int numColumns () {
+        return schema.size();
+    }
+
+    /**
+     * @return the 1-based JDBC column index for a column name
+     */
+    private int jdbcIndex (String columnName) throws SQLException {
+        final int idx = schema.indexOf(columnName);
+        if (idx < 0) {
+            // let the driver deal with anything that is not a plain column label - typically by throwing an exception
+            return rs.findColumn(columnName);
+        }
+        return idx+1;
     }
 
     @Override public <T> T get (Class<T> cls, String columnName) {
-        return executeUnchecked(() -> primTypes.fromSql(cls, rs.getObject(columnName)));
+        return executeUnchecked(() -> primTypes.fromSql(cls, rs.getObject(jdbcIndex(columnName))));
     }
 
     @Override public Object get (String columnName) {
-        return executeUnchecked(() -> primTypes.fromSql(rs.getObject(columnName)));
+        return executeUnchecked(() -> primTypes.fromSql(rs.getObject(jdbcIndex(columnName))));
     }
 
     @Override public <T> T get (Class<T> cls, int idx) {
@@ -53,24 +78,94 @@ public class LiveSqlRow implements SqlRow {
     }
 
     @Override public Object get (int idx) {
-        return executeUnchecked(() -> primTypes.fromSql(rs.getObject(idx)));
+        return executeUnchecked(() -> primTypes.fromSql(rs.getObject(idx+1)));
+    }
+
+    @Override public Object getRaw (int idx) {
+        return executeUnchecked(() -> rs.getObject(idx+1));
     }
 
-    static class LiveColumnNames extends AbstractList<String> {
-        private final ResultSetMetaData rsMeta;
+    // The primitive getters do not use executeUnchecked to avoid boxing the result
 
-        LiveColumnNames (ResultSet rs) throws SQLException {
-            this.rsMeta = rs.getMetaData();
+    @Override public int getIntValue (String columnName) {
+        try {
+            return rs.getInt(jdbcIndex(columnName));
         }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return 0; // for the compiler
+        }
+    }
+    @Override public int getIntValue (int idx) {
+        try {
+            return rs.getInt(idx+1);
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return 0; // for the compiler
+        }
+    }
 
-        @Override public String get (int index) {
-            return executeUnchecked(() -> rsMeta.getColumnName(index+1));
+    @Override public long getLongValue (String columnName) {
+        try {
+            return rs.getLong(jdbcIndex(columnName));
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return 0; // for the compiler
         }
+    }
+    @Override public long getLongValue (int idx) {
+        try {
+            return rs.getLong(idx+1);
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return 0; // for the compiler
+        }
+    }
 
-        @Override public int size () {
-            return executeUnchecked(rsMeta::getColumnCount);
+    @Override public double getDoubleValue (String columnName) {
+        try {
+            return rs.getDouble(jdbcIndex(columnName));
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return 0; // for the compiler
         }
     }
+    @Override public double getDoubleValue (int idx) {
+        try {
+            return rs.getDouble(idx+1);
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return 0; // for the compiler
+        }
+    }
+
+    @Override public boolean getBooleanValue (String columnName) {
+        try {
+            return rs.getBoolean(jdbcIndex(columnName));
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return false; // for the compiler
+        }
+    }
+    @Override public boolean getBooleanValue (int idx) {
+        try {
+            return rs.getBoolean(idx+1);
+        }
+        catch (SQLException exc) {
+            AUnchecker.throwUnchecked(exc);
+            return false; // for the compiler
+        }
+    }
+
+    @Override public boolean wasNull () {
+        return executeUnchecked(rs::wasNull);
+    }
 
     @Override public boolean equals(Object obj) {
         if(! (obj instanceof SqlRow)) {
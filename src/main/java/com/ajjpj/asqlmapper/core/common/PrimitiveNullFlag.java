@@ -0,0 +1,18 @@
+package com.ajjpj.asqlmapper.core.common;
+
+/**
+ * Holds the 'was null' flag for {@link SqlRow}'s default primitive getters. Interfaces can not have per-instance state, so the flag
+ *  is per thread - rows are not thread safe anyway, so this is the same as per row for all practical purposes.
+ */
+class PrimitiveNullFlag {
+    private static final ThreadLocal<Boolean> wasNull = ThreadLocal.withInitial(() -> false);
+
+    static <T> T track(T value) {
+        wasNull.set(value == null);
+        return value;
+    }
+
+    static boolean get() {
+        return wasNull.get();
+    }
+}
@@ -0,0 +1,87 @@
+package com.ajjpj.asqlmapper.core.common;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ajjpj.acollections.immutable.AVector;
+
+/**
+ * The column names of a result set, snapshotted once so that rows can look up columns by (case insensitive) name
+ *  without going to the {@link ResultSetMetaData} or relying on the driver's name resolution.<p>
+ *
+ * If several columns have the same name, lookup by name finds the first of them - which is how JDBC's by-label
+ *  access works as well.<p>
+ *
+ * RowSchema instances are immutable and intended to be shared by all rows of a query.
+ */
+public class RowSchema {
+    private final AVector<String> columnNames;
+    private final Map<String, Integer> indexByName = new HashMap<>();
+    private final boolean hasUniqueNames;
+
+    public static RowSchema of(ResultSetMetaData rsMeta) throws SQLException {
+        final AVector.Builder<String> columnNames = AVector.builder();
+        final int numColumns = rsMeta.getColumnCount();
+        for (int i=1; i<=numColumns; i++) {
+            columnNames.add(rsMeta.getColumnName(i));
+        }
+        return new RowSchema(columnNames.build());
+    }
+
+    public RowSchema(List<String> columnNames) {
+        this.columnNames = AVector.from(columnNames);
+
+        boolean unique = true;
+        for (int i=0; i<this.columnNames.size(); i++) {
+            // exact names are registered in addition to lower case names to avoid String conversion for the common case
+            indexByName.putIfAbsent(this.columnNames.get(i), i);
+            if (indexByName.putIfAbsent(this.columnNames.get(i).toLowerCase(), i) != null) {
+                unique = false;
+            }
+        }
+        this.hasUniqueNames = unique;
+    }
+
+    public AVector<String> columnNames() {
+        return columnNames;
+    }
+
+    public int size() {
+        return columnNames.size();
+    }
+
+    /**
+     * @return true if no two columns have the same name (ignoring case)
+     */
+    public boolean hasUniqueNames() {
+        return hasUniqueNames;
+    }
+
+    /**
+     * @return the (0-based) index of the column with a given name, ignoring case, or -1 if there is no such column
+     */
+    public int indexOf(String columnName) {
+        Integer result = indexByName.get(columnName);
+        if (result == null) {
+            result = indexByName.get(columnName.toLowerCase());
+        }
+        return result != null ? result : -1;
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return columnNames.equals(((RowSchema) o).columnNames);
+    }
+
+    @Override public int hashCode() {
+        return columnNames.hashCode();
+    }
+
+    @Override public String toString() {
+        return "RowSchema" + columnNames;
+    }
+}
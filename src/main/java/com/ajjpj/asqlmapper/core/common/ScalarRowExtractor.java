@@ -37,6 +37,35 @@ public class ScalarRowExtractor implements RowExtractor {
         if (! injectedPropsValues.isEmpty()) {
             log.warn("provided properties ignored for scalar queries");
         }
-        return row.get(cls, 0);
+        return extract(cls, row, 0);
+    }
+
+    /**
+     * Reads a column using the {@link SqlRow}'s primitive getters for numeric and boolean target types, bypassing
+     *  generic conversion through {@link PrimitiveTypeRegistry}.
+     */
+    static <T> T extract(Class<T> cls, SqlRow row, int idx) {
+        final Object result;
+        if (cls == Long.class || cls == long.class) {
+            final long l = row.getLongValue(idx);
+            result = row.wasNull() ? null : l;
+        }
+        else if (cls == Integer.class || cls == int.class) {
+            final int i = row.getIntValue(idx);
+            result = row.wasNull() ? null : i;
+        }
+        else if (cls == Double.class || cls == double.class) {
+            final double d = row.getDoubleValue(idx);
+            result = row.wasNull() ? null : d;
+        }
+        else if (cls == Boolean.class || cls == boolean.class) {
+            final boolean b = row.getBooleanValue(idx);
+            result = row.wasNull() ? null : b;
+        }
+        else {
+            return row.get(cls, idx);
+        }
+        //noinspection unchecked
+        return (T) result;
     }
 }
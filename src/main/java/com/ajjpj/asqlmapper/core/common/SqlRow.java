@@ -23,6 +23,15 @@ public interface SqlRow {
         return get(columnNames().get(idx));
     }
 
+    /**
+     * @return a column's value as returned by the JDBC driver, without any conversion. This is intended for callers
+     *         that do their own conversion, typically using a {@link com.ajjpj.asqlmapper.core.Converter Converter}. The default
+     *         implementation is for rows without access to the driver's values, returning {@link #get(int)} instead.
+     */
+    default Object getRaw(int idx) {
+        return get(idx);
+    }
+
     default String getString(String columnName) {
         return get(String.class, columnName);
     }
@@ -43,4 +52,71 @@ public interface SqlRow {
     default Long getLong(int idx) {
         return get(Long.class, idx);
     }
+
+    default Double getDouble(String columnName) {
+        return get(Double.class, columnName);
+    }
+    default Double getDouble(int idx) {
+        return get(Double.class, idx);
+    }
+
+    default Boolean getBoolean(String columnName) {
+        return get(Boolean.class, columnName);
+    }
+    default Boolean getBoolean(int idx) {
+        return get(Boolean.class, idx);
+    }
+
+    /*
+     * The following methods return primitive values without boxing, following the conventions of the typed getters in
+     *  {@link java.sql.ResultSet}: A SQL NULL value is returned as 0 (or false), and {@link #wasNull()} distinguishes
+     *  that from an actual 0 value. Column indexes are 0-based, as for all other SqlRow methods.
+     *
+     * The default implementations go through the boxed getters and are meant for implementations outside this library;
+     *  LiveSqlRow and DetachedSqlRow override them to avoid boxing.
+     */
+
+    default int getIntValue(String columnName) {
+        final Integer result = PrimitiveNullFlag.track(getInt(columnName));
+        return result == null ? 0 : result;
+    }
+    default int getIntValue(int idx) {
+        final Integer result = PrimitiveNullFlag.track(getInt(idx));
+        return result == null ? 0 : result;
+    }
+
+    default long getLongValue(String columnName) {
+        final Long result = PrimitiveNullFlag.track(getLong(columnName));
+        return result == null ? 0 : result;
+    }
+    default long getLongValue(int idx) {
+        final Long result = PrimitiveNullFlag.track(getLong(idx));
+        return result == null ? 0 : result;
+    }
+
+    default double getDoubleValue(String columnName) {
+        final Double result = PrimitiveNullFlag.track(getDouble(columnName));
+        return result == null ? 0 : result;
+    }
+    default double getDoubleValue(int idx) {
+        final Double result = PrimitiveNullFlag.track(getDouble(idx));
+        return result == null ? 0 : result;
+    }
+
+    default boolean getBooleanValue(String columnName) {
+        final Boolean result = PrimitiveNullFlag.track(getBoolean(columnName));
+        return result != null && result;
+    }
+    default boolean getBooleanValue(int idx) {
+        final Boolean result = PrimitiveNullFlag.track(getBoolean(idx));
+        return result != null && result;
+    }
+
+    /**
+     * @return true if the column read by the most recent call to one of the primitive getters (e.g. {@link #getLongValue(int)})
+     *         was SQL NULL
+     */
+    default boolean wasNull() {
+        return PrimitiveNullFlag.get();
+    }
 }
@@ -7,10 +7,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collector;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -19,10 +23,12 @@ import com.ajjpj.acollections.AList;
 import com.ajjpj.acollections.immutable.AVector;
 import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.acollections.util.AUnchecker;
+import com.ajjpj.asqlmapper.core.ACursor;
 import com.ajjpj.asqlmapper.core.AQuery;
 import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 import com.ajjpj.asqlmapper.core.RowExtractor;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
+import com.ajjpj.asqlmapper.core.common.DetachedSqlRow;
 import com.ajjpj.asqlmapper.core.common.LiveSqlRow;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
@@ -37,10 +43,16 @@ public class AQueryImpl<T> implements AQuery<T> {
     private final AOption<Supplier<Connection>> defaultConnectionSupplier;
     private final AVector<InjectedProperty> injectedProperties;
     private final int defaultFetchSize;
+    private final StatementCache statementCache;
+    private final QueryCache queryCache;
+    private final AVector<String> cacheTables;
+    private final boolean requiresOwningRows;
+    private final boolean streamsInWindows;
 
     public AQueryImpl(Class<T> cls, SqlSnippet sql, PrimitiveTypeRegistry primTypes, RowExtractor rowExtractor,
                       AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier,
-                      AVector<InjectedProperty> injectedProperties, int defaultFetchSize) {
+                      AVector<InjectedProperty> injectedProperties, int defaultFetchSize, StatementCache statementCache, QueryCache queryCache,
+                      AVector<String> cacheTables) {
         this.rowClass = cls;
         this.sql = sql;
         this.primTypes = primTypes;
@@ -49,12 +61,31 @@ public class AQueryImpl<T> implements AQuery<T> {
         this.defaultConnectionSupplier = defaultConnectionSupplier;
         this.injectedProperties = injectedProperties;
         this.defaultFetchSize = defaultFetchSize;
+        this.statementCache = statementCache;
+        this.queryCache = queryCache;
+        this.cacheTables = cacheTables;
+        this.requiresOwningRows = injectedProperties.exists(p -> p.requiresOwningRows());
+        this.streamsInWindows = injectedProperties.exists(p -> p.supportsOwningRows());
+    }
+
+    /**
+     * copies another query's configuration, for subclasses that add configuration of their own
+     */
+    protected AQueryImpl(AQueryImpl<T> other) {
+        this(other.rowClass, other.sql, other.primTypes, other.rowExtractor, other.listeners, other.defaultConnectionSupplier, other.injectedProperties,
+                other.defaultFetchSize, other.statementCache, other.queryCache, other.cacheTables);
+    }
+
+    protected AVector<InjectedProperty> injectedProperties() {
+        return injectedProperties;
     }
 
     protected AQueryImpl<T> build(Class<T> cls, SqlSnippet sql, PrimitiveTypeRegistry primTypes, RowExtractor rowExtractor,
                                   AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier,
-                                  AVector<InjectedProperty> injectedProperties, int defaultFetchSize) {
-        return new AQueryImpl<>(cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize);
+                                  AVector<InjectedProperty> injectedProperties, int defaultFetchSize, StatementCache statementCache,
+                                  QueryCache queryCache, AVector<String> cacheTables) {
+        return new AQueryImpl<>(cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize,
+                statementCache, queryCache, cacheTables);
     }
 
     @Override public AQuery<T> withInjectedProperty(InjectedProperty injectedProperty) {
@@ -62,7 +93,37 @@ public class AQueryImpl<T> implements AQuery<T> {
             throw new IllegalArgumentException("attempted to add a second injected property with name " + injectedProperty.propertyName());
         }
 
-        return build(rowClass, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties.append(injectedProperty), defaultFetchSize);
+        return build(rowClass, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties.append(injectedProperty), defaultFetchSize,
+                statementCache, queryCache, cacheTables);
+    }
+
+    @Override public AQuery<T> cached(String table, String... moreTables) {
+        final AVector.Builder<String> tables = AVector.builder();
+        tables.addAll(cacheTables);
+        tables.add(QueryCache.normalizedTableName(table));
+        for (String t: moreTables) {
+            tables.add(QueryCache.normalizedTableName(t));
+        }
+        return build(rowClass, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize,
+                statementCache, queryCache, tables.build());
+    }
+
+    private <X> X cachedOr(Connection conn, String kind, Supplier<X> query, ToIntFunction<X> numRows) {
+        if (cacheTables.isEmpty() || !queryCache.isEnabled() || queryCache.isBypassedFor(conn) || bypassesQueryCache(conn)) {
+            return query.get();
+        }
+
+        final CacheKey key = new CacheKey(kind, rowClass, rowExtractor.getClass(), injectedProperties, sql);
+        final AOption<Object> cached = queryCache.get(key);
+        if (cached.isDefined()) {
+            //noinspection unchecked
+            return (X) cached.get();
+        }
+
+        final long token = queryCache.token(cacheTables);
+        final X result = query.get();
+        queryCache.put(key, cacheTables, token, result, numRows.applyAsInt(result));
+        return result;
     }
 
     @Override public T single() {
@@ -76,28 +137,66 @@ public class AQueryImpl<T> implements AQuery<T> {
     }
 
     @Override public T single(Connection conn) {
-        return doQuery(conn, rs -> executeUnchecked(() -> {
+        return cachedOr(conn, "single", () -> doQuery(conn, rs -> executeUnchecked(() -> {
             if (!rs.next()) {
                 throw new NoSuchElementException("no result");
             }
             final Object memento = rowExtractor.mementoPerQuery(rowClass, primTypes, rs, false);
-            final T result = doExtract(conn, new LiveSqlRow(primTypes, rs), memento, false, injectedPropertyMementos(conn));
+            final T result = extractCurrent(conn, new LiveSqlRow(primTypes, rs), memento);
             if (rs.next()) {
                 throw new IllegalStateException("more than one result row");
             }
             afterIteration(1);
             return result;
-        }));
+        })), x -> 1);
+    }
+
+    /**
+     * @param windowed true if the query is read in windows, i.e. if it is streamed and related rows should be loaded per window
+     */
+    private static boolean usesOwningRows(InjectedProperty<?> ip, boolean windowed) {
+        return windowed ? ip.supportsOwningRows() : ip.requiresOwningRows();
     }
 
-    private Map<String, Object> injectedPropertyMementos(Connection conn) {
+    /**
+     * @return the mementos of all injected properties that do not use the owning rows
+     */
+    private Map<String, Object> injectedPropertyMementos(Connection conn, boolean windowed) {
         if (injectedProperties.isEmpty()) {
             return Collections.emptyMap();
         }
 
         final Map<String, Object> result = new HashMap<>();
         for (InjectedProperty<?> ip : injectedProperties) {
-            result.put(ip.propertyName(), ip.mementoPerQuery(conn, rowClass, sql));
+            if (!usesOwningRows(ip, windowed)) {
+                result.put(ip.propertyName(), ip.mementoPerQuery(conn, rowClass, sql));
+            }
+        }
+        return result;
+    }
+
+    private T extractCurrent(Connection conn, LiveSqlRow row, Object memento) throws SQLException {
+        if (!requiresOwningRows) {
+            return doExtract(conn, row, memento, false, injectedPropertyMementos(conn, false));
+        }
+        return extractDetached(conn, Collections.singletonList(row.detach()), memento, false, false, injectedPropertyMementos(conn, false)).get(0);
+    }
+
+    /**
+     * Extracts rows that were read in advance, creating the mementos of injected properties that use the owning rows for them.
+     */
+    private List<T> extractDetached(Connection conn, List<DetachedSqlRow> rows, Object memento, boolean isStreaming, boolean windowed,
+                                    Map<String, Object> injectedPropsMementos) throws SQLException {
+        final Map<String, Object> mementos = new HashMap<>(injectedPropsMementos);
+        for (InjectedProperty<?> ip : injectedProperties) {
+            if (usesOwningRows(ip, windowed)) {
+                mementos.put(ip.propertyName(), ip.mementoForRows(conn, rowClass, rows));
+            }
+        }
+
+        final List<T> result = new ArrayList<>(rows.size());
+        for (DetachedSqlRow row : rows) {
+            result.add(doExtract(conn, row, memento, isStreaming, mementos));
         }
         return result;
     }
@@ -109,15 +208,16 @@ public class AQueryImpl<T> implements AQuery<T> {
     private <X> X doQuery(Connection conn, Function<ResultSet, X> resultHandler) {
         listeners.forEach(l -> l.onBeforeQuery(sql, rowClass));
         try {
-            final PreparedStatement ps = conn.prepareStatement(sql.getSql());
+            final PreparedStatement ps = statementCache.prepare(conn, sql.getSql(), listeners);
             try {
                 SqlHelper.bindParameters(ps, sql.getParams(), primTypes);
-                final ResultSet rs = ps.executeQuery();
-                listeners.reverseIterator().forEachRemaining(SqlEngineEventListener::onAfterQueryExecution);
-                return resultHandler.apply(rs);
+                try (ResultSet rs = ps.executeQuery()) {
+                    listeners.reverseIterator().forEachRemaining(SqlEngineEventListener::onAfterQueryExecution);
+                    return resultHandler.apply(rs);
+                }
             }
             finally {
-                SqlHelper.closeQuietly(ps);
+                statementCache.release(conn, ps);
             }
         }
         catch (Throwable th) {
@@ -132,19 +232,19 @@ public class AQueryImpl<T> implements AQuery<T> {
     }
 
     @Override public AOption<T> optional(Connection conn) {
-        return doQuery(conn, rs -> executeUnchecked(() -> {
+        return cachedOr(conn, "optional", () -> doQuery(conn, rs -> executeUnchecked(() -> {
             if (!rs.next()) {
                 afterIteration(0);
                 return AOption.empty();
             }
             final Object memento = rowExtractor.mementoPerQuery(rowClass, primTypes, rs, false);
-            final T result = doExtract(conn, new LiveSqlRow(primTypes, rs), memento, false, injectedPropertyMementos(conn));
+            final T result = extractCurrent(conn, new LiveSqlRow(primTypes, rs), memento);
             if (rs.next()) {
                 throw new IllegalStateException("more than one result row");
             }
             afterIteration(1);
             return AOption.some(result);
-        }));
+        })), x -> 1);
     }
 
     @Override public AOption<T> first() {
@@ -152,16 +252,16 @@ public class AQueryImpl<T> implements AQuery<T> {
     }
 
     @Override public AOption<T> first(Connection conn) {
-        return doQuery(conn, rs -> executeUnchecked(() -> {
+        return cachedOr(conn, "first", () -> doQuery(conn, rs -> executeUnchecked(() -> {
             if (!rs.next()) {
                 afterIteration(0);
                 return AOption.empty();
             }
             final Object memento = rowExtractor.mementoPerQuery(rowClass, primTypes, rs, false);
-            final T result = doExtract(conn, new LiveSqlRow(primTypes, rs), memento, false, injectedPropertyMementos(conn));
+            final T result = extractCurrent(conn, new LiveSqlRow(primTypes, rs), memento);
             afterIteration(1);
             return AOption.some(result);
-        }));
+        })), x -> 1);
     }
 
     @Override public <R,A> R collect(Collector<T, A, R> collector) {
@@ -173,12 +273,24 @@ public class AQueryImpl<T> implements AQuery<T> {
             int count = 0;
 
             final Object memento = rowExtractor.mementoPerQuery(rowClass, primTypes, rs, false);
-            final Map<String, Object> injectedPropsMementos = injectedPropertyMementos(conn);
+            final Map<String, Object> injectedPropsMementos = injectedPropertyMementos(conn, false);
             final LiveSqlRow row = new LiveSqlRow(primTypes, rs);
-            while (rs.next()) {
-                final T el = doExtract(conn, row, memento, false, injectedPropsMementos);
-                collector.accumulator().accept(acc, el);
-                count += 1;
+            if (requiresOwningRows) {
+                final List<DetachedSqlRow> rows = new ArrayList<>();
+                while (rs.next()) {
+                    rows.add(row.detach());
+                }
+                for (T el : extractDetached(conn, rows, memento, false, false, injectedPropsMementos)) {
+                    collector.accumulator().accept(acc, el);
+                }
+                count = rows.size();
+            }
+            else {
+                while (rs.next()) {
+                    final T el = doExtract(conn, row, memento, false, injectedPropsMementos);
+                    collector.accumulator().accept(acc, el);
+                    count += 1;
+                }
             }
             afterIteration(count);
             return collector.finisher().apply(acc);
@@ -189,7 +301,7 @@ public class AQueryImpl<T> implements AQuery<T> {
     }
 
     @Override public AList<T> list(Connection conn) {
-        return collect(conn, AVector.streamCollector());
+        return cachedOr(conn, "list", () -> collect(conn, AVector.streamCollector()), AList::size);
     }
 
     private Map<String, Object> injectedPropsValuesForRow(Connection conn, SqlRow currentRow, Map<String, Object> injectedPropsMementos) {
@@ -206,9 +318,34 @@ public class AQueryImpl<T> implements AQuery<T> {
         return result;
     }
 
-    private T doExtract(Connection conn, LiveSqlRow row, Object memento, boolean isStreaming, Map<String, Object> injectedPropsMementos) throws SQLException {
+    private T doExtract(Connection conn, SqlRow row, Object memento, boolean isStreaming, Map<String, Object> injectedPropsMementos) throws SQLException {
         final Map<String, Object> injectedPropsValues = injectedPropsValuesForRow(conn, row, injectedPropsMementos);
-        return rowExtractor.fromSql(rowClass, primTypes, row, memento, isStreaming, injectedPropsValues);
+        return afterExtract(conn, rowExtractor.fromSql(rowClass, primTypes, row, memento, isStreaming, injectedPropsValues));
+    }
+
+    /**
+     * Subclasses return true to neither read nor fill the query cache for a given connection, e.g. if their
+     *  {@link #afterExtract(Connection, Object) afterExtract()} has effects that a cached result would skip.
+     */
+    protected boolean bypassesQueryCache(Connection conn) {
+        return false;
+    }
+
+    /**
+     * This is called for every row that is extracted from a result set, allowing subclasses to register or replace it.
+     */
+    protected T afterExtract(Connection conn, T extracted) {
+        return extracted;
+    }
+
+    @Override public CompletableFuture<T> singleAsync(Executor executor, Supplier<Connection> connectionSupplier) {
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, this::single);
+    }
+    @Override public CompletableFuture<AList<T>> listAsync(Executor executor, Supplier<Connection> connectionSupplier) {
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, this::list);
+    }
+    @Override public <R, A> CompletableFuture<R> collectAsync(Executor executor, Supplier<Connection> connectionSupplier, Collector<T, A, R> collector) {
+        return SqlHelper.supplyAsync(executor, connectionSupplier, statementCache, conn -> collect(conn, collector));
     }
 
     /**
@@ -231,11 +368,47 @@ public class AQueryImpl<T> implements AQuery<T> {
         return stream(defaultConnection(), fetchSize);
     }
     @Override public Stream<T> stream(Connection conn, int fetchSize) {
-        final ResultSetSpliterator rss = new ResultSetSpliterator(conn, fetchSize);
+        final ResultSetSpliterator rss = new ResultSetSpliterator(conn, fetchSize, true);
         return StreamSupport.stream(rss, false)
                 .onClose(rss::close);
     }
 
+    @Override public Stream<T> parallelStream(Supplier<Connection> connectionSupplier, String keyColumn, List<?> boundaries) {
+        return parallelStream(connectionSupplier, rangePartitions(keyColumn, boundaries));
+    }
+
+    static AVector<SqlSnippet> rangePartitions(String keyColumn, List<?> boundaries) {
+        if (boundaries.isEmpty()) {
+            return AVector.of(SqlSnippet.sql(keyColumn + " IS NOT NULL"));
+        }
+
+        final AVector.Builder<SqlSnippet> result = AVector.builder();
+        result.add(SqlSnippet.sql(keyColumn + "<?", boundaries.get(0)));
+        for (int i=1; i<boundaries.size(); i++) {
+            result.add(SqlSnippet.sql(keyColumn + ">=? AND " + keyColumn + "<?", boundaries.get(i-1), boundaries.get(i)));
+        }
+        result.add(SqlSnippet.sql(keyColumn + ">=?", boundaries.get(boundaries.size()-1)));
+        return result.build();
+    }
+
+    @Override public Stream<T> parallelStream(Supplier<Connection> connectionSupplier, List<SqlSnippet> partitionFilters) {
+        final Collection<PartitionSpliterator> all = new ConcurrentLinkedQueue<>();
+        final PartitionSpliterator root = new PartitionSpliterator(connectionSupplier, AVector.from(partitionFilters), 0, partitionFilters.size(), all);
+        return StreamSupport.stream(root, true)
+                .onClose(() -> all.forEach(PartitionSpliterator::closeCurrent));
+    }
+
+    private SqlSnippet partitionSql(SqlSnippet filter) {
+        return SqlSnippet.concat(SqlSnippet.sql("SELECT * FROM ("), sql, SqlSnippet.sql(") partitioned WHERE"), filter);
+    }
+
+    @Override public ACursor<T> cursor() {
+        return cursor(defaultConnection());
+    }
+    @Override public ACursor<T> cursor(Connection conn) {
+        return new Cursor(conn);
+    }
+
     @Override public void forEach(Consumer<T> consumer) {
         forEach(defaultConnection(), consumer);
     }
@@ -262,7 +435,7 @@ public class AQueryImpl<T> implements AQuery<T> {
         forEachWithRowAccess(defaultConnection(), fetchSize, consumer);
     }
     @Override public void forEachWithRowAccess(Connection conn, int fetchSize, BiConsumer<T, SqlRow> consumer) {
-        final ResultSetSpliterator rss = new ResultSetSpliterator(conn, fetchSize);
+        final ResultSetSpliterator rss = new ResultSetSpliterator(conn, fetchSize, false);
         try (Stream<T> s = StreamSupport.stream(rss, false).onClose(rss::close)) {
             s.forEach(el -> consumer.accept(el, rss.getCurrentRow()));
         }
@@ -271,9 +444,186 @@ public class AQueryImpl<T> implements AQuery<T> {
     //TODO fail if injected properties are present
     //TODO special handling - 'raw' --> ohne zusätzliches Mapping, nur Wrapper --> rowExtractor == RawRowExtractor.INSTANCE
 
+    /**
+     * Iterates over a range of partitions, reading them one after the other. Splitting divides the range of partitions that were not started
+     *  yet, so a single partition is never split.
+     */
+    private class PartitionSpliterator implements Spliterator<T> {
+        private final Supplier<Connection> connectionSupplier;
+        private final AVector<SqlSnippet> partitionFilters;
+        private final Collection<PartitionSpliterator> all;
+        private int next;
+        private final int end;
+
+        private Connection conn;
+        private Stream<T> currentStream;
+        private Spliterator<T> current;
+
+        PartitionSpliterator(Supplier<Connection> connectionSupplier, AVector<SqlSnippet> partitionFilters, int next, int end,
+                             Collection<PartitionSpliterator> all) {
+            this.connectionSupplier = connectionSupplier;
+            this.partitionFilters = partitionFilters;
+            this.next = next;
+            this.end = end;
+            this.all = all;
+            all.add(this);
+        }
+
+        @Override public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                while (true) {
+                    if (current == null) {
+                        if (next >= end) {
+                            return false;
+                        }
+                        startPartition(partitionFilters.get(next));
+                        next += 1;
+                    }
+                    if (current.tryAdvance(action)) {
+                        return true;
+                    }
+                    closeCurrent();
+                }
+            }
+            catch (Throwable th) {
+                closeCurrent();
+                AUnchecker.throwUnchecked(th);
+                return false; // dead code - for the compiler
+            }
+        }
+
+        private synchronized void startPartition(SqlSnippet filter) {
+            conn = connectionSupplier.get();
+            currentStream = build(rowClass, partitionSql(filter), primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties,
+                    defaultFetchSize, statementCache, queryCache, cacheTables).stream(conn);
+            current = currentStream.spliterator();
+        }
+
+        synchronized void closeCurrent() {
+            if (currentStream != null) {
+                currentStream.close();
+            }
+            if (conn != null) {
+                statementCache.evict(conn);
+                SqlHelper.closeQuietly(conn);
+            }
+            conn = null;
+            currentStream = null;
+            current = null;
+        }
+
+        @Override public Spliterator<T> trySplit() {
+            if (current != null || end - next < 2) {
+                return null;
+            }
+            final int mid = (next + end) >>> 1;
+            final PartitionSpliterator prefix = new PartitionSpliterator(connectionSupplier, partitionFilters, next, mid, all);
+            next = mid;
+            return prefix;
+        }
+        @Override public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+        @Override public int characteristics() {
+            return ORDERED;
+        }
+    }
+
+    private class Cursor implements ACursor<T> {
+        private final Connection conn;
+        private ResultSetSpliterator rss;
+        private int fetchSize;
+        private boolean exhausted = false;
+
+        Cursor(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override public AList<T> next(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("demand must be positive: " + n);
+            }
+            if (exhausted) {
+                return AVector.empty();
+            }
+
+            final int demandFetchSize = Math.min(n, Constants.MAX_CURSOR_FETCH_SIZE);
+            if (rss == null) {
+                // windows are independent of the demand so that small demands do not cause a detail query per row, and rows beyond the
+                //  demand wait in the window for subsequent calls
+                final int windowSize = Math.max(demandFetchSize, defaultFetchSize > 0 ? defaultFetchSize : Constants.DEFAULT_FETCH_SIZE);
+                rss = new ResultSetSpliterator(conn, demandFetchSize, true, windowSize);
+            }
+            else if (demandFetchSize != fetchSize) {
+                rss.setFetchSize(demandFetchSize);
+            }
+            fetchSize = demandFetchSize;
+
+            final AVector.Builder<T> result = AVector.builder();
+            try {
+                for (int i=0; i<n; i++) {
+                    if (!rss.tryAdvance(result::add)) {
+                        exhausted = true;
+                        break;
+                    }
+                }
+            }
+            catch (Throwable th) {
+                close();
+                AUnchecker.throwUnchecked(th);
+            }
+            return result.build();
+        }
+
+        @Override public boolean isExhausted() {
+            return exhausted;
+        }
+
+        @Override public void close() {
+            exhausted = true;
+            if (rss != null) {
+                rss.close();
+            }
+        }
+    }
+
+    private static class CacheKey {
+        private final String kind;
+        private final Class<?> rowClass;
+        private final Class<?> rowExtractorClass;
+        private final AVector<InjectedProperty> injectedProperties;
+        private final SqlSnippet sql;
+
+        CacheKey(String kind, Class<?> rowClass, Class<?> rowExtractorClass, AVector<InjectedProperty> injectedProperties, SqlSnippet sql) {
+            this.kind = kind;
+            this.rowClass = rowClass;
+            this.rowExtractorClass = rowExtractorClass;
+            this.injectedProperties = injectedProperties;
+            this.sql = sql;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final CacheKey cacheKey = (CacheKey) o;
+            return Objects.equals(kind, cacheKey.kind) &&
+                    Objects.equals(rowClass, cacheKey.rowClass) &&
+                    Objects.equals(rowExtractorClass, cacheKey.rowExtractorClass) &&
+                    Objects.equals(injectedProperties, cacheKey.injectedProperties) &&
+                    Objects.equals(sql, cacheKey.sql);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(kind, rowClass, rowExtractorClass, injectedProperties, sql);
+        }
+    }
+
     private class ResultSetSpliterator implements Spliterator<T> {
         private final Connection conn;
         private final int fetchSize;
+        private final boolean windowed;
+        private final boolean readsInWindows;
+        private final int windowSize;
         private PreparedStatement ps;
         private ResultSet rs;
         private LiveSqlRow row;
@@ -281,12 +631,37 @@ public class AQueryImpl<T> implements AQuery<T> {
         private Map<String, Object> injectedPropsMementos;
         private int numRows = 0;
 
+        /** for queries with injected properties that use the owning rows: the rows read in advance, and the beans extracted from them */
+        private List<DetachedSqlRow> windowRows = Collections.emptyList();
+        private List<T> window = Collections.emptyList();
+        private int windowPos = 0;
+
         private boolean started = false;
         private boolean closed = false;
 
-        ResultSetSpliterator(Connection conn, int fetchSize) {
+        /**
+         * @param windowed true if injected properties should be loaded per window of rows (with the fetch size as the window size) if they
+         *                 support it, false if they should be loaded for the entire result
+         */
+        ResultSetSpliterator(Connection conn, int fetchSize, boolean windowed) {
+            this(conn, fetchSize, windowed, fetchSize);
+        }
+
+        /**
+         * @param windowSize the number of rows per window if the spliterator is windowed, {@link Constants#DEFAULT_FETCH_SIZE} if it is not
+         *                   positive
+         */
+        ResultSetSpliterator(Connection conn, int fetchSize, boolean windowed, int windowSize) {
             this.conn = conn;
             this.fetchSize = fetchSize;
+            this.windowed = windowed;
+            this.readsInWindows = windowed ? streamsInWindows : requiresOwningRows;
+            if (!windowed) {
+                this.windowSize = Integer.MAX_VALUE;
+            }
+            else {
+                this.windowSize = windowSize > 0 ? windowSize : Constants.DEFAULT_FETCH_SIZE;
+            }
         }
 
         SqlRow getCurrentRow() {
@@ -296,7 +671,7 @@ public class AQueryImpl<T> implements AQuery<T> {
             if (!started) {
                 throw new IllegalStateException("stream is not started");
             }
-            return row;
+            return readsInWindows ? windowRows.get(windowPos - 1) : row;
         }
 
         private void startLazily() {
@@ -307,7 +682,7 @@ public class AQueryImpl<T> implements AQuery<T> {
 
             try {
                 listeners.forEach(l -> l.onBeforeQuery(sql, rowClass));
-                ps = conn.prepareStatement(sql.getSql());
+                ps = statementCache.prepare(conn, sql.getSql(), listeners);
                 ps.setFetchSize(fetchSize);
             }
             catch (Throwable th) {
@@ -321,7 +696,7 @@ public class AQueryImpl<T> implements AQuery<T> {
                 row = new LiveSqlRow(primTypes, rs);
                 listeners.reverseIterator().forEachRemaining(SqlEngineEventListener::onAfterQueryExecution);
                 memento = rowExtractor.mementoPerQuery(rowClass, primTypes, rs, true);
-                injectedPropsMementos = injectedPropertyMementos(conn);
+                injectedPropsMementos = injectedPropertyMementos(conn, windowed);
             }
             catch (Throwable th) {
                 releaseResources();
@@ -335,6 +710,9 @@ public class AQueryImpl<T> implements AQuery<T> {
             startLazily();
 
             try {
+                if (readsInWindows) {
+                    return advanceInWindow(action);
+                }
                 if (!rs.next()) {
                     close();
                     return false;
@@ -351,7 +729,44 @@ public class AQueryImpl<T> implements AQuery<T> {
             }
         }
 
-        private void close() {
+        /**
+         * Reads rows one window at a time, so that related rows are loaded per window and discarded with it. If the spliterator is not
+         *  windowed, the entire result is a single window.
+         */
+        private boolean advanceInWindow(Consumer<? super T> action) throws SQLException {
+            if (windowPos == window.size()) {
+                windowRows = Collections.emptyList();
+                window = Collections.emptyList();
+                windowPos = 0;
+                if (rs == null) {
+                    return false;
+                }
+
+                final List<DetachedSqlRow> rows = new ArrayList<>();
+                while (rows.size() < windowSize && rs.next()) {
+                    rows.add(row.detach());
+                }
+                if (rows.isEmpty()) {
+                    close();
+                    return false;
+                }
+                windowRows = rows;
+                window = extractDetached(conn, rows, memento, true, windowed, injectedPropsMementos);
+                windowPos = 0;
+            }
+
+            numRows += 1;
+            action.accept(window.get(windowPos++));
+            return true;
+        }
+
+        void setFetchSize(int fetchSize) {
+            if (rs != null) {
+                executeUnchecked(() -> rs.setFetchSize(fetchSize));
+            }
+        }
+
+        void close() {
             releaseResources();
             if (!closed) {
                 //only call this once
@@ -362,7 +777,7 @@ public class AQueryImpl<T> implements AQuery<T> {
 
         private void releaseResources() {
             SqlHelper.closeQuietly(rs);
-            SqlHelper.closeQuietly(ps);
+            statementCache.release(conn, ps);
             rs = null;
             ps = null;
         }
@@ -2,4 +2,9 @@ package com.ajjpj.asqlmapper.core.impl;
 
 public interface Constants {
     int DEFAULT_FETCH_SIZE = 100;
+    /** upper bound for fetch sizes derived from an {@link com.ajjpj.asqlmapper.core.ACursor ACursor}'s demand */
+    int MAX_CURSOR_FETCH_SIZE = 1000;
+    int DEFAULT_SCAN_PAGE_SIZE = 1000;
+    /** the maximum number of keys per detail query for relations that are loaded by the owning rows' keys */
+    int DEFAULT_MAX_KEYS_PER_QUERY = 1000;
 }
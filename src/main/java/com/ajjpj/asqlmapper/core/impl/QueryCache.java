@@ -0,0 +1,230 @@
+package com.ajjpj.asqlmapper.core.impl;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ajjpj.acollections.util.AOption;
+
+/**
+ * An in-process cache for query results, bounded by the total number of cached rows (evicting least recently used entries) and by
+ *  a time to live per entry.<p>
+ *
+ * Every entry is tagged with the tables its query reads, and writing to a table invalidates all entries tagged with it. Writes are
+ *  recognized by their SQL: the target table of INSERT, UPDATE, DELETE, MERGE, REPLACE and TRUNCATE statements is extracted from the
+ *  statement's beginning, and any other statement (e.g. DDL) invalidates the entire cache.<p>
+ *
+ * Invalidation happens when a write is executed, and again when the end of the writing transaction is
+ *  {@link #transactionEnded(Connection) reported}: until the commit, other transactions still read the old rows and may put them into
+ *  the cache. To prevent a slow read from re-populating the cache with data from before a write, results are only stored if none of
+ *  their tables were written while the query was running.<p>
+ *
+ * A connection with {@link UncommittedWrites uncommitted writes} neither reads from the cache nor fills it until the end of its
+ *  transaction is reported, so uncommitted changes do not leak to other transactions.<p>
+ *
+ * {@link #NONE} is a 'cache' that never caches anything.
+ */
+public class QueryCache {
+    public static final QueryCache NONE = new QueryCache(0, Duration.ZERO);
+
+    private static final Pattern WRITE_TARGET = Pattern.compile(
+            "^\\s*(?:INSERT\\s+INTO|UPDATE(?:\\s+ONLY)?|DELETE(?:\\s+FROM)?|MERGE\\s+INTO|REPLACE\\s+INTO|TRUNCATE(?:\\s+TABLE)?)\\s+([\\w.\"`\\[\\]]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final long maxRows;
+    private final long ttlNanos;
+
+    /** marks a transaction that wrote an unknown set of tables */
+    private static final String ALL_TABLES = "*";
+
+    private final UncommittedWrites<String> uncommittedWrites = new UncommittedWrites<>(this::invalidateWritten);
+
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, .75f, true);
+    private final Map<String, Set<Object>> keysByTable = new HashMap<>();
+    private final Map<String, Long> generationByTable = new HashMap<>();
+    private long globalGeneration = 0;
+    private long numRows = 0;
+
+    public QueryCache(long maxRows, Duration ttl) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("maximum number of cached rows must not be negative: " + maxRows);
+        }
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("time to live must not be negative: " + ttl);
+        }
+        this.maxRows = maxRows;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public boolean isEnabled() {
+        return maxRows > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Table names are compared case insensitively and without quotes or schema prefix, so e.g. {@code "public"."Person"} and
+     *  {@code person} are the same table.
+     */
+    public static String normalizedTableName(String tableName) {
+        final String unquoted = tableName.replaceAll("[\"`\\[\\]]", "");
+        return unquoted.substring(unquoted.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+    public synchronized AOption<Object> get(Object key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return AOption.none();
+        }
+        if (System.nanoTime() - entry.createdNanos >= ttlNanos) {
+            remove(key, entry);
+            return AOption.none();
+        }
+        return AOption.some(entry.value);
+    }
+
+    /**
+     * Returns a token representing the current state of a set of tables. Callers retrieve a token before executing a query and pass it to
+     *  {@link #put(Object, List, long, Object, int) put()} so that results are discarded if the tables were written in the meantime.
+     */
+    public synchronized long token(List<String> tables) {
+        // generations only ever grow, so the sum changes whenever one of them changes
+        long result = globalGeneration;
+        for (String table: tables) {
+            result += generationByTable.getOrDefault(table, 0L);
+        }
+        return result;
+    }
+
+    /**
+     * @param tables the (normalized) names of all tables the value depends on
+     * @param numRows the number of rows in the value, which is the entry's weight with regard to the cache's size limit
+     */
+    public synchronized void put(Object key, List<String> tables, long token, Object value, int numRows) {
+        final long weight = Math.max(numRows, 1);
+        if (!isEnabled() || value == null || weight > maxRows || token != token(tables)) {
+            return;
+        }
+
+        final Entry existing = entries.get(key);
+        if (existing != null) {
+            remove(key, existing);
+        }
+
+        entries.put(key, new Entry(value, tables, weight, System.nanoTime()));
+        this.numRows += weight;
+        for (String table: tables) {
+            keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+        }
+
+        final Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+        while (this.numRows > maxRows) {
+            final Map.Entry<Object, Entry> eldest = it.next();
+            it.remove();
+            unindex(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void remove(Object key, Entry entry) {
+        entries.remove(key);
+        unindex(key, entry);
+    }
+
+    private void unindex(Object key, Entry entry) {
+        numRows -= entry.weight;
+        for (String table: entry.tables) {
+            final Set<Object> keys = keysByTable.get(table);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTable.remove(table);
+                }
+            }
+        }
+    }
+
+    public synchronized void invalidate(String tableName) {
+        final String table = normalizedTableName(tableName);
+        generationByTable.merge(table, 1L, Long::sum);
+
+        final Set<Object> keys = keysByTable.remove(table);
+        if (keys != null) {
+            for (Object key: keys) {
+                final Entry entry = entries.remove(key);
+                if (entry != null) {
+                    unindex(key, entry);
+                }
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        globalGeneration += 1;
+        entries.clear();
+        keysByTable.clear();
+        numRows = 0;
+    }
+
+    /**
+     * Invalidates the entries affected by a statement that was executed, based on the statement's SQL.
+     */
+    public void invalidateFor(Connection conn, String sql) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final Matcher m = WRITE_TARGET.matcher(sql);
+        if (m.find()) {
+            uncommittedWrites.written(conn, normalizedTableName(m.group(1)));
+            invalidate(m.group(1));
+        }
+        else {
+            uncommittedWrites.written(conn, ALL_TABLES);
+            invalidateAll();
+        }
+    }
+
+    private void invalidateWritten(Set<String> tables) {
+        if (tables.contains(ALL_TABLES)) {
+            invalidateAll();
+        }
+        else {
+            tables.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * @return true if the cache must be bypassed for a connection because it has uncommitted writes
+     */
+    public boolean isBypassedFor(Connection conn) {
+        return isEnabled() && uncommittedWrites.hasUncommittedWrites(conn);
+    }
+
+    /**
+     * Invalidates all tables a connection wrote during the transaction that ended, so entries stored by other transactions while the
+     *  writes were not committed yet are discarded.
+     */
+    public void transactionEnded(Connection conn) {
+        uncommittedWrites.transactionEnded(conn);
+    }
+
+    private static class Entry {
+        final Object value;
+        final List<String> tables;
+        final long weight;
+        final long createdNanos;
+
+        Entry(Object value, List<String> tables, long weight, long createdNanos) {
+            this.value = value;
+            this.tables = tables;
+            this.weight = weight;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
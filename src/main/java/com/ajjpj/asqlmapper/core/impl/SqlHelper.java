@@ -1,12 +1,18 @@
 package com.ajjpj.asqlmapper.core.impl;
 
+import com.ajjpj.asqlmapper.core.PrimitiveTypeHandler;
 import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 public class SqlHelper {
@@ -20,6 +26,61 @@ public class SqlHelper {
         }
     }
 
+    /**
+     * Binds parameters for many executions of the same statement, e.g. the items of a JDBC batch. It keeps the
+     *  {@link PrimitiveTypeHandler} for each parameter position and reuses it as long as the position's values have
+     *  the same type, avoiding per-value lookups in the {@link PrimitiveTypeRegistry}.
+     */
+    public static class ParameterBinder {
+        private final PrimitiveTypeRegistry primTypes;
+        private Class<?>[] types = new Class<?>[0];
+        private PrimitiveTypeHandler[] handlers = new PrimitiveTypeHandler[0];
+
+        public ParameterBinder (PrimitiveTypeRegistry primTypes) {
+            this.primTypes = primTypes;
+        }
+
+        public void bind(PreparedStatement ps, List<?> params) throws SQLException {
+            if (params.size() > types.length) {
+                types = new Class<?>[params.size()];
+                handlers = new PrimitiveTypeHandler[params.size()];
+            }
+
+            int idx = 0;
+            for (Object o: params) {
+                if (o == null) {
+                    ps.setObject(idx+1, null);
+                }
+                else {
+                    if (o.getClass() != types[idx]) {
+                        types[idx] = o.getClass();
+                        handlers[idx] = primTypes.handlerFor(o.getClass());
+                    }
+                    ps.setObject(idx+1, handlers[idx].toSql(o));
+                }
+                idx += 1;
+            }
+        }
+    }
+
+    /**
+     * Runs database work on an executor, using a connection of its own: the connection is taken from the supplier on the executor's thread
+     *  and closed after the work is done, so all listener callbacks for the work happen on that thread.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Executor executor, Supplier<Connection> connectionSupplier, StatementCache statementCache,
+                                                       Function<Connection, T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Connection conn = connectionSupplier.get();
+            try {
+                return work.apply(conn);
+            }
+            finally {
+                statementCache.evict(conn);
+                closeQuietly(conn);
+            }
+        }, executor);
+    }
+
     public static void closeQuietly(AutoCloseable cl) {
         try {
             if (cl != null) cl.close();
@@ -0,0 +1,240 @@
+package com.ajjpj.asqlmapper.core.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+import com.ajjpj.acollections.immutable.AVector;
+import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
+
+/**
+ * Keeps prepared statements for reuse, holding an LRU of up to {@code maxPerConnection} statements per {@link Connection}.
+ *  Statements are keyed by their SQL string and the columns requested for generated keys (if any).<p>
+ *
+ * Code using the cache {@link #prepare(Connection, String, AVector) takes} a statement and {@link #release(Connection, PreparedStatement) returns}
+ *  it after use instead of closing it. A statement is not available to other callers while it is taken, so nested use of the same SQL (e.g. a
+ *  query executed while iterating over another query's results) gets separate statements. Returned statements have their parameters and
+ *  batch cleared, and any result set closed.<p>
+ *
+ * Cached statements are closed when they are evicted from the LRU, and all of a connection's statements are discarded once the connection
+ *  is found to be closed. Connections are referenced weakly, but pooled connections are typically kept open for a long time, so code
+ *  returning a connection to a pool should call {@link #evict(Connection)} first.<p>
+ *
+ * {@link #NONE} is a 'cache' that never caches anything, preparing a fresh statement for every call and closing it on release.
+ */
+public class StatementCache {
+    public static final StatementCache NONE = new StatementCache(0);
+
+    private final int maxPerConnection;
+    private final Map<Connection, ConnectionCache> byConnection = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public StatementCache(int maxPerConnection) {
+        if (maxPerConnection < 0) {
+            throw new IllegalArgumentException("maximum number of cached statements must not be negative: " + maxPerConnection);
+        }
+        this.maxPerConnection = maxPerConnection;
+    }
+
+    public int maxPerConnection() {
+        return maxPerConnection;
+    }
+
+    public PreparedStatement prepare(Connection conn, String sql, AVector<SqlEngineEventListener> listeners) throws SQLException {
+        return prepare(conn, sql, null, listeners);
+    }
+
+    /**
+     * @param generatedKeyColumns the columns whose generated values should be returned, or null for a statement without generated keys
+     */
+    public PreparedStatement prepare(Connection conn, String sql, String[] generatedKeyColumns, AVector<SqlEngineEventListener> listeners) throws SQLException {
+        if (maxPerConnection == 0) {
+            return doPrepare(conn, sql, generatedKeyColumns);
+        }
+
+        final ConnectionCache cache = cacheFor(conn);
+        final PreparedStatement cached = cache.take(new Key(sql, generatedKeyColumns));
+        if (cached != null) {
+            listeners.forEach(l -> l.onStatementCacheHit(sql));
+            return cached;
+        }
+
+        listeners.forEach(l -> l.onStatementCacheMiss(sql));
+        final PreparedStatement ps = doPrepare(conn, sql, generatedKeyColumns);
+        cache.prepared(ps, new Key(sql, generatedKeyColumns), ps.getFetchSize());
+        return ps;
+    }
+
+    private static PreparedStatement doPrepare(Connection conn, String sql, String[] generatedKeyColumns) throws SQLException {
+        return generatedKeyColumns != null ? conn.prepareStatement(sql, generatedKeyColumns) : conn.prepareStatement(sql);
+    }
+
+    private ConnectionCache cacheFor(Connection conn) throws SQLException {
+        synchronized (byConnection) {
+            ConnectionCache result = byConnection.get(conn);
+            if (result != null && conn.isClosed()) {
+                // the connection was closed (and possibly reopened by a pool) without evicting its statements
+                byConnection.remove(conn);
+                result.discard();
+                result = null;
+            }
+            if (result == null) {
+                result = new ConnectionCache();
+                byConnection.put(conn, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns a statement after use. This closes the statement if it can not be cached, so callers must not use it afterwards in either case.
+     */
+    public void release(Connection conn, PreparedStatement ps) {
+        if (ps == null) {
+            return;
+        }
+        if (maxPerConnection == 0) {
+            SqlHelper.closeQuietly(ps);
+            return;
+        }
+
+        final ConnectionCache cache = byConnection.get(conn);
+        if (cache == null) {
+            SqlHelper.closeQuietly(ps);
+            return;
+        }
+        cache.release(ps);
+    }
+
+    /**
+     * Closes and removes all statements cached for a given connection. Statements that are currently in use are closed when they are released.
+     */
+    public void evict(Connection conn) {
+        final ConnectionCache cache = byConnection.remove(conn);
+        if (cache != null) {
+            cache.discard();
+        }
+    }
+
+    private class ConnectionCache {
+        /** idle statements in LRU order, i.e. the least recently used statement first */
+        private final LinkedHashMap<Key, PreparedStatement> idle = new LinkedHashMap<>(16, .75f, true);
+        /** all statements prepared through this cache that are not closed, with their original fetch size */
+        private final Map<PreparedStatement, Entry> all = new WeakHashMap<>();
+        private boolean discarded = false;
+
+        synchronized PreparedStatement take(Key key) throws SQLException {
+            final PreparedStatement result = idle.remove(key);
+            if (result == null) {
+                return null;
+            }
+            if (result.isClosed()) {
+                // e.g. closed by the connection pool
+                all.remove(result);
+                return null;
+            }
+            return result;
+        }
+
+        synchronized void prepared(PreparedStatement ps, Key key, int fetchSize) {
+            all.put(ps, new Entry(key, fetchSize));
+        }
+
+        void release(PreparedStatement ps) {
+            final Entry entry;
+            synchronized (this) {
+                entry = all.get(ps);
+            }
+            if (entry == null) {
+                SqlHelper.closeQuietly(ps);
+                return;
+            }
+
+            try {
+                SqlHelper.closeQuietly(ps.getResultSet());
+                ps.clearParameters();
+                ps.clearBatch();
+                if (ps.getFetchSize() != entry.fetchSize) {
+                    ps.setFetchSize(entry.fetchSize);
+                }
+            }
+            catch (SQLException exc) {
+                synchronized (this) {
+                    all.remove(ps);
+                }
+                SqlHelper.closeQuietly(ps);
+                return;
+            }
+
+            final List<PreparedStatement> toClose = new ArrayList<>();
+            synchronized (this) {
+                if (discarded || idle.containsKey(entry.key)) {
+                    // there is an idle statement for the same SQL already, e.g. after nested use
+                    all.remove(ps);
+                    toClose.add(ps);
+                }
+                else {
+                    idle.put(entry.key, ps);
+                    final Iterator<PreparedStatement> it = idle.values().iterator();
+                    while (idle.size() > maxPerConnection) {
+                        final PreparedStatement evicted = it.next();
+                        it.remove();
+                        all.remove(evicted);
+                        toClose.add(evicted);
+                    }
+                }
+            }
+            toClose.forEach(SqlHelper::closeQuietly);
+        }
+
+        void discard() {
+            final List<PreparedStatement> toClose;
+            synchronized (this) {
+                discarded = true;
+                toClose = new ArrayList<>(idle.values());
+                idle.clear();
+                toClose.forEach(all::remove);
+            }
+            toClose.forEach(SqlHelper::closeQuietly);
+        }
+    }
+
+    private static class Entry {
+        final Key key;
+        final int fetchSize;
+
+        Entry(Key key, int fetchSize) {
+            this.key = key;
+            this.fetchSize = fetchSize;
+        }
+    }
+
+    private static class Key {
+        private final String sql;
+        private final String[] generatedKeyColumns;
+
+        Key(String sql, String[] generatedKeyColumns) {
+            this.sql = sql;
+            this.generatedKeyColumns = generatedKeyColumns;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return Objects.equals(sql, key.sql) && Arrays.equals(generatedKeyColumns, key.generatedKeyColumns);
+        }
+
+        @Override public int hashCode() {
+            return 31*Objects.hash(sql) + Arrays.hashCode(generatedKeyColumns);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ajjpj.asqlmapper.core.impl;
+
+import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of connections that executed writes which were not committed or rolled back yet, together with what each of them wrote
+ *  (e.g. table names or rows). Caches that are shared across transactions use this to neither read nor fill entries on such
+ *  connections: a connection sees its own uncommitted changes, and they must not leak to other transactions through a cache - least
+ *  of all if they are rolled back later.<p>
+ *
+ * Caches invalidate what a connection writes when the write is executed, but other transactions can re-populate them with the old
+ *  data until the write is committed. So when a connection's transaction ends, everything it wrote is passed to a callback which
+ *  invalidates it again.<p>
+ *
+ * JDBC does not report the end of a transaction, so code that commits or rolls back a connection calls
+ *  {@link #transactionEnded(Connection)}, and until then the connection is treated as having uncommitted writes. Writes on connections
+ *  in auto-commit mode are committed immediately, so they are not tracked. Connections are referenced weakly.
+ */
+public class UncommittedWrites<T> {
+    private final Map<Connection, Set<T>> writesByConnection = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Consumer<Set<T>> onTransactionEnded;
+
+    /**
+     * @param onTransactionEnded is called with everything a connection wrote when its transaction ends
+     */
+    public UncommittedWrites(Consumer<Set<T>> onTransactionEnded) {
+        this.onTransactionEnded = onTransactionEnded;
+    }
+
+    public void written(Connection conn, T item) {
+        if (!isAutoCommit(conn)) {
+            writesByConnection.computeIfAbsent(conn, c -> ConcurrentHashMap.newKeySet()).add(item);
+        }
+    }
+
+    public boolean hasUncommittedWrites(Connection conn) {
+        if (!writesByConnection.containsKey(conn)) {
+            return false;
+        }
+        if (isAutoCommit(conn)) {
+            // switching a connection to auto-commit mode commits its transaction
+            transactionEnded(conn);
+            return false;
+        }
+        return true;
+    }
+
+    public void transactionEnded(Connection conn) {
+        final Set<T> written = writesByConnection.remove(conn);
+        if (written != null) {
+            onTransactionEnded.accept(written);
+        }
+    }
+
+    private static boolean isAutoCommit(Connection conn) {
+        return executeUnchecked(conn::getAutoCommit);
+    }
+}
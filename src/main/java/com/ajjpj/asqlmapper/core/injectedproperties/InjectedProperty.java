@@ -1,6 +1,7 @@
 package com.ajjpj.asqlmapper.core.injectedproperties;
 
 import java.sql.Connection;
+import java.util.List;
 
 import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
@@ -24,7 +25,13 @@ import com.ajjpj.asqlmapper.core.common.SqlRow;
  *  denominator is that a 'property' value is provided for each row of a query's result.<p>
  *
  * The concept of 'property' is distinct from that of a 'column'. Columns contain primitive values which are
- *  mapped by a PrimitiveTypeHandler, while 'properties' can have any Java type.
+ *  mapped by a PrimitiveTypeHandler, while 'properties' can have any Java type.<p>
+ *
+ * Mementos are usually created before the owning query's rows are read, based on the owning query's SQL. Properties
+ *  can alternatively {@link #requiresOwningRows() require the owning rows}, e.g. to load related rows for their keys:
+ *  the query then reads its rows (or a window of them) before extracting them, and creates the memento from those rows.
+ *  Streams use owning rows for all properties that {@link #supportsOwningRows() support} it, reading one window of rows at a time,
+ *  so that they do not hold related rows for the entire result in memory.
  *
  * @param <M> the memento's type
  */
@@ -32,4 +39,29 @@ public interface InjectedProperty<M> {
     String propertyName();
     M mementoPerQuery(Connection conn, Class<?> owningClass, SqlSnippet owningQuery);
     AOption<Object> value(Connection conn, SqlRow currentRow, M memento);
+
+    /**
+     * @return true if the memento is created by {@link #mementoForRows(Connection, Class, List)} rather than by
+     *         {@link #mementoPerQuery(Connection, Class, SqlSnippet)}
+     */
+    default boolean requiresOwningRows() {
+        return false;
+    }
+
+    /**
+     * @return true if the memento can be created by {@link #mementoForRows(Connection, Class, List)}, which streams use rather than
+     *         {@link #mementoPerQuery(Connection, Class, SqlSnippet)}
+     */
+    default boolean supportsOwningRows() {
+        return requiresOwningRows();
+    }
+
+    /**
+     * Creates a memento from (a subset of) the owning query's rows. This is only called if {@link #supportsOwningRows()} returns true,
+     *  and it may be called several times per query with consecutive subsets of the rows. {@link #value(Connection, SqlRow, Object)}
+     *  is then only called for rows that were passed to the memento's creation.
+     */
+    default M mementoForRows(Connection conn, Class<?> owningClass, List<? extends SqlRow> owningRows) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not create mementos from owning rows");
+    }
 }
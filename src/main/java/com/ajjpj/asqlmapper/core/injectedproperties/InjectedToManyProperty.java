@@ -38,7 +38,7 @@ public class InjectedToManyProperty<T,C,B> implements InjectedProperty<Map<Objec
         final Map<Object,B> resultRaw = new HashMap<>();
 
         detailQuery.forEachWithRowAccess(conn, (el, row) -> {
-            final Object key = row.get(keyType, detailKeyName);
+            final Object key = key(row, detailKeyName);
             final B coll = resultRaw.computeIfAbsent(key, k -> collectionBuildStrategy.createBuilder());
             collectionBuildStrategy.addElement(coll, el);
         });
@@ -59,7 +59,20 @@ public class InjectedToManyProperty<T,C,B> implements InjectedProperty<Map<Objec
     }
 
     @Override public AOption<Object> value (Connection conn, SqlRow currentRow, Map<Object,C> memento) {
-        final Object curMasterKey = currentRow.get(keyType, masterKeyName);
+        final Object curMasterKey = key(currentRow, masterKeyName);
         return memento.containsKey(curMasterKey) ? AOption.some(memento.get(curMasterKey)) : AOption.some(collectionBuildStrategy.empty());
     }
+
+    private Object key(SqlRow row, String columnName) {
+        // numeric keys are by far the most common case, so they are read without generic type conversion
+        if (keyType == Long.class || keyType == long.class) {
+            final long l = row.getLongValue(columnName);
+            return row.wasNull() ? null : l;
+        }
+        if (keyType == Integer.class || keyType == int.class) {
+            final int i = row.getIntValue(columnName);
+            return row.wasNull() ? null : i;
+        }
+        return row.get(keyType, columnName);
+    }
 }
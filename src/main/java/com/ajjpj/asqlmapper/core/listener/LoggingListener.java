@@ -97,6 +97,15 @@ public class LoggingListener implements SqlEngineEventListener {
         start.remove();
         curSnippet.remove();
     }
+    @Override public void onStatementCacheHit(String sql) {
+        log.trace("reusing cached statement for {}", sql);
+        if (statisticsTracker != null) statisticsTracker.registerStatementCacheAccess(true);
+    }
+    @Override public void onStatementCacheMiss(String sql) {
+        log.trace("preparing statement for {}, no cached statement was available", sql);
+        if (statisticsTracker != null) statisticsTracker.registerStatementCacheAccess(false);
+    }
+
     @Override public void onFailed (Throwable th) {
         final Instant startInstant = start.get();
 
@@ -23,6 +23,18 @@ public interface SqlEngineEventListener {
     default void onAfterBatchUpdate() {
     }
 
+    /**
+     * called when a statement is reused from the engine's {@link com.ajjpj.asqlmapper.core.SqlEngine#withStatementCache(int) statement cache}
+     */
+    default void onStatementCacheHit(String sql) {
+    }
+    /**
+     * called when a statement is prepared because the engine's {@link com.ajjpj.asqlmapper.core.SqlEngine#withStatementCache(int) statement cache}
+     *  had no idle statement for the SQL. This is not called for engines without a statement cache.
+     */
+    default void onStatementCacheMiss(String sql) {
+    }
+
     default void onFailed(Throwable th) {
     }
 }
\ No newline at end of file
@@ -20,13 +20,17 @@ public class SqlStatistics {
     private final long totalInsertMillis;
     private final long totalUpdateMillis;
 
+    private final long numStatementCacheHits;
+    private final long numStatementCacheMisses;
+
     private final int firstNLimit;
     private final AMap<String, StatementStatistics> statisticsByStatement;
 
     private AList<StatementStatistics> statementStatistics;
 
     SqlStatistics (Instant startOfTracking, Instant endOfTracking, long numQueries, long numInserts, long numUpdates,
-                   long totalQueryMillis, long totalInsertMillis, long totalUpdateMillis, int firstNLimit, AMap<String, StatementStatistics> statisticsByStatement) {
+                   long totalQueryMillis, long totalInsertMillis, long totalUpdateMillis, long numStatementCacheHits, long numStatementCacheMisses,
+                   int firstNLimit, AMap<String, StatementStatistics> statisticsByStatement) {
         this.startOfTracking = startOfTracking;
         this.endOfTracking = endOfTracking;
         this.numQueries = numQueries;
@@ -35,6 +39,8 @@ public class SqlStatistics {
         this.totalQueryMillis = totalQueryMillis;
         this.totalInsertMillis = totalInsertMillis;
         this.totalUpdateMillis = totalUpdateMillis;
+        this.numStatementCacheHits = numStatementCacheHits;
+        this.numStatementCacheMisses = numStatementCacheMisses;
         this.firstNLimit = firstNLimit;
         this.statisticsByStatement = statisticsByStatement;
     }
@@ -71,6 +77,17 @@ public class SqlStatistics {
         return totalUpdateMillis;
     }
 
+    /**
+     * @return the number of statements that were reused from the engine's statement cache, which is 0 if no statement cache is configured
+     */
+    public long getNumStatementCacheHits () {
+        return numStatementCacheHits;
+    }
+
+    public long getNumStatementCacheMisses () {
+        return numStatementCacheMisses;
+    }
+
     public int getFirstNLimit () {
         return firstNLimit;
     }
@@ -97,6 +114,8 @@ public class SqlStatistics {
                 ", totalQueryMillis=" + totalQueryMillis +
                 ", totalInsertMillis=" + totalInsertMillis +
                 ", totalUpdateMillis=" + totalUpdateMillis +
+                ", numStatementCacheHits=" + numStatementCacheHits +
+                ", numStatementCacheMisses=" + numStatementCacheMisses +
                 ", firstNLimit=" + firstNLimit +
                 ", statisticsByStatement=" + statisticsByStatement +
                 '}';
@@ -1,14 +1,38 @@
 package com.ajjpj.asqlmapper.javabeans;
 
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
+import com.ajjpj.asqlmapper.core.Converter;
 import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 import com.ajjpj.asqlmapper.core.RowExtractor;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
 
 class BeanMetaDataBasedRowExtractor implements RowExtractor {
+    static final int MAX_CACHED_PLANS = 256;
+
     private final BeanMetaDataRegistry beanRegistry;
 
+    /**
+     * Extraction plans depend only on the bean type and the result set's columns, so they are shared between all
+     *  queries returning the same 'shape' - in particular between repeated executions of the same SQL. Ad-hoc SQL can
+     *  produce any number of shapes, so only the most recently used plans are kept.
+     */
+    private final Map<ShapeKey, ExtractionPlan> planCache = Collections.synchronizedMap(new LinkedHashMap<ShapeKey, ExtractionPlan>(16, .75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<ShapeKey, ExtractionPlan> eldest) {
+            return size() > MAX_CACHED_PLANS;
+        }
+    });
+
     public BeanMetaDataBasedRowExtractor (BeanMetaDataRegistry beanRegistry) {
         this.beanRegistry = beanRegistry;
     }
@@ -17,9 +41,46 @@ class BeanMetaDataBasedRowExtractor implements RowExtractor {
         return beanRegistry.canHandle(cls);
     }
 
+    @Override public Object mementoPerQuery (Class<?> cls, PrimitiveTypeRegistry primTypes, ResultSet rs, boolean isStreaming) throws SQLException {
+        final ResultSetMetaData rsMeta = rs.getMetaData();
+        final String[] columnNames = new String[rsMeta.getColumnCount()];
+        for (int i=0; i<columnNames.length; i++) {
+            columnNames[i] = rsMeta.getColumnName(i+1);
+        }
+
+        final ExtractionPlan plan = planFor(cls, columnNames);
+        final Converter<?>[] converters = new Converter<?>[plan.columnIndexes.length];
+        for (int i=0; i<converters.length; i++) {
+            converters[i] = primTypes.converterFor(jdbcType(rsMeta.getColumnType(plan.columnIndexes[i] + 1)), plan.properties[i].propClass());
+        }
+        return new Memento(plan, converters);
+    }
+
+    private static JDBCType jdbcType(int sqlType) {
+        try {
+            return JDBCType.valueOf(sqlType);
+        }
+        catch (IllegalArgumentException exc) {
+            // vendor specific type
+            return JDBCType.OTHER;
+        }
+    }
+
+    private ExtractionPlan planFor (Class<?> cls, String[] columnNames) {
+        return planCache.computeIfAbsent(new ShapeKey(cls, columnNames), k -> new ExtractionPlan(beanRegistry.getBeanMetaData(cls), columnNames));
+    }
+
+    int numCachedPlans () {
+        return planCache.size();
+    }
+
     @Override public <T> T fromSql (Class<T> cls, PrimitiveTypeRegistry primTypes, SqlRow row, Object mementoPerQuery, boolean isStreaming,
                                     Map<String,Object> injectedPropsValues) {
-        final BeanMetaData beanMetaData = beanRegistry.getBeanMetaData(cls);
+        final Memento memento = mementoPerQuery instanceof Memento
+                ? (Memento) mementoPerQuery
+                : mementoWithoutColumnTypes(cls, primTypes, row);
+        final ExtractionPlan plan = memento.plan;
+        final BeanMetaData beanMetaData = plan.beanMetaData;
 
         Object builder = beanMetaData.newBuilder();
         for(String injectedPropName: injectedPropsValues.keySet()) {
@@ -27,16 +88,87 @@ class BeanMetaDataBasedRowExtractor implements RowExtractor {
             //TODO better reporting for "not found"
         }
 
-        for(String colName: row.columnNames()) {
-            final BeanProperty prop = beanMetaData.getBeanPropertyForColumnName(colName);
-            if(prop == null)
-                continue;
-            if(injectedPropsValues.containsKey(prop.name()))
+        final boolean hasInjectedProps = !injectedPropsValues.isEmpty();
+        for(int i=0; i<plan.columnIndexes.length; i++) {
+            final BeanProperty prop = plan.properties[i];
+            if(hasInjectedProps && injectedPropsValues.containsKey(prop.name()))
                 continue;
 
-            builder = prop.setOnBuilder(builder, row.get(prop.propClass(), colName));
+            builder = prop.setOnBuilder(builder, memento.converters[i].fromSql(row.getRaw(plan.columnIndexes[i])));
         }
         //noinspection unchecked
         return (T) beanMetaData.finalizeBuilder(builder);
     }
+
+    private Memento mementoWithoutColumnTypes (Class<?> cls, PrimitiveTypeRegistry primTypes, SqlRow row) {
+        final ExtractionPlan plan = planFor(cls, row.columnNames().toArray(new String[0]));
+        final Converter<?>[] converters = new Converter<?>[plan.columnIndexes.length];
+        for (int i=0; i<converters.length; i++) {
+            converters[i] = primTypes.converterFor(JDBCType.OTHER, plan.properties[i].propClass());
+        }
+        return new Memento(plan, converters);
+    }
+
+    /**
+     * The per-row work of mapping a row to a bean, resolved once per result set shape: for every column that
+     *  corresponds to a bean property, its (0-based) column index and the property. Columns without a matching property
+     *  are not part of the plan.
+     */
+    static class ExtractionPlan {
+        final BeanMetaData beanMetaData;
+        final int[] columnIndexes;
+        final BeanProperty[] properties;
+
+        ExtractionPlan (BeanMetaData beanMetaData, String[] columnNames) {
+            this.beanMetaData = beanMetaData;
+
+            final List<Integer> indexes = new ArrayList<>();
+            final List<BeanProperty> props = new ArrayList<>();
+            for (int i=0; i<columnNames.length; i++) {
+                final BeanProperty prop = beanMetaData.getBeanPropertyForColumnName(columnNames[i]);
+                if (prop != null) {
+                    indexes.add(i);
+                    props.add(prop);
+                }
+            }
+
+            this.columnIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+            this.properties = props.toArray(new BeanProperty[0]);
+        }
+    }
+
+    /**
+     * A query's plan together with the converters for each of its slots. Converters depend on the query's
+     *  {@link PrimitiveTypeRegistry}, so they are resolved per query (from the registry's converter cache).
+     */
+    static class Memento {
+        final ExtractionPlan plan;
+        final Converter<?>[] converters;
+
+        Memento (ExtractionPlan plan, Converter<?>[] converters) {
+            this.plan = plan;
+            this.converters = converters;
+        }
+    }
+
+    private static class ShapeKey {
+        private final Class<?> beanType;
+        private final String[] columnNames;
+
+        ShapeKey (Class<?> beanType, String[] columnNames) {
+            this.beanType = beanType;
+            this.columnNames = columnNames;
+        }
+
+        @Override public boolean equals (Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final ShapeKey shapeKey = (ShapeKey) o;
+            return Objects.equals(beanType, shapeKey.beanType) && Arrays.equals(columnNames, shapeKey.columnNames);
+        }
+
+        @Override public int hashCode () {
+            return 31*Objects.hash(beanType) + Arrays.hashCode(columnNames);
+        }
+    }
 }
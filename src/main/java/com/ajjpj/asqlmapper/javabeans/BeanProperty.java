@@ -1,12 +1,12 @@
 package com.ajjpj.asqlmapper.javabeans;
 
-import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
-
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import com.ajjpj.acollections.ASet;
 import com.ajjpj.acollections.util.AOption;
@@ -27,6 +27,10 @@ public class BeanProperty {
     private final Method builderSetterMethod;
     private final boolean builderSetterReturnsBean;
 
+    private final Function<Object,Object> getter;
+    private final Optional<BiFunction<Object,Object,Object>> setter;
+    private final BiFunction<Object,Object,Object> builderSetter;
+
     public BeanProperty(Class<?> beanClass, Class<?> settablePropClass, Type propType,
                         String name, String columnName, Method getterMethod, Optional<Method> setterMethod,
                         boolean setterReturnsBean,
@@ -43,6 +47,10 @@ public class BeanProperty {
         this.field = field;
         this.builderSetterMethod = builderSetterMethod;
         this.builderSetterReturnsBean = builderSetterReturnsBean;
+
+        this.getter = PropertyAccessors.getter(getterMethod);
+        this.setter = setterMethod.map(mtd -> PropertyAccessors.setter(mtd, setterReturnsBean));
+        this.builderSetter = PropertyAccessors.setter(builderSetterMethod, builderSetterReturnsBean);
     }
 
     public Class<?> propClass() {
@@ -83,24 +91,17 @@ public class BeanProperty {
     }
 
     public Object get(Object bean) {
-        return executeUnchecked(() -> getterMethod.invoke(bean));
+        return getter.apply(bean);
     }
 
     public Object set(Object bean, Object value) {
-        final Method mtd = setterMethod
-                .orElseThrow(() -> new IllegalStateException("no setter for property " + name + " in bean " + getterMethod.getDeclaringClass().getName()));
-
-        return executeUnchecked(() -> {
-            final Object result = mtd.invoke(bean, value);
-            return setterReturnsBean ? result : bean;
-        });
+        return setter
+                .orElseThrow(() -> new IllegalStateException("no setter for property " + name + " in bean " + getterMethod.getDeclaringClass().getName()))
+                .apply(bean, value);
     }
 
     public Object setOnBuilder(Object builder, Object value) {
-        return executeUnchecked(() -> {
-            final Object result = builderSetterMethod.invoke(builder, value);
-            return builderSetterReturnsBean ? result : builder;
-        });
+        return builderSetter.apply(builder, value);
     }
 
     public String name() {
@@ -0,0 +1,173 @@
+package com.ajjpj.asqlmapper.javabeans;
+
+import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.ajjpj.acollections.util.AUnchecker;
+
+/**
+ * Creates functional accessors for getter and setter methods. Wherever possible, these are spun through
+ *  {@link LambdaMetafactory} so that calling them is as cheap as a regular (inlinable) method call, avoiding
+ *  {@link Method#invoke}'s varargs array and access checks per call.<p>
+ *
+ * That requires the method to be public and its declaring class to be public and visible from this library's class
+ *  loader. For all other methods, and for methods that {@link LambdaMetafactory} rejects nevertheless, the accessors fall
+ *  back to reflection.
+ */
+class PropertyAccessors {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * @return a function calling the getter on its argument
+     */
+    static Function<Object,Object> getter(Method getterMethod) {
+        if (canUseLambdaMetafactory(getterMethod)) {
+            try {
+                return lambdaGetter(getterMethod);
+            }
+            catch (Throwable th) {
+                rethrowUnlessRejected(th);
+            }
+        }
+        return new ReflectiveGetter(getterMethod);
+    }
+
+    private static Function<Object,Object> lambdaGetter(Method getterMethod) throws Throwable {
+        final MethodHandle mh = LOOKUP.unreflect(getterMethod);
+        final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                mh,
+                MethodType.methodType(wrapperFor(getterMethod.getReturnType()), getterMethod.getDeclaringClass()));
+        //noinspection unchecked
+        return (Function<Object, Object>) site.getTarget().invoke();
+    }
+
+    /**
+     * @param returnsTarget true if the method returns the (new) object that subsequent calls should operate on
+     *                      rather than the object it was called on, as is the case for 'wither' style methods
+     * @return a function calling the setter on its first argument, passing its second argument as value, and returning
+     *         the object to use for subsequent calls
+     */
+    static BiFunction<Object,Object,Object> setter(Method setterMethod, boolean returnsTarget) {
+        if (canUseLambdaMetafactory(setterMethod)) {
+            try {
+                return lambdaSetter(setterMethod, returnsTarget);
+            }
+            catch (Throwable th) {
+                rethrowUnlessRejected(th);
+            }
+        }
+        return new ReflectiveSetter(setterMethod, returnsTarget);
+    }
+
+    /**
+     * Failures to spin an accessor that mean the method can not be called through {@link LambdaMetafactory} (e.g. because
+     *  of access rules or class loading) cause a fallback to reflection, all other failures are propagated.
+     */
+    private static void rethrowUnlessRejected(Throwable th) {
+        if (th instanceof LambdaConversionException || th instanceof IllegalAccessException || th instanceof LinkageError) {
+            return;
+        }
+        AUnchecker.throwUnchecked(th);
+    }
+
+    private static BiFunction<Object,Object,Object> lambdaSetter(Method setterMethod, boolean returnsTarget) throws Throwable {
+        final MethodHandle mh = LOOKUP.unreflect(setterMethod);
+        final Class<?> returnType = setterMethod.getReturnType();
+        final Class<?> paramType = wrapperFor(setterMethod.getParameterTypes()[0]);
+
+        if (returnType == void.class) {
+            final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    mh,
+                    MethodType.methodType(void.class, setterMethod.getDeclaringClass(), paramType));
+            //noinspection unchecked
+            final BiConsumer<Object,Object> consumer = (BiConsumer<Object, Object>) site.getTarget().invoke();
+            return (target, value) -> {
+                consumer.accept(target, value);
+                return target;
+            };
+        }
+
+        final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                MethodType.methodType(BiFunction.class),
+                MethodType.methodType(Object.class, Object.class, Object.class),
+                mh,
+                MethodType.methodType(wrapperFor(returnType), setterMethod.getDeclaringClass(), paramType));
+        //noinspection unchecked
+        final BiFunction<Object,Object,Object> function = (BiFunction<Object, Object, Object>) site.getTarget().invoke();
+        if (returnsTarget) {
+            return function;
+        }
+        return (target, value) -> {
+            function.apply(target, value);
+            return target;
+        };
+    }
+
+    private static boolean canUseLambdaMetafactory(Method mtd) {
+        if (!Modifier.isPublic(mtd.getModifiers()) || Modifier.isStatic(mtd.getModifiers())) {
+            return false;
+        }
+        for (Class<?> cls = mtd.getDeclaringClass(); cls != null; cls = cls.getEnclosingClass()) {
+            if (!Modifier.isPublic(cls.getModifiers())) {
+                return false;
+            }
+        }
+
+        // the generated class is defined in this library's class loader, so it must be able to resolve the bean class
+        try {
+            return Class.forName(mtd.getDeclaringClass().getName(), false, PropertyAccessors.class.getClassLoader()) == mtd.getDeclaringClass();
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> wrapperFor(Class<?> cls) {
+        if (!cls.isPrimitive()) return cls;
+        return MethodType.methodType(cls).wrap().returnType();
+    }
+
+    static class ReflectiveGetter implements Function<Object,Object> {
+        private final Method getterMethod;
+
+        ReflectiveGetter(Method getterMethod) {
+            this.getterMethod = getterMethod;
+        }
+
+        @Override public Object apply(Object bean) {
+            return executeUnchecked(() -> getterMethod.invoke(bean));
+        }
+    }
+
+    static class ReflectiveSetter implements BiFunction<Object,Object,Object> {
+        private final Method setterMethod;
+        private final boolean returnsTarget;
+
+        ReflectiveSetter(Method setterMethod, boolean returnsTarget) {
+            this.setterMethod = setterMethod;
+            this.returnsTarget = returnsTarget;
+        }
+
+        @Override public Object apply(Object target, Object value) {
+            return executeUnchecked(() -> {
+                final Object result = setterMethod.invoke(target, value);
+                return returnsTarget ? result : target;
+            });
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.ajjpj.asqlmapper.mapper;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.ajjpj.acollections.AList;
+import com.ajjpj.acollections.util.AOption;
+import com.ajjpj.acollections.util.AUnchecker;
+import com.ajjpj.asqlmapper.core.SqlSnippet;
+import com.ajjpj.asqlmapper.core.impl.Constants;
+import com.ajjpj.asqlmapper.core.impl.SqlHelper;
+import com.ajjpj.asqlmapper.javabeans.BeanProperty;
+
+/**
+ * Reads all rows of a query page by page, using the values of a key column to continue where the previous page ended (as opposed to
+ *  skipping rows with OFFSET, which gets slower with every page). Each page is read by a separate, short-lived statement, so a scan
+ *  holds no database resources while the consumer is processing rows.<p>
+ *
+ * The key column must be unique and not null, and it must be part of the base query's results. The generated queries have the form
+ *  {@code SELECT * FROM (<base query>) scanned WHERE <key> > ? ORDER BY <key> <limit>}, with the limit clause provided by the
+ *  mapper's {@link DatabaseDialect}.<p>
+ *
+ * A scan is immutable and can be executed any number of times.
+ */
+public class AKeysetScan<T> {
+    private final SqlMapper mapper;
+    private final Class<T> beanType;
+    private final SqlSnippet baseSql;
+    private final String keyColumn;
+    private final int pageSize;
+
+    AKeysetScan(SqlMapper mapper, Class<T> beanType, SqlSnippet baseSql, String keyColumn) {
+        this(mapper, beanType, baseSql, keyColumn, Constants.DEFAULT_SCAN_PAGE_SIZE);
+    }
+    private AKeysetScan(SqlMapper mapper, Class<T> beanType, SqlSnippet baseSql, String keyColumn, int pageSize) {
+        this.mapper = mapper;
+        this.beanType = beanType;
+        this.baseSql = baseSql;
+        this.keyColumn = keyColumn;
+        this.pageSize = pageSize;
+    }
+
+    public AKeysetScan<T> pageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be positive: " + pageSize);
+        }
+        return new AKeysetScan<>(mapper, beanType, baseSql, keyColumn, pageSize);
+    }
+
+    public Stream<T> stream() {
+        return stream(mapper.engine().defaultConnection());
+    }
+
+    /**
+     * Reads all pages on a given connection, each page when the consumer reaches its beginning.
+     */
+    public Stream<T> stream(Connection conn) {
+        return stream(afterKey -> CompletableFuture.completedFuture(page(conn, afterKey)));
+    }
+
+    /**
+     * Reads pages on an executor, starting to read the next page as soon as the previous one is available. Each page is read on a
+     *  connection of its own, which is taken from the supplier and closed afterwards. Code using this method should close the returned
+     *  stream if it stops reading before the end so that no page is read in vain.
+     */
+    public Stream<T> stream(Executor executor, Supplier<Connection> connectionSupplier) {
+        return stream(afterKey ->
+                SqlHelper.supplyAsync(executor, connectionSupplier, mapper.engine().statementCache(), conn -> page(conn, afterKey)));
+    }
+
+    private Stream<T> stream(Function<AOption<Object>, CompletableFuture<Page>> pageReader) {
+        final PageSpliterator spliterator = new PageSpliterator(pageReader);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    public SqlSnippet pageSql(AOption<Object> afterKey) {
+        final SqlSnippet filtered = afterKey.fold(
+                SqlSnippet.concat(SqlSnippet.sql("SELECT * FROM ("), baseSql, SqlSnippet.sql(") scanned")),
+                (res, key) -> SqlSnippet.concat(res, SqlSnippet.sql("WHERE " + keyColumn + " > ?", key)));
+        return SqlSnippet.concat(filtered, SqlSnippet.sql("ORDER BY " + keyColumn), mapper.dialect().limit(pageSize));
+    }
+
+    private Page page(Connection conn, AOption<Object> afterKey) {
+        final BeanProperty keyProperty = mapper.getBeanMappingRegistry()
+                .getBeanMapping(conn, beanType)
+                .beanMetaData()
+                .getBeanPropertyForColumnName(keyColumn);
+        if (keyProperty == null) {
+            throw new IllegalArgumentException(beanType + " has no property for key column " + keyColumn);
+        }
+
+        final AList<T> rows = mapper.query(beanType, pageSql(afterKey)).list(conn);
+        final AOption<Object> lastKey = rows.size() < pageSize ? AOption.none() : AOption.some(keyProperty.get(rows.get(pageSize - 1)));
+        return new Page(rows, lastKey);
+    }
+
+    private class Page {
+        final AList<T> rows;
+        /** the key to continue after, or none if this is the last page */
+        final AOption<Object> lastKey;
+
+        Page(AList<T> rows, AOption<Object> lastKey) {
+            this.rows = rows;
+            this.lastKey = lastKey;
+        }
+    }
+
+    private class PageSpliterator extends Spliterators.AbstractSpliterator<T> {
+        private final Function<AOption<Object>, CompletableFuture<Page>> pageReader;
+        private Iterator<T> current = Collections.emptyIterator();
+        private CompletableFuture<Page> next;
+        private boolean started = false;
+
+        PageSpliterator(Function<AOption<Object>, CompletableFuture<Page>> pageReader) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.pageReader = pageReader;
+        }
+
+        @Override public boolean tryAdvance(Consumer<? super T> action) {
+            if (!started) {
+                started = true;
+                next = pageReader.apply(AOption.none());
+            }
+
+            while (!current.hasNext()) {
+                if (next == null) {
+                    return false;
+                }
+                final Page page = join(next);
+                next = page.lastKey.isDefined() ? pageReader.apply(page.lastKey) : null;
+                current = page.rows.iterator();
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        private Page join(CompletableFuture<Page> f) {
+            try {
+                return f.join();
+            }
+            catch (CompletionException exc) {
+                AUnchecker.throwUnchecked(exc.getCause());
+                return null; // for the compiler
+            }
+        }
+
+        void close() {
+            if (next != null) {
+                next.cancel(false);
+                next = null;
+            }
+            current = Collections.emptyIterator();
+        }
+    }
+}
@@ -5,8 +5,19 @@ import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
 
 public interface AMapperQuery<T> extends AQuery<T> {
     @Override AMapperQuery<T> withInjectedProperty(InjectedProperty injectedProperty);
+    @Override AMapperQuery<T> cached(String table, String... moreTables);
 
     AMapperQuery<T> withManyToMany(String propertyName);
     AMapperQuery<T> withOneToMany(String propertyName);
     AMapperQuery<T> withToOne(String propertyName);
+
+    /**
+     * Adds relations of this query's beans, including relations of the related beans, see {@link FetchGraph}.
+     */
+    AMapperQuery<T> withFetchGraph(FetchGraph... graphs);
+
+    /**
+     * Returns a query that registers every bean it loads with a {@link ChangeTracker}.
+     */
+    AMapperQuery<T> trackedBy(ChangeTracker changeTracker);
 }
@@ -9,21 +9,48 @@ import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
 import com.ajjpj.asqlmapper.core.RowExtractor;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
 import com.ajjpj.asqlmapper.core.impl.AQueryImpl;
+import com.ajjpj.asqlmapper.core.impl.QueryCache;
+import com.ajjpj.asqlmapper.core.impl.StatementCache;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
 import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 
 public class AMapperQueryImpl<T> extends AQueryImpl<T> implements AMapperQuery<T> {
     private final SqlMapper mapper;
+    private final AOption<ChangeTracker> changeTracker;
 
     public AMapperQueryImpl(SqlMapper mapper, Class<T> cls, SqlSnippet sql, PrimitiveTypeRegistry primTypes,
                             RowExtractor rowExtractor,
                             AVector<SqlEngineEventListener> listeners,
                             AOption<Supplier<Connection>> defaultConnectionSupplier,
                             AVector<InjectedProperty> injectedProperties,
-                            int defaultFetchSize) {
-        super(cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize);
+                            int defaultFetchSize,
+                            StatementCache statementCache,
+                            QueryCache queryCache,
+                            AVector<String> cacheTables) {
+        this(mapper, cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize, statementCache,
+                queryCache, cacheTables, AOption.none());
+    }
+    private AMapperQueryImpl(SqlMapper mapper, Class<T> cls, SqlSnippet sql, PrimitiveTypeRegistry primTypes,
+                             RowExtractor rowExtractor,
+                             AVector<SqlEngineEventListener> listeners,
+                             AOption<Supplier<Connection>> defaultConnectionSupplier,
+                             AVector<InjectedProperty> injectedProperties,
+                             int defaultFetchSize,
+                             StatementCache statementCache,
+                             QueryCache queryCache,
+                             AVector<String> cacheTables,
+                             AOption<ChangeTracker> changeTracker) {
+        super(cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize, statementCache, queryCache,
+                cacheTables);
         this.mapper = mapper;
+        this.changeTracker = changeTracker;
+    }
+    private AMapperQueryImpl(AMapperQueryImpl<T> other, AOption<ChangeTracker> changeTracker) {
+        super(other);
+        this.mapper = other.mapper;
+        this.changeTracker = changeTracker;
     }
+
     @Override public AMapperQuery<T> withManyToMany(String propertyName) {
         return withInjectedProperty(mapper.manyToMany(propertyName));
     }
@@ -33,14 +60,55 @@ public class AMapperQueryImpl<T> extends AQueryImpl<T> implements AMapperQuery<T
     @Override public AMapperQuery<T> withToOne(String propertyName) {
         return withInjectedProperty(mapper.toOne(propertyName));
     }
+    @Override public AMapperQuery<T> withFetchGraph(FetchGraph... graphs) {
+        AMapperQuery<T> result = this;
+        for (FetchGraph graph : graphs) {
+            result = result.withInjectedProperty(mapper.fetchGraph(graph));
+        }
+        return result;
+    }
 
     @Override protected AQueryImpl<T> build(Class<T> cls, SqlSnippet sql, PrimitiveTypeRegistry primTypes, RowExtractor rowExtractor,
                                             AVector<SqlEngineEventListener> listeners, AOption<Supplier<Connection>> defaultConnectionSupplier,
-                                            AVector<InjectedProperty> injectedProperties, int defaultFetchSize) {
-        return new AMapperQueryImpl<>(mapper, cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize);
+                                            AVector<InjectedProperty> injectedProperties, int defaultFetchSize, StatementCache statementCache,
+                                            QueryCache queryCache, AVector<String> cacheTables) {
+        return new AMapperQueryImpl<>(mapper, cls, sql, primTypes, rowExtractor, listeners, defaultConnectionSupplier, injectedProperties, defaultFetchSize,
+                statementCache, queryCache, cacheTables, changeTracker);
+    }
+
+    @Override public AMapperQuery<T> trackedBy(ChangeTracker changeTracker) {
+        return new AMapperQueryImpl<>(this, AOption.some(changeTracker));
+    }
+
+    /**
+     * Cached results were extracted without the connection's identity map and without this query's change tracker, so they would bypass both.
+     */
+    @Override protected boolean bypassesQueryCache(Connection conn) {
+        return changeTracker.isDefined() || mapper.identityMap(conn).isDefined();
+    }
+
+    @Override protected T afterExtract(Connection conn, T extracted) {
+        final AOption<IdentityMap> identityMap = mapper.identityMap(conn);
+        final T result;
+        if (identityMap.isEmpty()) {
+            result = extracted;
+        }
+        else if (injectedProperties().isEmpty()) {
+            result = identityMap.get().canonical(extracted);
+        }
+        else {
+            identityMap.get().put(extracted);
+            result = extracted;
+        }
+
+        changeTracker.ifPresent(t -> t.track(result));
+        return result;
     }
 
     @Override public AMapperQuery<T> withInjectedProperty(InjectedProperty injectedProperty) {
         return (AMapperQuery<T>) super.withInjectedProperty(injectedProperty);
     }
+    @Override public AMapperQuery<T> cached(String table, String... moreTables) {
+        return (AMapperQuery<T>) super.cached(table, moreTables);
+    }
 }
@@ -0,0 +1,94 @@
+package com.ajjpj.asqlmapper.mapper;
+
+import java.sql.Connection;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ajjpj.acollections.AList;
+import com.ajjpj.acollections.util.AOption;
+import com.ajjpj.asqlmapper.javabeans.BeanProperty;
+import com.ajjpj.asqlmapper.mapper.beans.BeanMapping;
+
+/**
+ * Keeps snapshots of the column values of beans as they were loaded, so that {@link SqlMapper#updateChanged(ChangeTracker, Object)} can
+ *  write only the columns that actually changed. Beans are registered explicitly by calling {@link #track(Object)}, or implicitly by
+ *  loading them with a query that is {@link AMapperQuery#trackedBy(ChangeTracker) tracked}.<p>
+ *
+ * Snapshots are identified by bean type and primary key, so a bean and its modified (immutable) copies share a snapshot. A tracker is
+ *  bound to a connection and is meant to live no longer than a transaction: it is not thread safe, and it holds its snapshots until it is
+ *  {@link #clear() cleared}.
+ */
+public class ChangeTracker {
+    private final SqlMapper mapper;
+    private final Connection conn;
+    private final Map<RowKey, Object[]> snapshots = new HashMap<>();
+
+    ChangeTracker(SqlMapper mapper, Connection conn) {
+        this.mapper = mapper;
+        this.conn = conn;
+    }
+
+    Connection connection() {
+        return conn;
+    }
+
+    /**
+     * Registers a bean's current column values as its snapshot, replacing any previous snapshot for the same row.
+     */
+    public void track(Object bean) {
+        final BeanMapping beanMapping = beanMapping(bean);
+        snapshots.put(key(beanMapping, bean), values(beanMapping, bean));
+    }
+
+    public void forget(Object bean) {
+        snapshots.remove(key(beanMapping(bean), bean));
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+    public boolean isTracked(Object bean) {
+        return snapshots.containsKey(key(beanMapping(bean), bean));
+    }
+
+    /**
+     * @return the indices (in the bean mapping's properties without primary key) of all properties that differ from the bean's snapshot,
+     *         or none if the bean is not tracked
+     */
+    AOption<BitSet> changedProperties(Object bean) {
+        final BeanMapping beanMapping = beanMapping(bean);
+        final Object[] snapshot = snapshots.get(key(beanMapping, bean));
+        if (snapshot == null) {
+            return AOption.none();
+        }
+
+        final Object[] current = values(beanMapping, bean);
+        final BitSet result = new BitSet(current.length);
+        for (int i = 0; i < current.length; i++) {
+            if (!Objects.deepEquals(snapshot[i], current[i])) {
+                result.set(i);
+            }
+        }
+        return AOption.some(result);
+    }
+
+    private BeanMapping beanMapping(Object bean) {
+        return mapper.getBeanMappingRegistry().getBeanMapping(conn, bean.getClass());
+    }
+
+    private RowKey key(BeanMapping beanMapping, Object bean) {
+        return RowKey.ofBean(mapper, beanMapping, bean);
+    }
+
+    private static Object[] values(BeanMapping beanMapping, Object bean) {
+        final AList<BeanProperty> properties = beanMapping.mappedBeanProperties(false);
+        final Object[] result = new Object[properties.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = properties.get(i).get(bean);
+        }
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package com.ajjpj.asqlmapper.mapper;
 
+import com.ajjpj.asqlmapper.core.SqlSnippet;
 
 public interface DatabaseDialect {
     DatabaseDialect H2 = new H2Dialect();
@@ -23,22 +24,60 @@ public interface DatabaseDialect {
      */
     String selectOneRow(String tableName);
 
+    /**
+     * This returns a clause limiting the number of rows returned by a query. It is appended after a query's ORDER BY clause, and it binds
+     *  the number of rows as a parameter so that queries with different limits can share a prepared statement.
+     */
+    default SqlSnippet limit(int numRows) {
+        return SqlSnippet.sql("LIMIT ?", numRows);
+    }
+
+    /**
+     * The maximum number of bind parameters in a single statement, which limits the number of rows in a multi-row INSERT.
+     */
+    default int maxBindParameters() {
+        return 32767;
+    }
+
+    /**
+     * The maximum number of rows in a single multi-row INSERT statement. Apart from database limits, this keeps the SQL string's size in check.
+     */
+    default int maxRowsPerInsert() {
+        return 1000;
+    }
+
     class PostgresqlDialect implements DatabaseDialect {
         @Override public String selectOneRow(String tableName) {
             return "SELECT * FROM " + tableName + " LIMIT 1";
         }
+        @Override public int maxBindParameters() {
+            return 65535;
+        }
     }
 
     class OracleDialect implements DatabaseDialect {
         @Override public String selectOneRow(String tableName) {
             return "SELECT * FROM " + tableName + " FETCH FIRST 1 ROWS ONLY";
         }
+        @Override public SqlSnippet limit(int numRows) {
+            return SqlSnippet.sql("FETCH FIRST ? ROWS ONLY", numRows);
+        }
     }
 
     class SqlServerDialect implements DatabaseDialect {
         @Override public String selectOneRow(String tableName) {
             return "SELECT TOP 1 * FROM " + tableName;
         }
+        @Override public SqlSnippet limit(int numRows) {
+            return SqlSnippet.sql("OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY", numRows);
+        }
+        /**
+         * SQL Server allows 2100 parameters per RPC call, and the driver's {@code sp_prepexec} / {@code sp_executesql} calls need some
+         *  of them for themselves, so statements with exactly 2100 bind parameters fail.
+         */
+        @Override public int maxBindParameters() {
+            return 2000;
+        }
     }
 
     class H2Dialect implements DatabaseDialect {
@@ -0,0 +1,68 @@
+package com.ajjpj.asqlmapper.mapper;
+
+import java.util.Objects;
+
+import com.ajjpj.acollections.immutable.AVector;
+
+/**
+ * Describes a relation to load along with a query's beans, together with the relations to load for the related beans, e.g.
+ *  {@code FetchGraph.of("orders", FetchGraph.of("lines", "product"))} for persons' orders, the orders' lines and each line's product.
+ *  A fetch graph is added to a query with {@link AMapperQuery#withFetchGraph(FetchGraph...)}.<p>
+ *
+ * Each level of the graph is loaded with one query per relation (or one query per chunk of keys, see
+ *  {@link com.ajjpj.asqlmapper.mapper.injectedproperties.RelationFetchMode RelationFetchMode}), so the number of queries depends on the
+ *  graph rather than on the number of rows. The kind of each relation is determined by its bean property, see
+ *  {@link com.ajjpj.asqlmapper.mapper.injectedproperties.MappedFetchGraph MappedFetchGraph}.
+ */
+public class FetchGraph {
+    private final String propertyName;
+    private final AVector<FetchGraph> children;
+
+    private FetchGraph(String propertyName, AVector<FetchGraph> children) {
+        this.propertyName = Objects.requireNonNull(propertyName);
+        this.children = children;
+    }
+
+    public static FetchGraph of(String propertyName) {
+        return new FetchGraph(propertyName, AVector.empty());
+    }
+    public static FetchGraph of(String propertyName, String... children) {
+        return new FetchGraph(propertyName, AVector.from(children).map(FetchGraph::of));
+    }
+    public static FetchGraph of(String propertyName, FetchGraph... children) {
+        return new FetchGraph(propertyName, AVector.from(children));
+    }
+
+    /**
+     * @return a copy of this graph with an additional relation of the related beans
+     */
+    public FetchGraph with(FetchGraph child) {
+        return new FetchGraph(propertyName, children.append(child));
+    }
+    public FetchGraph with(String childPropertyName) {
+        return with(of(childPropertyName));
+    }
+
+    public String propertyName() {
+        return propertyName;
+    }
+
+    public AVector<FetchGraph> children() {
+        return children;
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final FetchGraph that = (FetchGraph) o;
+        return Objects.equals(propertyName, that.propertyName) && Objects.equals(children, that.children);
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(propertyName, children);
+    }
+
+    @Override public String toString() {
+        return children.isEmpty() ? propertyName : propertyName + children.mkString("(", ", ", ")");
+    }
+}
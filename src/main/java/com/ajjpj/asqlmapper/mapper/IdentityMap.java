@@ -0,0 +1,155 @@
+package com.ajjpj.asqlmapper.mapper;
+
+import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ajjpj.acollections.util.AOption;
+import com.ajjpj.asqlmapper.mapper.beans.BeanMapping;
+
+/**
+ * A first-level cache of beans that were loaded or written on a given connection, holding at most one instance per row (identified
+ *  by bean type and primary key). While an identity map is open, all {@link SqlMapper} queries on its connection return the registered
+ *  instance for rows that were loaded before, and that includes the beans loaded for {@link SqlMapper#toOne(String) to-one relations}.
+ *  Queries with injected properties are the exception: the beans they return may carry data that the registered instance lacks, so
+ *  they replace the registered instance instead.<p>
+ *
+ * {@link SqlMapper}'s update, patch and delete operations on the connection replace or remove the affected instances. Changes made
+ *  with plain SQL are not visible to the identity map, so code mixing the two should {@link #evict(Class, Object) evict} rows or
+ *  {@link #clear()} the identity map.<p>
+ *
+ * Registered instances are valid for the current transaction only, so {@link #commit()} and {@link #rollback()} clear the identity map.
+ *  An identity map is not thread safe, and it must be {@link #close() closed} to detach it from its connection.
+ */
+public class IdentityMap implements AutoCloseable {
+    private final SqlMapper mapper;
+    private final Connection conn;
+    private final Map<RowKey, Object> beans = new HashMap<>();
+    private final Map<Class<?>, AOption<BeanMapping>> beanMappings = new HashMap<>();
+
+    IdentityMap(SqlMapper mapper, Connection conn) {
+        this.mapper = mapper;
+        this.conn = conn;
+    }
+
+    /**
+     * @return the registered instance for a given row, if any
+     */
+    public <T> AOption<T> get(Class<T> beanType, Object pk) {
+        return key(beanType, pk).flatMap(key -> AOption.of(beanType.cast(beans.get(key))));
+    }
+
+    /**
+     * Returns the registered instance for a given row, loading it and registering it if it was not loaded before. This is the same as
+     *  calling {@link SqlMapper#findByPk(Connection, Class, Object)} with the identity map's connection.
+     *
+     * @return the row's bean, or none if there is no row with the given primary key
+     */
+    public <T> AOption<T> load(Class<T> beanType, Object pk) {
+        return mapper.findByPk(conn, beanType, pk);
+    }
+
+    /**
+     * Registers a bean, replacing any other instance for the same row.
+     */
+    public void put(Object bean) {
+        beanMapping(bean.getClass()).ifPresent(m -> beans.put(RowKey.ofBean(mapper, m, bean), bean));
+    }
+
+    public void evict(Class<?> beanType, Object pk) {
+        key(beanType, pk).ifPresent(beans::remove);
+    }
+
+    public int size() {
+        return beans.size();
+    }
+
+    public void clear() {
+        beans.clear();
+    }
+
+    /**
+     * Commits the connection and clears the identity map.
+     */
+    public void commit() {
+        clear();
+        executeUnchecked(conn::commit);
+        mapper.transactionEnded(conn);
+    }
+
+    /**
+     * Rolls back the connection and clears the identity map.
+     */
+    public void rollback() {
+        clear();
+        executeUnchecked(() -> conn.rollback());
+        mapper.transactionEnded(conn);
+    }
+
+    /**
+     * Detaches the identity map from its connection, so queries on the connection are no longer affected by it.
+     */
+    @Override public void close() {
+        clear();
+        mapper.closeIdentityMap(conn, this);
+    }
+
+    /**
+     * @return the registered instance for the bean's row if there is one, otherwise the bean itself after registering it
+     */
+    <T> T canonical(T bean) {
+        final AOption<BeanMapping> beanMapping = beanMapping(bean.getClass());
+        if (beanMapping.isEmpty()) {
+            return bean;
+        }
+        //noinspection unchecked
+        return (T) beans.computeIfAbsent(RowKey.ofBean(mapper, beanMapping.get(), bean), k -> bean);
+    }
+
+    /**
+     * Applies a patch to the registered instance for a row, if there is one.
+     */
+    void patch(Class<?> beanType, Object pk, Map<String, Object> newValues) {
+        final AOption<RowKey> key = key(beanType, pk);
+        final Object registered = key.flatMap(k -> AOption.of(beans.get(k))).orElse(null);
+        if (registered == null) {
+            return;
+        }
+
+        final BeanMapping beanMapping = beanMapping(beanType).get();
+        Object patched = registered;
+        for (Map.Entry<String, Object> e : newValues.entrySet()) {
+            if (beanMapping.mappedProperties().contains(e.getKey())) {
+                patched = beanMapping.beanProperty(e.getKey()).set(patched, e.getValue());
+            }
+        }
+        beans.put(key.get(), patched);
+    }
+
+    /**
+     * @return the key for a row, with the primary key converted to the primary key property's type, or none if the type is not mapped
+     */
+    private AOption<RowKey> key(Class<?> beanType, Object pk) {
+        return beanMapping(beanType).map(m -> RowKey.of(mapper, m, pk));
+    }
+
+    /**
+     * Query results can have any type, including types that are not mapped to a table (and therefore have no primary key). Those are
+     *  ignored by the identity map.
+     */
+    private AOption<BeanMapping> beanMapping(Class<?> beanType) {
+        return beanMappings.computeIfAbsent(beanType, bt -> {
+            if (!mapper.getBeanMappingRegistry().canHandle(bt)) {
+                return AOption.none();
+            }
+            try {
+                return AOption.some(mapper.getBeanMappingRegistry().getBeanMapping(conn, bt));
+            }
+            catch (IllegalArgumentException exc) {
+                return AOption.none();
+            }
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package com.ajjpj.asqlmapper.mapper;
+
+import java.util.Objects;
+
+import com.ajjpj.asqlmapper.mapper.beans.BeanMapping;
+
+/**
+ * Identifies a row by bean type and primary key. The primary key is converted to the type of the bean's primary key property, so
+ *  e.g. an Integer passed by application code matches the Long stored in a bean.
+ */
+class RowKey {
+    private final Class<?> beanType;
+    private final Object pk;
+
+    private RowKey(Class<?> beanType, Object pk) {
+        this.beanType = beanType;
+        this.pk = pk;
+    }
+
+    static RowKey of(SqlMapper mapper, BeanMapping beanMapping, Object pk) {
+        return new RowKey(beanMapping.beanMetaData().beanType(), mapper.normalizedPk(beanMapping, pk));
+    }
+
+    static RowKey ofBean(SqlMapper mapper, BeanMapping beanMapping, Object bean) {
+        return of(mapper, beanMapping, beanMapping.pkProperty().get(bean));
+    }
+
+    Class<?> beanType() {
+        return beanType;
+    }
+
+    /**
+     * @return the normalized primary key
+     */
+    Object pk() {
+        return pk;
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final RowKey rowKey = (RowKey) o;
+        return Objects.equals(beanType, rowKey.beanType) && Objects.equals(pk, rowKey.pk);
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(beanType, pk);
+    }
+
+    @Override public String toString() {
+        return beanType.getSimpleName() + "#" + pk;
+    }
+}
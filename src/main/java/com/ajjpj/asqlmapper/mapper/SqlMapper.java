@@ -4,10 +4,19 @@ import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
 import static com.ajjpj.asqlmapper.core.SqlSnippet.*;
 
 import java.sql.Connection;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.ajjpj.acollections.AList;
 import com.ajjpj.acollections.immutable.AVector;
@@ -16,17 +25,21 @@ import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.core.SqlBuilder;
 import com.ajjpj.asqlmapper.core.SqlEngine;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
+import com.ajjpj.asqlmapper.core.impl.UncommittedWrites;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
 import com.ajjpj.asqlmapper.javabeans.BeanProperty;
 import com.ajjpj.asqlmapper.mapper.beans.BeanMapping;
 import com.ajjpj.asqlmapper.mapper.beans.BeanMappingRegistry;
+import com.ajjpj.asqlmapper.mapper.beans.EntityCache;
 import com.ajjpj.asqlmapper.mapper.beans.relations.ManyToManySpec;
 import com.ajjpj.asqlmapper.mapper.beans.relations.OneToManySpec;
 import com.ajjpj.asqlmapper.mapper.beans.relations.ToOneSpec;
 import com.ajjpj.asqlmapper.mapper.beans.tablename.TableNameExtractor;
+import com.ajjpj.asqlmapper.mapper.injectedproperties.MappedFetchGraph;
 import com.ajjpj.asqlmapper.mapper.injectedproperties.MappedManyToMany;
 import com.ajjpj.asqlmapper.mapper.injectedproperties.MappedOneToMany;
 import com.ajjpj.asqlmapper.mapper.injectedproperties.MappedToOne;
+import com.ajjpj.asqlmapper.mapper.injectedproperties.RelationFetchMode;
 import com.ajjpj.asqlmapper.mapper.schema.SchemaRegistry;
 
 public class SqlMapper {
@@ -34,8 +47,21 @@ public class SqlMapper {
     private final BeanMappingRegistry mappingRegistry;
     private final SchemaRegistry schemaRegistry;
     private final TableNameExtractor tableNameExtractor;
+    private final RelationFetchMode relationFetchMode;
+    private final Map<Connection, IdentityMap> identityMaps = new ConcurrentHashMap<>();
+    private final UncommittedWrites<RowKey> uncommittedWrites = new UncommittedWrites<>(this::invalidateCached);
 
     public SqlMapper(SqlEngine sqlEngine, BeanMappingRegistry mappingRegistry, SchemaRegistry schemaRegistry, TableNameExtractor tableNameExtractor) {
+        this(sqlEngine, mappingRegistry, schemaRegistry, tableNameExtractor, RelationFetchMode.SUBQUERY);
+    }
+
+    /**
+     * @param relationFetchMode the fetch mode for relations created by {@link #oneToMany(String)}, {@link #manyToMany(String)} and
+     *                          {@link #toOne(String)}
+     */
+    public SqlMapper(SqlEngine sqlEngine, BeanMappingRegistry mappingRegistry, SchemaRegistry schemaRegistry, TableNameExtractor tableNameExtractor,
+                     RelationFetchMode relationFetchMode) {
+        this.relationFetchMode = relationFetchMode;
         this.schemaRegistry = schemaRegistry;
         this.tableNameExtractor = tableNameExtractor;
         this.sqlEngine = sqlEngine.withRowExtractor(mappingRegistry.metaDataRegistry().asRowExtractor());
@@ -50,6 +76,10 @@ public class SqlMapper {
         return mappingRegistry;
     }
 
+    public DatabaseDialect dialect() {
+        return schemaRegistry.dialect();
+    }
+
     public SqlSnippet tableName(Class<?> beanType) {
         return tableName(engine().defaultConnection(), beanType);
     }
@@ -59,38 +89,295 @@ public class SqlMapper {
 
     public <T> AMapperQuery<T> query(Class<T> beanType, SqlSnippet sql, SqlSnippet... moreSql) {
         return new AMapperQueryImpl<>(this, beanType, concat(sql, moreSql), engine().primitiveTypeRegistry(), engine().rowExtractorFor(beanType),
-                engine().listeners(), engine().defaultConnectionSupplier(), AVector.empty(), engine().defaultFetchSize());
+                engine().listeners(), engine().defaultConnectionSupplier(), AVector.empty(), engine().defaultFetchSize(),
+                engine().statementCache(), engine().queryCache(), AVector.empty());
     }
     public <T> AMapperQuery<T> query(Class<T> beanType, String sql, Object... params) {
         return new AMapperQueryImpl<>(this, beanType, sql(sql, params), engine().primitiveTypeRegistry(), engine().rowExtractorFor(beanType),
-                engine().listeners(), engine().defaultConnectionSupplier(), AVector.empty(), engine().defaultFetchSize());
+                engine().listeners(), engine().defaultConnectionSupplier(), AVector.empty(), engine().defaultFetchSize(),
+                engine().statementCache(), engine().queryCache(), AVector.empty());
+    }
+
+    public UnitOfWork unitOfWork() {
+        return unitOfWork(engine().defaultConnection());
+    }
+    /**
+     * Creates a {@link UnitOfWork} that records inserts, updates, patches and deletes and executes them in batches when it is flushed.
+     */
+    public UnitOfWork unitOfWork(Connection conn) {
+        return new UnitOfWork(this, conn);
+    }
+
+    public ChangeTracker changeTracker() {
+        return changeTracker(engine().defaultConnection());
+    }
+    /**
+     * Creates a {@link ChangeTracker} that keeps snapshots of loaded beans so that {@link #updateChanged(ChangeTracker, Object)} can
+     *  write only changed columns.
+     */
+    public ChangeTracker changeTracker(Connection conn) {
+        return new ChangeTracker(this, conn);
+    }
+
+    public IdentityMap openIdentityMap() {
+        return openIdentityMap(engine().defaultConnection());
+    }
+    /**
+     * Attaches an {@link IdentityMap} to a connection, so that queries on the connection return the same instance for the same row until
+     *  the identity map is closed.
+     *
+     * @throws IllegalStateException if there is already an open identity map for the connection
+     */
+    public IdentityMap openIdentityMap(Connection conn) {
+        final IdentityMap result = new IdentityMap(this, conn);
+        if (identityMaps.putIfAbsent(conn, result) != null) {
+            throw new IllegalStateException("there is already an open identity map for connection " + conn);
+        }
+        return result;
+    }
+    void closeIdentityMap(Connection conn, IdentityMap identityMap) {
+        identityMaps.remove(conn, identityMap);
+    }
+    AOption<IdentityMap> identityMap(Connection conn) {
+        if (identityMaps.isEmpty()) {
+            return AOption.none();
+        }
+        return AOption.of(identityMaps.get(conn));
+    }
+
+    /**
+     * Reports that a connection's transaction was committed or rolled back. A connection that wrote rows of a bean type with an
+     *  {@link EntityCache} outside of auto-commit mode bypasses all entity caches so that uncommitted changes do not leak to other
+     *  transactions, and this switches entity caches (and the engine's {@link SqlEngine#transactionEnded(Connection) query cache}) back on
+     *  for the connection. The rows it wrote are invalidated once more, since other transactions may have cached them before the commit.
+     *  {@link IdentityMap#commit()} and {@link IdentityMap#rollback()} call this.
+     */
+    public void transactionEnded(Connection conn) {
+        uncommittedWrites.transactionEnded(conn);
+        engine().transactionEnded(conn);
+    }
+
+    public <T> AOption<T> findByPk(Class<T> beanType, Object pk) {
+        return findByPk(engine().defaultConnection(), beanType, pk);
+    }
+    /**
+     * Loads a single bean by primary key, see {@link #findAllByPkAsMap(Connection, Class, Iterable)} for details.
+     */
+    public <T> AOption<T> findByPk(Connection conn, Class<T> beanType, Object pk) {
+        final Map<Object, T> found = findAllByPkAsMap(conn, beanType, Collections.singletonList(pk));
+        return found.isEmpty() ? AOption.none() : AOption.some(found.values().iterator().next());
+    }
+
+    public <T> AList<T> findAllByPk(Class<T> beanType, Iterable<?> pks) {
+        return findAllByPk(engine().defaultConnection(), beanType, pks);
+    }
+    /**
+     * Loads beans by primary key, see {@link #findAllByPkAsMap(Connection, Class, Iterable)} for details.
+     *
+     * @return the beans in the order of their primary keys in {@code pks}, each bean once, and without beans for keys that have no row
+     */
+    public <T> AList<T> findAllByPk(Connection conn, Class<T> beanType, Iterable<?> pks) {
+        return AVector.from(findAllByPkAsMap(conn, beanType, pks).values());
+    }
+
+    public <T> Map<Object, T> findAllByPkAsMap(Class<T> beanType, Iterable<?> pks) {
+        return findAllByPkAsMap(engine().defaultConnection(), beanType, pks);
+    }
+    /**
+     * Loads beans by primary key. Beans are taken from the connection's {@link IdentityMap} and the bean type's {@link EntityCache} if
+     *  those exist (see {@link #transactionEnded(Connection)} for connections with uncommitted writes), and all other beans are loaded
+     *  with {@code SELECT * ... WHERE pk IN (...)} queries, each with as many keys as the dialect allows bind parameters per statement.<p>
+     *
+     * Keys are converted to the type of the primary key property before they are looked up, so e.g. Integer keys work for a bean with a
+     *  {@code long} primary key.
+     *
+     * @return the beans by (converted) primary key in the order of {@code pks}, without entries for keys that have no row
+     */
+    public <T> Map<Object, T> findAllByPkAsMap(Connection conn, Class<T> beanType, Iterable<?> pks) {
+        final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, beanType);
+        final AOption<IdentityMap> identityMap = identityMap(conn);
+        // entity caches are shared across transactions, so connections with uncommitted writes must neither read nor fill them
+        final AOption<EntityCache> entityCache = uncommittedWrites.hasUncommittedWrites(conn) ? AOption.none() : mappingRegistry.entityCache(beanType);
+
+        final Set<Object> keys = new LinkedHashSet<>();
+        for (Object pk : pks) {
+            keys.add(normalizedPk(beanMapping, pk));
+        }
+
+        final Map<Object, T> found = new HashMap<>();
+        final List<Object> missing = new ArrayList<>();
+        for (Object key : keys) {
+            AOption<T> bean = identityMap.flatMap(m -> m.get(beanType, key));
+            if (bean.isEmpty() && entityCache.isDefined()) {
+                // beans from the entity cache are not loaded by a query, so they need to be registered with the identity map explicitly
+                bean = entityCache.get().get(key).map(beanType::cast);
+                if (bean.isDefined() && identityMap.isDefined()) {
+                    bean = AOption.some(identityMap.get().canonical(bean.get()));
+                }
+            }
+
+            if (bean.isDefined()) {
+                found.put(key, bean.get());
+            }
+            else {
+                missing.add(key);
+            }
+        }
+
+        final long token = entityCache.fold(0L, (res, c) -> c.token());
+        final int maxKeysPerQuery = dialect().maxBindParameters();
+        for (int from = 0; from < missing.size(); from += maxKeysPerQuery) {
+            final List<Object> chunk = missing.subList(from, Math.min(from + maxKeysPerQuery, missing.size()));
+            query(beanType, sql("SELECT * FROM " + beanMapping.tableName() + " WHERE"), chunkedIn(sql(beanMapping.pkProperty().columnName()), chunk))
+                    .forEach(conn, bean -> {
+                        final Object key = beanMapping.pkProperty().get(bean);
+                        found.put(key, bean);
+                        entityCache.ifPresent(c -> c.put(key, bean, token));
+                    });
+        }
+
+        final Map<Object, T> result = new LinkedHashMap<>();
+        for (Object key : keys) {
+            if (found.containsKey(key)) {
+                result.put(key, found.get(key));
+            }
+        }
+        return result;
+    }
+
+    public int revalidateCached(Class<?> beanType, Iterable<?> pks) {
+        return revalidateCached(engine().defaultConnection(), beanType, pks);
+    }
+    /**
+     * Compares the version column of cached beans with the database in a single query (or a few for many keys), and invalidates those
+     *  cached beans whose rows were changed or deleted. Primary keys that are not cached are ignored.
+     *
+     * @return the number of invalidated beans
+     * @throws IllegalArgumentException if the bean type has no {@link EntityCache}, or if the cache has no version column that is mapped
+     *                                  to a bean property
+     */
+    public int revalidateCached(Connection conn, Class<?> beanType, Iterable<?> pks) {
+        final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, beanType);
+        final EntityCache entityCache = mappingRegistry.entityCache(beanType)
+                .orElseThrow(() -> new IllegalArgumentException("no entity cache registered for " + beanType));
+        final String versionColumn = entityCache.versionColumn()
+                .orElseThrow(() -> new IllegalArgumentException("entity cache for " + beanType + " has no version column"));
+        final BeanProperty versionProperty = beanMapping.beanMetaData().getBeanPropertyForColumnName(versionColumn);
+        if (versionProperty == null) {
+            throw new IllegalArgumentException(beanType + " has no property for version column " + versionColumn);
+        }
+
+        final Map<Object, Object> cachedVersions = new LinkedHashMap<>();
+        for (Object pk : pks) {
+            final Object key = normalizedPk(beanMapping, pk);
+            entityCache.peek(key).ifPresent(bean -> cachedVersions.put(key, versionProperty.get(bean)));
+        }
+        if (cachedVersions.isEmpty()) {
+            return 0;
+        }
+
+        final BeanProperty pkProperty = beanMapping.pkProperty();
+        final Map<Object, Object> currentVersions = new HashMap<>();
+        final List<Object> keys = new ArrayList<>(cachedVersions.keySet());
+        final int maxKeysPerQuery = dialect().maxBindParameters();
+        for (int from = 0; from < keys.size(); from += maxKeysPerQuery) {
+            final List<Object> chunk = keys.subList(from, Math.min(from + maxKeysPerQuery, keys.size()));
+            sqlEngine
+                    .rawQuery(
+                            sql("SELECT " + pkProperty.columnName() + ", " + versionColumn + " FROM " + beanMapping.tableName() + " WHERE"),
+                            chunkedIn(sql(pkProperty.columnName()), chunk))
+                    .forEach(conn, row -> currentVersions.put(
+                            row.get(pkProperty.propClass(), pkProperty.columnName()),
+                            row.get(versionProperty.propClass(), versionColumn)));
+        }
+
+        int result = 0;
+        for (Map.Entry<Object, Object> e : cachedVersions.entrySet()) {
+            if (!currentVersions.containsKey(e.getKey()) || !Objects.equals(e.getValue(), currentVersions.get(e.getKey()))) {
+                entityCache.invalidate(e.getKey());
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Primary keys are converted to the primary key property's type so that e.g. an Integer key finds a bean with a long primary key.
+     */
+    Object normalizedPk(BeanMapping beanMapping, Object pk) {
+        return engine().primitiveTypeRegistry().fromSql(beanMapping.pkProperty().propClass(), pk);
+    }
+
+    void invalidateCached(Connection conn, Class<?> beanType, Object pk) {
+        final AOption<EntityCache> entityCache = mappingRegistry.entityCache(beanType);
+        if (entityCache.isDefined()) {
+            final RowKey key = RowKey.of(this, mappingRegistry.getBeanMapping(conn, beanType), pk);
+            uncommittedWrites.written(conn, key);
+            entityCache.get().invalidate(key.pk());
+        }
+    }
+    private void invalidateCached(Set<RowKey> keys) {
+        for (RowKey key : keys) {
+            mappingRegistry.entityCache(key.beanType()).ifPresent(c -> c.invalidate(key.pk()));
+        }
+    }
+    private void invalidateCached(Connection conn, Object bean) {
+        if (mappingRegistry.entityCache(bean.getClass()).isDefined()) {
+            invalidateCached(conn, bean.getClass(), mappingRegistry.getBeanMapping(conn, bean.getClass()).pkProperty().get(bean));
+        }
+    }
+
+    /**
+     * Reads all rows of a query in pages, using keyset pagination on a given key column, see {@link AKeysetScan} for details.
+     */
+    public <T> AKeysetScan<T> scan(Class<T> beanType, SqlSnippet baseSql, String keyColumn) {
+        return new AKeysetScan<>(this, beanType, baseSql, keyColumn);
     }
 
     public MappedOneToMany oneToMany(String propertyName) {
-        return new MappedOneToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.empty());
+        return new MappedOneToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.empty(),
+                relationFetchMode, dialect().maxBindParameters());
     }
     public MappedOneToMany oneToMany(String propertyName, OneToManySpec spec) {
-        return new MappedOneToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.ofNullable(spec));
+        return new MappedOneToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.ofNullable(spec),
+                relationFetchMode, dialect().maxBindParameters());
     }
 
     public MappedManyToMany manyToMany(String propertyName) {
-        return new MappedManyToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.empty());
+        return new MappedManyToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.empty(),
+                relationFetchMode, dialect().maxBindParameters());
     }
     public MappedManyToMany manyToMany(String propertyName, ManyToManySpec spec) {
-        return new MappedManyToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.ofNullable(spec));
+        return new MappedManyToMany(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.ofNullable(spec),
+                relationFetchMode, dialect().maxBindParameters());
     }
 
     public InjectedProperty toOne(String propertyName) {
-        return new MappedToOne(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.empty());
+        return new MappedToOne(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.empty(),
+                relationFetchMode, dialect().maxBindParameters());
     }
     public InjectedProperty toOne(String propertyName, ToOneSpec spec) {
-        return new MappedToOne(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.ofNullable(spec));
+        return new MappedToOne(propertyName, mappingRegistry, (cls, sql) -> query(cls, sql), Optional.ofNullable(spec),
+                relationFetchMode, dialect().maxBindParameters());
+    }
+
+    /**
+     * Creates an injected property for a fetch graph's root relation. The queries for related beans carry the graph's nested relations.
+     */
+    public InjectedProperty fetchGraph(FetchGraph graph) {
+        return new MappedFetchGraph(graph, mappingRegistry, (cls, sql) -> {
+            AMapperQuery<?> result = query(cls, sql);
+            for (FetchGraph child : graph.children()) {
+                result = result.withInjectedProperty(fetchGraph(child));
+            }
+            return result;
+        }, relationFetchMode, dialect().maxBindParameters());
     }
 
     public <T> AList<T> insertMany(List<T> os) {
         return insertMany(engine().defaultConnection(), os);
     }
-    private <T> AList<T> insertMany(Connection conn, List<T> os) {
+    <T> AList<T> insertMany(Connection conn, List<T> os) {
         if (os.isEmpty()) {
             return AList.empty();
         }
@@ -99,75 +386,103 @@ public class SqlMapper {
         if (beanMapping.pkStrategy().isAutoIncrement()) {
             return insertManyAutoGenerated(conn, beanMapping, os);
         } else {
-            return insertManyProvidingPk(conn, beanMapping, os);
+            return insertManyProvidingPk(conn, beanMapping, os, true);
         }
     }
     private <T> AVector<T> insertManyAutoGenerated(Connection conn, BeanMapping beanMapping, List<T> os) {
         return executeUnchecked(() -> {
             final BeanProperty pkProperty = beanMapping.pkProperty();
+            final AVector.Builder<T> result = AVector.builder();
 
-            final SqlBuilder builder = SqlSnippet.builder();
-            boolean first = true;
-            for (T o : os) {
-                if (beanMapping != mappingRegistry.getBeanMapping(conn, o.getClass())) {
-                    throw new IllegalArgumentException("multi-insert only for beans of the same type");
-                }
-                appendInsertFragmentForElement(beanMapping, builder, first, o, false);
-                first = false;
-            }
-
-            if (pkProperty != null) {
-                final List<?> pkValues = sqlEngine.insertMulti(conn, pkProperty.propClass(),
-                        engine().rowExtractorFor(pkProperty.propClass()),
-                        builder.build(), pkProperty.columnName());
-                if (pkValues.size() != os.size()) {
-                    throw new IllegalStateException("inserting " + os.size() + " rows returned " + pkValues.size() + " - mismatch");
+            for (List<T> chunk: insertChunks(beanMapping, os, false)) {
+                final SqlBuilder builder = SqlSnippet.builder();
+                boolean first = true;
+                for (T o : chunk) {
+                    if (beanMapping != mappingRegistry.getBeanMapping(conn, o.getClass())) {
+                        throw new IllegalArgumentException("multi-insert only for beans of the same type");
+                    }
+                    appendInsertFragmentForElement(beanMapping, builder, first, o, false);
+                    first = false;
                 }
 
-                final AVector.Builder<T> result = AVector.builder();
-                for (int i = 0; i < os.size(); i++) {
-                    //noinspection unchecked
-                    result.add((T) pkProperty.set(os.get(i), pkValues.get(i)));
+                if (pkProperty != null) {
+                    final List<?> pkValues = sqlEngine.insertMulti(conn, pkProperty.propClass(),
+                            engine().rowExtractorFor(pkProperty.propClass()),
+                            builder.build(), pkProperty.columnName());
+                    if (pkValues.size() != chunk.size()) {
+                        throw new IllegalStateException("inserting " + chunk.size() + " rows returned " + pkValues.size() + " - mismatch");
+                    }
+
+                    for (int i = 0; i < chunk.size(); i++) {
+                        //noinspection unchecked
+                        result.add((T) pkProperty.set(chunk.get(i), pkValues.get(i)));
+                    }
+                } else {
+                    sqlEngine.executeUpdate(conn, builder.build());
+                    for (T o : chunk) {
+                        result.add(o);
+                    }
                 }
-                return result.build();
-            } else {
-                sqlEngine.executeUpdate(conn, builder.build());
-                return AVector.from(os);
             }
+            return result.build();
         });
     }
 
+    /**
+     * Splits the beans for a multi-row INSERT into chunks that fit the dialect's limits. All chunks except the last have the same size
+     *  and therefore the same SQL string, so they can share a prepared statement.
+     */
+    private <T> List<List<T>> insertChunks(BeanMapping beanMapping, List<T> os, boolean withPk) {
+        final int paramsPerRow = Math.max(1, beanMapping.mappedBeanProperties(withPk).size());
+        final int rowsPerChunk = Math.max(1, Math.min(dialect().maxRowsPerInsert(), dialect().maxBindParameters() / paramsPerRow));
+
+        final List<List<T>> result = new ArrayList<>();
+        for (int i = 0; i < os.size(); i += rowsPerChunk) {
+            result.add(os.subList(i, Math.min(i + rowsPerChunk, os.size())));
+        }
+        return result;
+    }
+
     private <T> void appendInsertFragmentForElement(BeanMapping beanMapping, SqlBuilder builder, boolean first, T o, boolean includePkColumn) {
         if (first) {
             builder.append(insertStatement(beanMapping, o, includePkColumn));
         } else {
-            final AList<String> properties = includePkColumn ? beanMapping.mappedProperties() : beanMapping.mappedPropertiesWithoutPk();
+            builder.append("," + beanMapping.insertValuesSql(includePkColumn), propertyValues(beanMapping.mappedBeanProperties(includePkColumn), o));
+        }
+    }
 
-            builder
-                    .append(",(")
-                    .append(params(properties.map(p -> beanMapping.beanProperty(p).get(o))))
-                    .append(")")
-            ;
+    private static List<Object> propertyValues(AList<BeanProperty> properties, Object bean) {
+        final List<Object> result = new ArrayList<>(properties.size());
+        for (BeanProperty p : properties) {
+            result.add(p.get(bean));
         }
+        return result;
     }
 
-    private <T> AVector<T> insertManyProvidingPk(Connection conn, BeanMapping beanMapping, List<T> os) {
+    /**
+     * @param newPks true to ask the bean mapping's primary key strategy for new primary keys, false to use the beans' primary keys as they are
+     */
+    <T> AVector<T> insertManyProvidingPk(Connection conn, BeanMapping beanMapping, List<T> os, boolean newPks) {
         return executeUnchecked(() -> {
             final AVector.Builder<T> result = AVector.builder();
 
-            final SqlBuilder builder = SqlSnippet.builder();
-            boolean first = true;
-            for (Object withoutPk : os) {
-                if (beanMapping != mappingRegistry.getBeanMapping(conn, withoutPk.getClass())) {
-                    throw new IllegalArgumentException("multi-insert only for beans of the same type");
+            for (List<T> chunk: insertChunks(beanMapping, os, true)) {
+                final SqlBuilder builder = SqlSnippet.builder();
+                boolean first = true;
+                for (T withoutPk : chunk) {
+                    if (beanMapping != mappingRegistry.getBeanMapping(conn, withoutPk.getClass())) {
+                        throw new IllegalArgumentException("multi-insert only for beans of the same type");
+                    }
+                    final AOption<Object> optPk = newPks ? beanMapping.pkStrategy().newPrimaryKey(conn) : AOption.none();
+                    //noinspection unchecked
+                    final T withPk = (T) optPk.<Object>fold(withoutPk, (res, el) -> beanMapping.pkProperty().set(res, el));
+                    appendInsertFragmentForElement(beanMapping, builder, first, withPk, true);
+                    result.add(withPk);
+                    first = false;
                 }
-                final AOption<Object> optPk = beanMapping.pkStrategy().newPrimaryKey(conn);
-                final Object withPk = optPk.fold(withoutPk, (res, el) -> beanMapping.pkProperty().set(res, el));
-                appendInsertFragmentForElement(beanMapping, builder, first, withPk, true);
-                first = false;
-            }
 
-            sqlEngine.executeUpdate(conn, builder.build());
+                sqlEngine.executeUpdate(conn, builder.build());
+            }
             return result.build();
         });
     }
@@ -194,18 +509,7 @@ public class SqlMapper {
         });
     }
     private SqlSnippet insertStatement(BeanMapping beanMapping, Object bean, boolean withPk) {
-        final AList<String> properties = withPk ? beanMapping.mappedProperties() : beanMapping.mappedPropertiesWithoutPk();
-
-        final SqlSnippet into = commaSeparated(properties.map(p -> sql(beanMapping.beanProperty(p).columnName())));
-        final SqlSnippet values = params(properties.map(p -> beanMapping.beanProperty(p).get(bean)));
-
-        return concat(
-                sql("INSERT INTO " + beanMapping.tableName() + "("),
-                into,
-                sql(") VALUES ("),
-                values,
-                sql(")")
-        );
+        return sql(beanMapping.insertSql(withPk), propertyValues(beanMapping.mappedBeanProperties(withPk), bean));
     }
     private <T> T insertProvidingPk(Connection conn, Object beanWithoutPk, BeanMapping beanMapping) {
         return executeUnchecked(() -> {
@@ -224,42 +528,93 @@ public class SqlMapper {
         return update(engine().defaultConnection(), bean);
     }
 
-    private SqlSnippet updateSnippet(Connection conn, Object bean) {
+    SqlSnippet updateSnippet(Connection conn, Object bean) {
         final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, bean.getClass());
 
-        final SqlSnippet updates = commaSeparated(
-                beanMapping.mappedPropertiesWithoutPk()
-                        .map(p -> sql(beanMapping.beanProperty(p).columnName() + "=?", beanMapping.beanProperty(p).get(bean)))
-        );
-
-        return concat(
-                sql("UPDATE " + beanMapping.tableName() + " SET"),
-                updates,
-                sql("WHERE " + beanMapping.pkProperty().columnName() + "=?", beanMapping.pkProperty().get(bean))
-        );
+        final List<Object> params = propertyValues(beanMapping.mappedBeanProperties(false), bean);
+        params.add(beanMapping.pkProperty().get(bean));
+        return sql(beanMapping.updateSql(), params);
     }
 
     public boolean update(Connection conn, Object bean) {
-        return sqlEngine.executeUpdate(conn, updateSnippet(conn, bean)) == 1;
+        final boolean result = sqlEngine.executeUpdate(conn, updateSnippet(conn, bean)) == 1;
+        afterUpdate(conn, bean, result);
+        return result;
     }
 
     /**
-     * all beans must have the same type for JDBC batching to work
+     * Keeps caches current after an update. If the update matched no row, the row does not exist (any more), so it is evicted rather
+     *  than registered.
+     */
+    private void afterUpdate(Connection conn, Object bean, boolean updated) {
+        invalidateCached(conn, bean);
+        identityMap(conn).ifPresent(m -> {
+            if (updated) {
+                m.put(bean);
+            }
+            else {
+                m.evict(bean.getClass(), mappingRegistry.getBeanMapping(conn, bean.getClass()).pkProperty().get(bean));
+            }
+        });
+    }
+
+    /**
+     * Updates only those columns of a bean that differ from the snapshot in a {@link ChangeTracker}, and skips the update altogether if
+     *  nothing changed. Beans that are not tracked are updated in full. After the update, the bean is the tracker's new snapshot.
+     *
+     * @return true if the bean's row was updated or nothing changed. If the row was not found, the bean is no longer tracked.
+     */
+    public boolean updateChanged(ChangeTracker tracker, Object bean) {
+        final Connection conn = tracker.connection();
+        final AOption<BitSet> optChanged = tracker.changedProperties(bean);
+        final boolean result;
+        if (optChanged.isEmpty()) {
+            result = update(conn, bean);
+        }
+        else if (optChanged.get().isEmpty()) {
+            return true;
+        }
+        else {
+            final BitSet changed = optChanged.get();
+            final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, bean.getClass());
+            final AList<BeanProperty> properties = beanMapping.mappedBeanProperties(false);
+
+            final List<Object> params = new ArrayList<>(changed.cardinality() + 1);
+            for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+                params.add(properties.get(i).get(bean));
+            }
+            params.add(beanMapping.pkProperty().get(bean));
+            result = sqlEngine.executeUpdate(conn, sql(beanMapping.updateSql(changed), params)) == 1;
+            afterUpdate(conn, bean, result);
+        }
+        if (result) {
+            tracker.track(bean);
+        }
+        else {
+            tracker.forget(bean);
+        }
+        return result;
+    }
+
+    /**
+     * Updates beans using JDBC batches. Beans may have different types, which are then sent as separate batches.
      */
     public List<Boolean> batchUpdate(List<Object> beans) {
         return batchUpdate(engine().defaultConnection(), beans);
     }
     /**
-     * all beans must have the same type for JDBC batching to work
+     * Updates beans using JDBC batches. Beans may have different types, which are then sent as separate batches.
      */
     public List<Boolean> batchUpdate(Connection conn, List<Object> beans) {
         final List<SqlSnippet> snippets = AMutableListWrapper
                 .wrap(beans)
                 .map(b -> updateSnippet(conn, b));
-        final int[] results = sqlEngine.executeBatch(conn, snippets);
+        final int[] results = sqlEngine.executeGroupedBatch(conn, snippets);
         final List<Boolean> result = new ArrayList<>(results.length);
-        for(int r: results) {
-            result.add(r == 1);
+        for (int i=0; i<results.length; i++) {
+            result.add(results[i] == 1);
+            // drivers may not report counts for batches, and those rows are assumed to exist
+            afterUpdate(conn, beans.get(i), results[i] == 1 || results[i] == Statement.SUCCESS_NO_INFO);
         }
         return result;
     }
@@ -269,28 +624,43 @@ public class SqlMapper {
     }
     private boolean delete(Connection conn, Object bean) {
         final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, bean.getClass());
-        final BeanProperty pkProperty = beanMapping.pkProperty();
-
-        return executeUnchecked(() ->
-                sqlEngine.executeUpdate(conn, "DELETE FROM " + beanMapping.tableName() + " WHERE " + pkProperty.columnName() + "=?", pkProperty.get(bean)) == 1
-        );
+        return delete(conn, bean.getClass(), beanMapping.pkProperty().get(bean));
     }
     public boolean delete(Class<?> beanType, Object pk) {
         return delete(engine().defaultConnection(), beanType, pk);
     }
     private boolean delete(Connection conn, Class<?> beanType, Object pk) {
         final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, beanType);
-        final BeanProperty pkProperty = beanMapping.pkProperty();
 
-        return executeUnchecked(() ->
-                sqlEngine.executeUpdate(conn, "DELETE FROM " + beanMapping.tableName() + " WHERE " + pkProperty.columnName() + "=?", pk) == 1
+        final boolean result = executeUnchecked(() ->
+                sqlEngine.executeUpdate(conn, beanMapping.deleteSql(), pk) == 1
         );
+        invalidateCached(conn, beanType, pk);
+        identityMap(conn).ifPresent(m -> m.evict(beanType, pk));
+        return result;
     }
 
     public boolean patch(Class<?> beanType, Object pk, Map<String, Object> newValues) {
         return patch(engine().defaultConnection(), beanType, pk, newValues);
     }
     private boolean patch(Connection conn, Class<?> beanType, Object pk, Map<String, Object> newValues) {
+        final AOption<SqlSnippet> optSnippet = patchSnippet(conn, beanType, pk, newValues);
+        if (optSnippet.isEmpty()) {
+            return true;
+        }
+
+        final boolean result = executeUnchecked(() ->
+                sqlEngine.executeUpdate(conn, optSnippet.get()) == 1
+        );
+        invalidateCached(conn, beanType, pk);
+        identityMap(conn).ifPresent(m -> m.patch(beanType, pk, newValues));
+        return result;
+    }
+
+    /**
+     * @return an UPDATE statement for the mapped properties in newValues, or none if newValues contains no mapped properties
+     */
+    AOption<SqlSnippet> patchSnippet(Connection conn, Class<?> beanType, Object pk, Map<String, Object> newValues) {
         final BeanMapping beanMapping = mappingRegistry.getBeanMapping(conn, beanType);
         final BeanProperty pkProperty = beanMapping.pkProperty();
 
@@ -317,12 +687,9 @@ public class SqlMapper {
             builder.append(prop.columnName() + "=?", newValues.get(propName));
         }
         if (first) {
-            return true;
+            return AOption.none();
         }
         builder.append("WHERE " + pkProperty.columnName() + "=?", pk);
-
-        return executeUnchecked(() ->
-                sqlEngine.executeUpdate(conn, builder.build()) == 1
-        );
+        return AOption.some(builder.build());
     }
 }
@@ -0,0 +1,331 @@
+package com.ajjpj.asqlmapper.mapper;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ajjpj.acollections.AList;
+import com.ajjpj.acollections.immutable.AVector;
+import com.ajjpj.asqlmapper.core.SqlSnippet;
+import com.ajjpj.asqlmapper.mapper.beans.BeanMapping;
+
+/**
+ * A UnitOfWork records inserts, updates, patches and deletes instead of executing them immediately, and executes them with as few
+ *  round trips as possible when it is {@link #flush() flushed}.<p>
+ *
+ * Operations on the same row (identified by bean type and primary key) are coalesced while they are recorded: the last of several updates
+ *  wins, patches are merged into each other and into pending inserts or updates, and a delete of a row that was inserted in the same
+ *  unit of work cancels the insert. An insert of a row that was deleted in the same unit of work replaces the row, i.e. it is executed as
+ *  a DELETE followed by an INSERT regardless of whether the row existed. Beans with database generated primary keys have no primary key before they are inserted, so their
+ *  inserts are never coalesced with other operations.<p>
+ *
+ * On flush, inserts are executed as multi-row INSERT statements per bean type, and updates, patches and deletes as JDBC batches. Inserts
+ *  and updates are done for referenced tables before referencing tables based on the foreign keys in the database schema, and deletes in
+ *  the reverse order. Updates and patches that match no row do not register their beans with the connection's {@link IdentityMap}.<p>
+ *
+ * A UnitOfWork is bound to a connection and is not thread safe.
+ */
+public class UnitOfWork {
+    private final SqlMapper mapper;
+    private final Connection conn;
+
+    /** pending operations for rows with a known primary key, in the order in which they were first recorded */
+    private final Map<RowKey, Operation> operations = new LinkedHashMap<>();
+    /** pending inserts of beans whose primary key is generated by the database */
+    private final List<Object> generatedPkInserts = new ArrayList<>();
+
+    UnitOfWork(SqlMapper mapper, Connection conn) {
+        this.mapper = mapper;
+        this.conn = conn;
+    }
+
+    /**
+     * Records an insert. If the bean's primary key is not generated by the database, the key is determined immediately, and the returned
+     *  bean has it.
+     */
+    public <T> T insert(T bean) {
+        final BeanMapping beanMapping = beanMapping(bean.getClass());
+        if (beanMapping.pkStrategy().isAutoIncrement()) {
+            generatedPkInserts.add(bean);
+            return bean;
+        }
+
+        //noinspection unchecked
+        final T withPk = (T) beanMapping.pkStrategy()
+                .newPrimaryKey(conn)
+                .<Object>fold(bean, (res, pk) -> beanMapping.pkProperty().set(res, pk));
+        final RowKey key = RowKey.ofBean(mapper, beanMapping, withPk);
+        final Operation existing = operations.get(key);
+        if (existing == null) {
+            operations.put(key, new Operation(OperationKind.INSERT, beanMapping, key.pk(), withPk, null));
+        }
+        else if (existing.kind == OperationKind.DELETE) {
+            // the row may or may not exist in the database, so this can not be an update
+            operations.put(key, new Operation(OperationKind.REPLACE, beanMapping, key.pk(), withPk, null));
+        }
+        else {
+            throw new IllegalStateException("there is a pending " + existing.kind + " for " + key + ", so it can not be inserted");
+        }
+        return withPk;
+    }
+
+    public void update(Object bean) {
+        final BeanMapping beanMapping = beanMapping(bean.getClass());
+        final RowKey key = RowKey.ofBean(mapper, beanMapping, bean);
+        final Operation existing = operations.get(key);
+        if (existing == null) {
+            operations.put(key, new Operation(OperationKind.UPDATE, beanMapping, key.pk(), bean, null));
+            return;
+        }
+
+        switch (existing.kind) {
+            case INSERT:
+            case REPLACE:
+                operations.put(key, new Operation(existing.kind, beanMapping, key.pk(), bean, null));
+                break;
+            case UPDATE:
+            case PATCH:
+                operations.put(key, new Operation(OperationKind.UPDATE, beanMapping, key.pk(), bean, null));
+                break;
+            case DELETE:
+                throw new IllegalStateException(key + " was deleted in this unit of work, so it can not be updated");
+        }
+    }
+
+    public void patch(Class<?> beanType, Object pk, Map<String, Object> newValues) {
+        final BeanMapping beanMapping = beanMapping(beanType);
+        final RowKey key = RowKey.of(mapper, beanMapping, pk);
+        final Operation existing = operations.get(key);
+        if (existing == null) {
+            operations.put(key, new Operation(OperationKind.PATCH, beanMapping, key.pk(), null, new LinkedHashMap<>(newValues)));
+            return;
+        }
+
+        switch (existing.kind) {
+            case INSERT:
+            case REPLACE:
+            case UPDATE:
+                Object patched = existing.bean;
+                for (Map.Entry<String, Object> e : newValues.entrySet()) {
+                    if (beanMapping.mappedProperties().contains(e.getKey())) {
+                        patched = beanMapping.beanProperty(e.getKey()).set(patched, e.getValue());
+                    }
+                }
+                operations.put(key, new Operation(existing.kind, beanMapping, key.pk(), patched, null));
+                break;
+            case PATCH:
+                existing.patchValues.putAll(newValues);
+                break;
+            case DELETE:
+                throw new IllegalStateException(key + " was deleted in this unit of work, so it can not be patched");
+        }
+    }
+
+    public void delete(Object bean) {
+        delete(bean.getClass(), beanMapping(bean.getClass()).pkProperty().get(bean));
+    }
+    public void delete(Class<?> beanType, Object pk) {
+        final BeanMapping beanMapping = beanMapping(beanType);
+        final RowKey key = RowKey.of(mapper, beanMapping, pk);
+        final Operation existing = operations.get(key);
+        if (existing != null && existing.kind == OperationKind.INSERT) {
+            operations.remove(key);
+        }
+        else {
+            operations.put(key, new Operation(OperationKind.DELETE, beanMapping, key.pk(), null, null));
+        }
+    }
+
+    /**
+     * @return the number of operations that will be executed on flush, i.e. after coalescing
+     */
+    public int numPendingOperations() {
+        return operations.size() + generatedPkInserts.size();
+    }
+
+    /**
+     * Executes all pending operations and clears them. If execution fails, pending operations are discarded nevertheless, and the
+     *  transaction should be rolled back.
+     *
+     * @return the inserted beans (including their primary keys), grouped by bean type in the order in which they were inserted
+     */
+    public AList<Object> flush() {
+        final List<Operation> pending = new ArrayList<>(operations.values());
+        final List<Object> pendingGeneratedPkInserts = new ArrayList<>(generatedPkInserts);
+        operations.clear();
+        generatedPkInserts.clear();
+
+        final Map<Class<?>, BeanMapping> beanMappings = new LinkedHashMap<>();
+        for (Object bean : pendingGeneratedPkInserts) {
+            beanMappings.put(bean.getClass(), beanMapping(bean.getClass()));
+        }
+        for (Operation op : pending) {
+            beanMappings.put(op.beanMapping.beanMetaData().beanType(), op.beanMapping);
+        }
+        final List<BeanMapping> dependencyOrder = dependencyOrder(AVector.from(beanMappings.values()));
+
+        // replaced rows are deleted before any inserts so that their new versions can be inserted
+        final List<SqlSnippet> replaced = deleteSnippets(pending, OperationKind.REPLACE, dependencyOrder);
+        if (!replaced.isEmpty()) {
+            mapper.engine().executeGroupedBatch(conn, replaced);
+        }
+
+        final AVector.Builder<Object> result = AVector.builder();
+        for (BeanMapping beanMapping : dependencyOrder) {
+            final List<Object> generatedPk = new ArrayList<>();
+            for (Object bean : pendingGeneratedPkInserts) {
+                if (beanMappings.get(bean.getClass()) == beanMapping) {
+                    generatedPk.add(bean);
+                }
+            }
+            for (Object inserted : mapper.insertMany(conn, generatedPk)) {
+                result.add(inserted);
+            }
+
+            final List<Object> providedPk = beansOf(pending, OperationKind.INSERT, beanMapping);
+            providedPk.addAll(beansOf(pending, OperationKind.REPLACE, beanMapping));
+            for (Object inserted : mapper.insertManyProvidingPk(conn, beanMapping, providedPk, false)) {
+                result.add(inserted);
+            }
+        }
+
+        final List<SqlSnippet> updates = new ArrayList<>();
+        final List<Operation> updateOperations = new ArrayList<>();
+        for (BeanMapping beanMapping : dependencyOrder) {
+            for (Operation op : pending) {
+                if (op.beanMapping != beanMapping) {
+                    continue;
+                }
+                if (op.kind == OperationKind.UPDATE) {
+                    updates.add(mapper.updateSnippet(conn, op.bean));
+                    updateOperations.add(op);
+                }
+                else if (op.kind == OperationKind.PATCH) {
+                    mapper.patchSnippet(conn, beanMapping.beanMetaData().beanType(), op.pk, op.patchValues).ifPresent(snippet -> {
+                        updates.add(snippet);
+                        updateOperations.add(op);
+                    });
+                }
+            }
+        }
+        final Set<Operation> unmatched = new HashSet<>();
+        if (!updates.isEmpty()) {
+            final int[] counts = mapper.engine().executeGroupedBatch(conn, updates);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    unmatched.add(updateOperations.get(i));
+                }
+            }
+        }
+
+        final List<SqlSnippet> deletes = deleteSnippets(pending, OperationKind.DELETE, dependencyOrder);
+        if (!deletes.isEmpty()) {
+            mapper.engine().executeGroupedBatch(conn, deletes);
+        }
+
+        for (Operation op : pending) {
+            if (op.kind != OperationKind.INSERT) {
+                mapper.invalidateCached(conn, op.beanMapping.beanMetaData().beanType(), op.pk);
+            }
+        }
+        mapper.identityMap(conn).ifPresent(identityMap -> {
+            for (Operation op : pending) {
+                if (op.kind == OperationKind.DELETE || unmatched.contains(op)) {
+                    identityMap.evict(op.beanMapping.beanMetaData().beanType(), op.pk);
+                }
+                else if (op.kind == OperationKind.UPDATE || op.kind == OperationKind.REPLACE) {
+                    identityMap.put(op.bean);
+                }
+                else if (op.kind == OperationKind.PATCH) {
+                    identityMap.patch(op.beanMapping.beanMetaData().beanType(), op.pk, op.patchValues);
+                }
+            }
+        });
+
+        return result.build();
+    }
+
+    /**
+     * @return DELETE statements for all operations of a given kind, for referencing tables before referenced tables
+     */
+    private static List<SqlSnippet> deleteSnippets(List<Operation> operations, OperationKind kind, List<BeanMapping> dependencyOrder) {
+        final List<SqlSnippet> result = new ArrayList<>();
+        for (int i = dependencyOrder.size() - 1; i >= 0; i--) {
+            final BeanMapping beanMapping = dependencyOrder.get(i);
+            for (Operation op : operations) {
+                if (op.beanMapping == beanMapping && op.kind == kind) {
+                    result.add(SqlSnippet.sql(beanMapping.deleteSql(), op.pk));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Object> beansOf(List<Operation> operations, OperationKind kind, BeanMapping beanMapping) {
+        final List<Object> result = new ArrayList<>();
+        for (Operation op : operations) {
+            if (op.kind == kind && op.beanMapping == beanMapping) {
+                result.add(op.bean);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sorts bean mappings so that tables come after the tables they reference. Mappings that do not depend on each other (and mappings
+     *  in a cycle of references) remain in their original order.
+     */
+    static List<BeanMapping> dependencyOrder(List<BeanMapping> beanMappings) {
+        final List<BeanMapping> remaining = new ArrayList<>(beanMappings);
+        final List<BeanMapping> result = new ArrayList<>(beanMappings.size());
+        while (!remaining.isEmpty()) {
+            BeanMapping next = remaining.get(0);
+            for (BeanMapping candidate : remaining) {
+                if (remaining.stream().noneMatch(other -> references(candidate, other))) {
+                    next = candidate;
+                    break;
+                }
+            }
+            remaining.remove(next);
+            result.add(next);
+        }
+        return result;
+    }
+
+    private static boolean references(BeanMapping from, BeanMapping to) {
+        final String toTable = to.tableMetaData().tableName();
+        return !from.tableMetaData().tableName().equalsIgnoreCase(toTable) &&
+                from.tableMetaData().foreignKeys().exists(fk -> fk.pkTableName().equalsIgnoreCase(toTable));
+    }
+
+    private BeanMapping beanMapping(Class<?> beanType) {
+        return mapper.getBeanMappingRegistry().getBeanMapping(conn, beanType);
+    }
+
+    private enum OperationKind {
+        /** REPLACE is a DELETE followed by an INSERT */
+        INSERT, REPLACE, UPDATE, PATCH, DELETE
+    }
+
+    private static class Operation {
+        final OperationKind kind;
+        final BeanMapping beanMapping;
+        final Object pk;
+        /** the bean for INSERT, REPLACE and UPDATE */
+        final Object bean;
+        /** the new values for PATCH */
+        final Map<String, Object> patchValues;
+
+        Operation(OperationKind kind, BeanMapping beanMapping, Object pk, Object bean, Map<String, Object> patchValues) {
+            this.kind = kind;
+            this.beanMapping = beanMapping;
+            this.pk = pk;
+            this.bean = bean;
+            this.patchValues = patchValues;
+        }
+    }
+}
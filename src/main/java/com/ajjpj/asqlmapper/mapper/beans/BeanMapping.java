@@ -1,5 +1,9 @@
 package com.ajjpj.asqlmapper.mapper.beans;
 
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.ajjpj.acollections.ACollection;
 import com.ajjpj.acollections.AList;
 import com.ajjpj.asqlmapper.javabeans.BeanMetaData;
@@ -17,6 +21,18 @@ public class BeanMapping {
 
     private BeanProperty pkProperty;
 
+    private final AList<BeanProperty> mappedBeanProperties;
+    private final AList<BeanProperty> mappedBeanPropertiesWithoutPk;
+
+    // SQL for the generic CRUD statements is fixed per mapping, so it is created once rather than per bean
+    private final String insertSql;
+    private final String insertSqlWithoutPk;
+    private final String insertValuesSql;
+    private final String insertValuesSqlWithoutPk;
+    private final String updateSql;
+    private final String deleteSql;
+    private final Map<BitSet, String> partialUpdateSql = new ConcurrentHashMap<>();
+
     public BeanMapping(BeanMetaData beanMetaData, TableMetaData tableMetaData, PkStrategy pkStrategy) {
         this.beanMetaData = beanMetaData;
         this.tableMetaData = tableMetaData;
@@ -41,6 +57,24 @@ public class BeanMapping {
         }
 
         this.mappedPropertiesWithoutPk = mappedProperties.filterNot(p -> p.equals(pkProperty.name()));
+
+        this.mappedBeanProperties = mappedProperties.map(this::beanProperty);
+        this.mappedBeanPropertiesWithoutPk = mappedPropertiesWithoutPk.map(this::beanProperty);
+
+        this.insertSql = insertSql(mappedBeanProperties);
+        this.insertSqlWithoutPk = insertSql(mappedBeanPropertiesWithoutPk);
+        this.insertValuesSql = valuesTuple(mappedBeanProperties);
+        this.insertValuesSqlWithoutPk = valuesTuple(mappedBeanPropertiesWithoutPk);
+        this.updateSql = "UPDATE " + tableName() + " SET " + mappedBeanPropertiesWithoutPk.map(p -> p.columnName() + "=?").mkString(",") +
+                " WHERE " + pkProperty.columnName() + "=?";
+        this.deleteSql = "DELETE FROM " + tableName() + " WHERE " + pkProperty.columnName() + "=?";
+    }
+
+    private String insertSql(AList<BeanProperty> properties) {
+        return "INSERT INTO " + tableName() + "(" + properties.map(BeanProperty::columnName).mkString(",") + ") VALUES " + valuesTuple(properties);
+    }
+    private static String valuesTuple(AList<BeanProperty> properties) {
+        return properties.map(p -> "?").mkString("(", ",", ")");
     }
 
     public String tableName() {
@@ -66,6 +100,62 @@ public class BeanMapping {
         return mappedPropertiesWithoutPk;
     }
 
+    /**
+     * @return the {@link BeanProperty} instances for {@link #mappedProperties()} (or {@link #mappedPropertiesWithoutPk()}), in the same order
+     */
+    public AList<BeanProperty> mappedBeanProperties(boolean withPk) {
+        return withPk ? mappedBeanProperties : mappedBeanPropertiesWithoutPk;
+    }
+
+    /**
+     * @return an INSERT statement for a single row, with a parameter placeholder for each of
+     *         {@link #mappedBeanProperties(boolean) mappedBeanProperties(withPk)}
+     */
+    public String insertSql(boolean withPk) {
+        return withPk ? insertSql : insertSqlWithoutPk;
+    }
+
+    /**
+     * @return the placeholder tuple for one additional row in a multi-row INSERT statement, i.e. a String of the form {@code (?,?,?)}
+     */
+    public String insertValuesSql(boolean withPk) {
+        return withPk ? insertValuesSql : insertValuesSqlWithoutPk;
+    }
+
+    /**
+     * @return an UPDATE statement for a single row, with parameter placeholders for all {@link #mappedBeanProperties(boolean) mappedBeanProperties(false)}
+     *         followed by the primary key
+     */
+    public String updateSql() {
+        return updateSql;
+    }
+
+    /**
+     * @param changedProperties the indices of the properties to update in {@link #mappedBeanProperties(boolean) mappedBeanProperties(false)}.
+     *                          The caller must not modify the BitSet afterwards.
+     * @return an UPDATE statement for a single row, with parameter placeholders for the changed properties (in the order of their indices)
+     *         followed by the primary key. Statements are cached per set of changed properties.
+     */
+    public String updateSql(BitSet changedProperties) {
+        return partialUpdateSql.computeIfAbsent(changedProperties, changed -> {
+            final StringBuilder result = new StringBuilder("UPDATE " + tableName() + " SET ");
+            for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i+1)) {
+                if (i > changed.nextSetBit(0)) {
+                    result.append(",");
+                }
+                result.append(mappedBeanPropertiesWithoutPk.get(i).columnName()).append("=?");
+            }
+            return result.append(" WHERE ").append(pkProperty.columnName()).append("=?").toString();
+        });
+    }
+
+    /**
+     * @return a DELETE statement for a single row, with a single parameter placeholder for the primary key
+     */
+    public String deleteSql() {
+        return deleteSql;
+    }
+
     public BeanProperty beanProperty(String propertyName) {
         return beanMetaData.beanProperties().get(propertyName);
     }
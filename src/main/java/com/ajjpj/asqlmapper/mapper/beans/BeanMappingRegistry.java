@@ -2,6 +2,7 @@ package com.ajjpj.asqlmapper.mapper.beans;
 
 import java.sql.Connection;
 
+import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.core.impl.CanHandle;
 import com.ajjpj.asqlmapper.javabeans.BeanMetaDataRegistry;
 import com.ajjpj.asqlmapper.mapper.beans.relations.ManyToManySpec;
@@ -15,4 +16,10 @@ public interface BeanMappingRegistry extends CanHandle {
     OneToManySpec resolveOneToMany(Connection conn, Class<?> ownerClass, String propertyName);
     ManyToManySpec resolveManyToMany(Connection conn, Class<?> ownerClass, String propertyName);
     ToOneSpec resolveToOne(Connection conn, Class owningClass, String propertyName);
+
+    /**
+     * Registers a second-level cache for the beans of a given type, replacing a previously registered cache for that type.
+     */
+    void registerEntityCache(Class<?> beanType, EntityCache entityCache);
+    AOption<EntityCache> entityCache(Class<?> beanType);
 }
@@ -35,6 +35,7 @@ public class BeanMappingRegistryImpl implements BeanMappingRegistry {
     private final Map<RelMapKey, OneToManySpec> oneToManyCache = new ConcurrentHashMap<>();
     private final Map<RelMapKey, ManyToManySpec> manyToManyCache = new ConcurrentHashMap<>();
     private final Map<RelMapKey, ToOneSpec> toOneCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EntityCache> entityCaches = new ConcurrentHashMap<>();
 
     public BeanMappingRegistryImpl(SchemaRegistry schemaRegistry, TableNameExtractor tableNameExtractor, PkStrategyDecider pkStrategyDecider,
                                    BeanMetaDataRegistry metaDataRegistry, OneToManyResolver oneToManyResolver,
@@ -116,6 +117,20 @@ public class BeanMappingRegistryImpl implements BeanMappingRegistry {
             return toOneResolver.resolve(conn, ownerMapping, propertyName, tableNameExtractor, schemaRegistry);
         });
     }
+
+    @Override
+    public void registerEntityCache(Class<?> beanType, EntityCache entityCache) {
+        entityCaches.put(beanType, entityCache);
+    }
+
+    @Override
+    public AOption<EntityCache> entityCache(Class<?> beanType) {
+        if (entityCaches.isEmpty()) {
+            return AOption.none();
+        }
+        return AOption.of(entityCaches.get(beanType));
+    }
+
     private static class RelMapKey {
         final Class<?> ownerClass;
         final String propertyName;
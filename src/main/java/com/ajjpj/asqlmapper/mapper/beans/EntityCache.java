@@ -0,0 +1,197 @@
+package com.ajjpj.asqlmapper.mapper.beans;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ajjpj.acollections.util.AOption;
+
+/**
+ * An in-process cache of the beans of a single type, keyed by primary key and shared across transactions. It is bounded by the number
+ *  of cached beans (evicting least recently used beans) and by a time to live per bean. Caches are registered per bean type with
+ *  {@link BeanMappingRegistry#registerEntityCache(Class, EntityCache)}, and {@link com.ajjpj.asqlmapper.mapper.SqlMapper SqlMapper}
+ *  reads through them for primary key lookups and invalidates them for its own updates, patches and deletes.<p>
+ *
+ * Writes that bypass the mapper are not noticed, and invalidation happens when a write is executed rather than when it is committed.
+ *  A connection that wrote through the mapper outside of auto-commit mode does not use entity caches until the end of its transaction
+ *  is reported with {@link com.ajjpj.asqlmapper.mapper.SqlMapper#transactionEnded(java.sql.Connection) SqlMapper.transactionEnded()}.
+ *  If the table has a version column (i.e. a column that changes with every update, like a counter or a 'last updated' timestamp), the
+ *  cache can be configured to know it, and cached beans can then be revalidated against the database with a single query for many keys,
+ *  see {@link com.ajjpj.asqlmapper.mapper.SqlMapper#revalidateCached(Class, Iterable) SqlMapper.revalidateCached()}.<p>
+ *
+ * To prevent a slow read from re-populating the cache with data from before a write, beans are only stored if there was no
+ *  invalidation while they were being read.
+ */
+public class EntityCache {
+    private final long maxSize;
+    private final long ttlNanos;
+    private final AOption<String> versionColumn;
+
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, .75f, true);
+    private long generation = 0;
+
+    private long numHits = 0;
+    private long numMisses = 0;
+    private long numEvictions = 0;
+    private long numExpirations = 0;
+    private long numInvalidations = 0;
+
+    public EntityCache(long maxSize, Duration ttl) {
+        this(maxSize, ttl, AOption.none());
+    }
+    private EntityCache(long maxSize, Duration ttl, AOption<String> versionColumn) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maximum number of cached beans must be positive: " + maxSize);
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("time to live must be positive: " + ttl);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.versionColumn = versionColumn;
+    }
+
+    /**
+     * @return a new, empty cache with the same configuration and a given version column
+     */
+    public EntityCache withVersionColumn(String versionColumn) {
+        return new EntityCache(maxSize, Duration.ofNanos(ttlNanos), AOption.some(versionColumn));
+    }
+
+    public AOption<String> versionColumn() {
+        return versionColumn;
+    }
+
+    public synchronized AOption<Object> get(Object pk) {
+        final Entry entry = entries.get(pk);
+        if (entry == null) {
+            numMisses += 1;
+            return AOption.none();
+        }
+        if (isExpired(entry)) {
+            entries.remove(pk);
+            numExpirations += 1;
+            numMisses += 1;
+            return AOption.none();
+        }
+        numHits += 1;
+        return AOption.some(entry.bean);
+    }
+
+    /**
+     * Returns a cached bean without affecting statistics or the order of eviction, for checking cached beans rather than using them.
+     */
+    public synchronized AOption<Object> peek(Object pk) {
+        final Entry entry = entries.get(pk);
+        if (entry == null || isExpired(entry)) {
+            return AOption.none();
+        }
+        return AOption.some(entry.bean);
+    }
+
+    /**
+     * Returns a token representing the cache's current state. Callers retrieve a token before reading a bean from the database and pass it
+     *  to {@link #put(Object, Object, long) put()} so that the bean is discarded if the cache was invalidated in the meantime.
+     */
+    public synchronized long token() {
+        return generation;
+    }
+
+    public synchronized void put(Object pk, Object bean, long token) {
+        if (bean == null || token != generation) {
+            return;
+        }
+
+        entries.put(pk, new Entry(bean, System.nanoTime()));
+        final Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize) {
+            it.next();
+            it.remove();
+            numEvictions += 1;
+        }
+    }
+
+    public synchronized void invalidate(Object pk) {
+        generation += 1;
+        if (entries.remove(pk) != null) {
+            numInvalidations += 1;
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation += 1;
+        numInvalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized Statistics statistics() {
+        return new Statistics(numHits, numMisses, numEvictions, numExpirations, numInvalidations);
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.createdNanos >= ttlNanos;
+    }
+
+    private static class Entry {
+        final Object bean;
+        final long createdNanos;
+
+        Entry(Object bean, long createdNanos) {
+            this.bean = bean;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    /**
+     * A snapshot of a cache's statistics since the cache was created.
+     */
+    public static class Statistics {
+        private final long numHits;
+        private final long numMisses;
+        private final long numEvictions;
+        private final long numExpirations;
+        private final long numInvalidations;
+
+        Statistics(long numHits, long numMisses, long numEvictions, long numExpirations, long numInvalidations) {
+            this.numHits = numHits;
+            this.numMisses = numMisses;
+            this.numEvictions = numEvictions;
+            this.numExpirations = numExpirations;
+            this.numInvalidations = numInvalidations;
+        }
+
+        public long numHits() {
+            return numHits;
+        }
+        public long numMisses() {
+            return numMisses;
+        }
+        /** the number of beans that were removed to make room for other beans */
+        public long numEvictions() {
+            return numEvictions;
+        }
+        /** the number of beans that were removed because their time to live had passed */
+        public long numExpirations() {
+            return numExpirations;
+        }
+        /** the number of beans that were removed because of writes or failed revalidation */
+        public long numInvalidations() {
+            return numInvalidations;
+        }
+
+        @Override public String toString() {
+            return "EntityCache.Statistics{" +
+                    "numHits=" + numHits +
+                    ", numMisses=" + numMisses +
+                    ", numEvictions=" + numEvictions +
+                    ", numExpirations=" + numExpirations +
+                    ", numInvalidations=" + numInvalidations +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ajjpj.asqlmapper.mapper.injectedproperties;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+import com.ajjpj.acollections.util.AOption;
+import com.ajjpj.asqlmapper.core.AQuery;
+import com.ajjpj.asqlmapper.core.SqlSnippet;
+import com.ajjpj.asqlmapper.core.common.SqlRow;
+import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
+import com.ajjpj.asqlmapper.javabeans.BeanProperty;
+import com.ajjpj.asqlmapper.javabeans.annotations.ManyToMany;
+import com.ajjpj.asqlmapper.javabeans.annotations.OneToMany;
+import com.ajjpj.asqlmapper.mapper.FetchGraph;
+import com.ajjpj.asqlmapper.mapper.beans.BeanMappingRegistry;
+
+/**
+ * The root relation of a {@link FetchGraph}. The relation's kind is determined by its bean property when the query is executed:
+ *  properties annotated with {@link ManyToMany} are many-to-many relations, other properties annotated with {@link OneToMany} or
+ *  having a collection type are one-to-many relations, and all other properties are to-one relations.<p>
+ *
+ * The query factory is expected to add the graph's nested relations to the queries for related beans, so each level of the graph is
+ *  loaded with the related beans' query rather than per bean.
+ */
+@SuppressWarnings("unchecked")
+public class MappedFetchGraph implements InjectedProperty {
+    private final FetchGraph graph;
+    private final BeanMappingRegistry beanMappingRegistry;
+    private final BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory;
+    private final RelationFetchMode fetchMode;
+    private final int maxKeysPerQuery;
+
+    private InjectedProperty inner;
+
+    public MappedFetchGraph(FetchGraph graph, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
+                            RelationFetchMode fetchMode, int maxKeysPerQuery) {
+        this.graph = graph;
+        this.beanMappingRegistry = beanMappingRegistry;
+        this.queryFactory = queryFactory;
+        this.fetchMode = fetchMode;
+        this.maxKeysPerQuery = maxKeysPerQuery;
+    }
+
+    @Override public String propertyName() {
+        return graph.propertyName();
+    }
+
+    @Override public Object mementoPerQuery(Connection conn, Class owningClass, SqlSnippet owningQuery) {
+        inner = relation(conn, owningClass);
+        return inner.mementoPerQuery(conn, owningClass, owningQuery);
+    }
+
+    @Override public boolean requiresOwningRows() {
+        return fetchMode == RelationFetchMode.KEYS;
+    }
+
+    @Override public boolean supportsOwningRows() {
+        return true;
+    }
+
+    @Override public Object mementoForRows(Connection conn, Class owningClass, List owningRows) {
+        inner = relation(conn, owningClass);
+        return inner.mementoForRows(conn, owningClass, owningRows);
+    }
+
+    private InjectedProperty relation(Connection conn, Class<?> owningClass) {
+        final BeanProperty prop = beanMappingRegistry
+                .getBeanMapping(conn, owningClass)
+                .beanMetaData()
+                .getRequiredProperty(graph.propertyName());
+
+        if (prop.getAnnotation(ManyToMany.class).isPresent()) {
+            return new MappedManyToMany(graph.propertyName(), beanMappingRegistry, queryFactory, Optional.empty(), fetchMode, maxKeysPerQuery);
+        }
+        if (prop.getAnnotation(OneToMany.class).isPresent() || Iterable.class.isAssignableFrom(prop.propClass())) {
+            return new MappedOneToMany(graph.propertyName(), beanMappingRegistry, queryFactory, Optional.empty(), fetchMode, maxKeysPerQuery);
+        }
+        return new MappedToOne(graph.propertyName(), beanMappingRegistry, queryFactory, Optional.empty(), fetchMode, maxKeysPerQuery);
+    }
+
+    @Override public AOption<Object> value(Connection conn, SqlRow currentRow, Object memento) {
+        return inner.value(conn, currentRow, memento);
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MappedFetchGraph that = (MappedFetchGraph) o;
+        return maxKeysPerQuery == that.maxKeysPerQuery &&
+                Objects.equals(graph, that.graph) &&
+                beanMappingRegistry == that.beanMappingRegistry &&
+                fetchMode == that.fetchMode;
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(graph, fetchMode, maxKeysPerQuery);
+    }
+}
@@ -1,11 +1,13 @@
 package com.ajjpj.asqlmapper.mapper.injectedproperties;
 
 import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
-import static com.ajjpj.asqlmapper.core.SqlSnippet.concat;
-import static com.ajjpj.asqlmapper.core.SqlSnippet.sql;
+import static com.ajjpj.asqlmapper.core.SqlSnippet.*;
 
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiFunction;
 
@@ -14,6 +16,7 @@ import com.ajjpj.asqlmapper.core.AQuery;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
 import com.ajjpj.asqlmapper.core.common.CollectionBuildStrategy;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
+import com.ajjpj.asqlmapper.core.impl.Constants;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedToManyProperty;
 import com.ajjpj.asqlmapper.mapper.beans.BeanMapping;
@@ -28,15 +31,31 @@ public class MappedManyToMany implements InjectedProperty {
     private final BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory;
 
     private final Optional<ManyToManySpec> spec;
+    private final RelationFetchMode fetchMode;
+    private final int maxKeysPerQuery;
 
     private InjectedToManyProperty inner;
 
     public MappedManyToMany(String propertyName, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
                             Optional<ManyToManySpec> spec) {
+        this(propertyName, beanMappingRegistry, queryFactory, spec, RelationFetchMode.SUBQUERY, Constants.DEFAULT_MAX_KEYS_PER_QUERY);
+    }
+
+    /**
+     * @param maxKeysPerQuery the maximum number of keys per detail query in {@link RelationFetchMode#KEYS KEYS} mode
+     */
+    public MappedManyToMany(String propertyName, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
+                            Optional<ManyToManySpec> spec, RelationFetchMode fetchMode, int maxKeysPerQuery) {
         this.propertyName = propertyName;
         this.beanMappingRegistry = beanMappingRegistry;
         this.queryFactory = queryFactory;
         this.spec = spec;
+        this.fetchMode = fetchMode;
+        this.maxKeysPerQuery = maxKeysPerQuery;
+    }
+
+    public MappedManyToMany withFetchMode(RelationFetchMode fetchMode) {
+        return new MappedManyToMany(propertyName, beanMappingRegistry, queryFactory, spec, fetchMode, maxKeysPerQuery);
     }
 
     @Override public String propertyName() {
@@ -47,22 +66,68 @@ public class MappedManyToMany implements InjectedProperty {
     public Object mementoPerQuery(Connection conn, Class owningClass, SqlSnippet owningQuery) {
         final ManyToManySpec rel = spec.orElseGet(() -> beanMappingRegistry.resolveManyToMany(conn, owningClass, propertyName));
 
-        final String fkToOwnerAlias = "$$" + rel.fkToOwner();
-
         final SqlSnippet detailSql = concat(
-                sql("SELECT b." + rel.fkToOwner() + " AS \"" + fkToOwnerAlias + "\", a.*"),
-                sql("FROM " + rel.collTable() + " a INNER JOIN " + rel.manyManyTable() + " b ON a." + rel.collPk() + "=b." + rel.fkToCollection()),
+                selectDetails(rel),
                 sql("WHERE b." + rel.fkToOwner() + " IN (SELECT " + rel.ownerPk() + " FROM ("),
                 owningQuery,
                 sql(") x)")
         );
-        final AQuery<?> detailQuery = queryFactory.apply(rel.elementClass(), detailSql);
-
-        inner = new InjectedToManyProperty(propertyName, rel.ownerPk(), rel.keyType(), fkToOwnerAlias, detailQuery, rel.collectionBuildStrategy());
+        inner = toManyProperty(rel, detailSql);
         return inner.mementoPerQuery(conn, owningClass, owningQuery);
     }
 
+    @Override public boolean requiresOwningRows() {
+        return fetchMode == RelationFetchMode.KEYS;
+    }
+
+    @Override public boolean supportsOwningRows() {
+        return true;
+    }
+
+    @Override public Object mementoForRows(Connection conn, Class owningClass, List owningRows) {
+        final ManyToManySpec rel = spec.orElseGet(() -> beanMappingRegistry.resolveManyToMany(conn, owningClass, propertyName));
+
+        final Map<Object, Object> result = new HashMap<>();
+        inner = toManyProperty(rel, concat(selectDetails(rel), sql("WHERE"), FALSE));
+        for (List<Object> keys : MasterKeys.chunks(owningRows, rel.keyType(), rel.ownerPk(), maxKeysPerQuery)) {
+            inner = toManyProperty(rel, concat(selectDetails(rel), sql("WHERE"), chunkedIn(sql("b." + rel.fkToOwner()), keys)));
+            result.putAll(inner.mementoPerQuery(conn, owningClass, null));
+        }
+        return result;
+    }
+
+    private static String fkToOwnerAlias(ManyToManySpec rel) {
+        return "$$" + rel.fkToOwner();
+    }
+
+    private static SqlSnippet selectDetails(ManyToManySpec rel) {
+        return concat(
+                sql("SELECT b." + rel.fkToOwner() + " AS \"" + fkToOwnerAlias(rel) + "\", a.*"),
+                sql("FROM " + rel.collTable() + " a INNER JOIN " + rel.manyManyTable() + " b ON a." + rel.collPk() + "=b." + rel.fkToCollection())
+        );
+    }
+
+    private InjectedToManyProperty toManyProperty(ManyToManySpec rel, SqlSnippet detailSql) {
+        final AQuery<?> detailQuery = queryFactory.apply(rel.elementClass(), detailSql);
+        return new InjectedToManyProperty(propertyName, rel.ownerPk(), rel.keyType(), fkToOwnerAlias(rel), detailQuery, rel.collectionBuildStrategy());
+    }
+
     @Override public AOption<Object> value(Connection conn, SqlRow currentRow, Object memento) {
         return inner.value(conn, currentRow, (Map) memento);
     }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MappedManyToMany that = (MappedManyToMany) o;
+        return maxKeysPerQuery == that.maxKeysPerQuery &&
+                Objects.equals(propertyName, that.propertyName) &&
+                beanMappingRegistry == that.beanMappingRegistry &&
+                Objects.equals(spec, that.spec) &&
+                fetchMode == that.fetchMode;
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(propertyName, spec, fetchMode, maxKeysPerQuery);
+    }
 }
@@ -1,10 +1,12 @@
 package com.ajjpj.asqlmapper.mapper.injectedproperties;
 
-import static com.ajjpj.asqlmapper.core.SqlSnippet.concat;
-import static com.ajjpj.asqlmapper.core.SqlSnippet.sql;
+import static com.ajjpj.asqlmapper.core.SqlSnippet.*;
 
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiFunction;
 
@@ -12,6 +14,7 @@ import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.core.AQuery;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
+import com.ajjpj.asqlmapper.core.impl.Constants;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedToManyProperty;
 import com.ajjpj.asqlmapper.mapper.beans.BeanMappingRegistry;
@@ -25,15 +28,31 @@ public class MappedOneToMany implements InjectedProperty {
     private final BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory;
 
     private final Optional<OneToManySpec> spec;
+    private final RelationFetchMode fetchMode;
+    private final int maxKeysPerQuery;
 
     private InjectedToManyProperty inner;
 
     public MappedOneToMany(String propertyName, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
                            Optional<OneToManySpec> spec) {
+        this(propertyName, beanMappingRegistry, queryFactory, spec, RelationFetchMode.SUBQUERY, Constants.DEFAULT_MAX_KEYS_PER_QUERY);
+    }
+
+    /**
+     * @param maxKeysPerQuery the maximum number of keys per detail query in {@link RelationFetchMode#KEYS KEYS} mode
+     */
+    public MappedOneToMany(String propertyName, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
+                           Optional<OneToManySpec> spec, RelationFetchMode fetchMode, int maxKeysPerQuery) {
         this.propertyName = propertyName;
         this.beanMappingRegistry = beanMappingRegistry;
         this.queryFactory = queryFactory;
         this.spec = spec;
+        this.fetchMode = fetchMode;
+        this.maxKeysPerQuery = maxKeysPerQuery;
+    }
+
+    public MappedOneToMany withFetchMode(RelationFetchMode fetchMode) {
+        return new MappedOneToMany(propertyName, beanMappingRegistry, queryFactory, spec, fetchMode, maxKeysPerQuery);
     }
 
     @Override public String propertyName () {
@@ -49,13 +68,52 @@ public class MappedOneToMany implements InjectedProperty {
                 owningQuery,
                 sql(") X)")
         );
-        final AQuery<?> detailQuery = queryFactory.apply(rel.elementClass(), detailSql);
-
-        inner = new InjectedToManyProperty(propertyName, rel.foreignKeySpec().pkColumnName(), rel.keyType(), rel.foreignKeySpec().fkColumnName(), detailQuery, rel.collectionBuildStrategy());
+        inner = toManyProperty(rel, detailSql);
         return inner.mementoPerQuery(conn, owningClass, owningQuery);
     }
 
+    @Override public boolean requiresOwningRows() {
+        return fetchMode == RelationFetchMode.KEYS;
+    }
+
+    @Override public boolean supportsOwningRows() {
+        return true;
+    }
+
+    @Override public Object mementoForRows(Connection conn, Class owningClass, List owningRows) {
+        final OneToManySpec rel = spec.orElseGet(() -> beanMappingRegistry.resolveOneToMany(conn, owningClass, propertyName));
+        final String fkColumn = rel.foreignKeySpec().fkColumnName();
+
+        final Map<Object, Object> result = new HashMap<>();
+        inner = toManyProperty(rel, concat(sql("SELECT * FROM " + rel.foreignKeySpec().fkTableName() + " WHERE"), FALSE));
+        for (List<Object> keys : MasterKeys.chunks(owningRows, rel.keyType(), rel.foreignKeySpec().pkColumnName(), maxKeysPerQuery)) {
+            inner = toManyProperty(rel, concat(sql("SELECT * FROM " + rel.foreignKeySpec().fkTableName() + " WHERE"), chunkedIn(sql(fkColumn), keys)));
+            result.putAll(inner.mementoPerQuery(conn, owningClass, null));
+        }
+        return result;
+    }
+
+    private InjectedToManyProperty toManyProperty(OneToManySpec rel, SqlSnippet detailSql) {
+        final AQuery<?> detailQuery = queryFactory.apply(rel.elementClass(), detailSql);
+        return new InjectedToManyProperty(propertyName, rel.foreignKeySpec().pkColumnName(), rel.keyType(), rel.foreignKeySpec().fkColumnName(), detailQuery, rel.collectionBuildStrategy());
+    }
+
     @Override public AOption<Object> value (Connection conn, SqlRow currentRow, Object memento) {
         return inner.value(conn, currentRow, (Map) memento);
     }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MappedOneToMany that = (MappedOneToMany) o;
+        return maxKeysPerQuery == that.maxKeysPerQuery &&
+                Objects.equals(propertyName, that.propertyName) &&
+                beanMappingRegistry == that.beanMappingRegistry &&
+                Objects.equals(spec, that.spec) &&
+                fetchMode == that.fetchMode;
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(propertyName, spec, fetchMode, maxKeysPerQuery);
+    }
 }
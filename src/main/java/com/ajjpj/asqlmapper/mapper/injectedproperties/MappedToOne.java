@@ -3,7 +3,10 @@ package com.ajjpj.asqlmapper.mapper.injectedproperties;
 import static com.ajjpj.asqlmapper.core.SqlSnippet.*;
 
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiFunction;
 
@@ -11,6 +14,7 @@ import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.core.AQuery;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
+import com.ajjpj.asqlmapper.core.impl.Constants;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedProperty;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedToOneProperty;
 import com.ajjpj.asqlmapper.mapper.beans.BeanMappingRegistry;
@@ -23,15 +27,31 @@ public class MappedToOne implements InjectedProperty {
     private final BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory;
 
     private final Optional<ToOneSpec> spec;
+    private final RelationFetchMode fetchMode;
+    private final int maxKeysPerQuery;
 
     private InjectedToOneProperty inner;
 
     public MappedToOne(String propertyName, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
                        Optional<ToOneSpec> spec) {
+        this(propertyName, beanMappingRegistry, queryFactory, spec, RelationFetchMode.SUBQUERY, Constants.DEFAULT_MAX_KEYS_PER_QUERY);
+    }
+
+    /**
+     * @param maxKeysPerQuery the maximum number of keys per query for referenced rows in {@link RelationFetchMode#KEYS KEYS} mode
+     */
+    public MappedToOne(String propertyName, BeanMappingRegistry beanMappingRegistry, BiFunction<Class<?>, SqlSnippet, AQuery<?>> queryFactory,
+                       Optional<ToOneSpec> spec, RelationFetchMode fetchMode, int maxKeysPerQuery) {
         this.propertyName = propertyName;
         this.beanMappingRegistry = beanMappingRegistry;
         this.queryFactory = queryFactory;
         this.spec = spec;
+        this.fetchMode = fetchMode;
+        this.maxKeysPerQuery = maxKeysPerQuery;
+    }
+
+    public MappedToOne withFetchMode(RelationFetchMode fetchMode) {
+        return new MappedToOne(propertyName, beanMappingRegistry, queryFactory, spec, fetchMode, maxKeysPerQuery);
     }
 
     @Override public String propertyName () {
@@ -48,13 +68,52 @@ public class MappedToOne implements InjectedProperty {
                 owningQuery,
                 sql(") X)")
         );
-        final AQuery<?> detailQuery = queryFactory.apply(rel.elementClass(), detailSql);
-
-        inner = new InjectedToOneProperty(propertyName, rel.foreignKeySpec().fkColumnName(), rel.keyType(), rel.foreignKeySpec().pkColumnName(), detailQuery);
+        inner = toOneProperty(rel, detailSql);
         return inner.mementoPerQuery(conn, owningClass, owningQuery);
     }
 
+    @Override public boolean requiresOwningRows() {
+        return fetchMode == RelationFetchMode.KEYS;
+    }
+
+    @Override public boolean supportsOwningRows() {
+        return true;
+    }
+
+    @Override public Object mementoForRows(Connection conn, Class owningClass, List owningRows) {
+        final ToOneSpec rel = spec.orElseGet(() -> beanMappingRegistry.resolveToOne(conn, owningClass, propertyName));
+        final String pkColumn = rel.foreignKeySpec().pkColumnName();
+
+        final Map<Object, Object> result = new HashMap<>();
+        inner = toOneProperty(rel, concat(sql("SELECT * FROM " + rel.foreignKeySpec().pkTableName() + " WHERE"), FALSE));
+        for (List<Object> keys : MasterKeys.chunks(owningRows, rel.keyType(), rel.foreignKeySpec().fkColumnName(), maxKeysPerQuery)) {
+            inner = toOneProperty(rel, concat(sql("SELECT * FROM " + rel.foreignKeySpec().pkTableName() + " WHERE"), chunkedIn(sql(pkColumn), keys)));
+            result.putAll(inner.mementoPerQuery(conn, owningClass, null));
+        }
+        return result;
+    }
+
+    private InjectedToOneProperty toOneProperty(ToOneSpec rel, SqlSnippet detailSql) {
+        final AQuery<?> detailQuery = queryFactory.apply(rel.elementClass(), detailSql);
+        return new InjectedToOneProperty(propertyName, rel.foreignKeySpec().fkColumnName(), rel.keyType(), rel.foreignKeySpec().pkColumnName(), detailQuery);
+    }
+
     @Override public AOption<Object> value (Connection conn, SqlRow currentRow, Object memento) {
         return inner.value(conn, currentRow, (Map) memento);
     }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MappedToOne that = (MappedToOne) o;
+        return maxKeysPerQuery == that.maxKeysPerQuery &&
+                Objects.equals(propertyName, that.propertyName) &&
+                beanMappingRegistry == that.beanMappingRegistry &&
+                Objects.equals(spec, that.spec) &&
+                fetchMode == that.fetchMode;
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(propertyName, spec, fetchMode, maxKeysPerQuery);
+    }
 }
@@ -0,0 +1,40 @@
+package com.ajjpj.asqlmapper.mapper.injectedproperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ajjpj.asqlmapper.core.common.SqlRow;
+
+/**
+ * Helper for relations in {@link RelationFetchMode#KEYS KEYS} mode.
+ */
+class MasterKeys {
+    /**
+     * @return the distinct non-null keys in a given column of the owning rows, split into chunks of at most {@code maxChunkSize} keys
+     */
+    static List<List<Object>> chunks(List<?> owningRows, Class<?> keyType, String keyColumn, int maxChunkSize) {
+        final Set<Object> keys = new LinkedHashSet<>();
+        for (Object row : owningRows) {
+            final Object key = ((SqlRow) row).get(keyType, keyColumn);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+
+        final List<List<Object>> result = new ArrayList<>();
+        List<Object> chunk = new ArrayList<>();
+        for (Object key : keys) {
+            if (chunk.size() == maxChunkSize) {
+                result.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.add(key);
+        }
+        if (!chunk.isEmpty()) {
+            result.add(chunk);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ajjpj.asqlmapper.mapper.injectedproperties;
+
+/**
+ * Determines how the related rows for a relation are selected.
+ */
+public enum RelationFetchMode {
+    /**
+     * The related rows are selected with the owning query as a subquery, i.e. {@code ... WHERE fk IN (SELECT pk FROM (<owning query>) X)}.
+     *  This requires no additional memory, but the database executes the owning query a second time for every relation.
+     */
+    SUBQUERY,
+
+    /**
+     * The owning query's rows are read before they are mapped, and the related rows are selected with the keys from those rows as
+     *  parameters, i.e. {@code ... WHERE fk IN (?,?,...)}. The owning query is executed only once, but all of its rows are held in memory
+     *  while the related rows are read.
+     */
+    KEYS
+}
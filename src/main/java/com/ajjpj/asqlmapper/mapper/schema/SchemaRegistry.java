@@ -26,6 +26,10 @@ public class SchemaRegistry {
         this.dialect = dialect;
     }
 
+    public DatabaseDialect dialect() {
+        return dialect;
+    }
+
     public void clearCache() {
         tableCache.clear();
     }
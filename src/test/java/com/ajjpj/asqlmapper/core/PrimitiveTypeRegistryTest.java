@@ -2,7 +2,9 @@ package com.ajjpj.asqlmapper.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.sql.JDBCType;
 import java.time.Instant;
+import java.time.LocalDate;
 
 import org.junit.jupiter.api.Test;
 
@@ -56,6 +58,34 @@ public class PrimitiveTypeRegistryTest {
         assertEquals(Long.valueOf(1), registry.fromSql(Long.class, 1));
     }
 
+    @Test void testConverterFor() {
+        final PrimitiveTypeRegistry registry = PrimitiveTypeRegistry.defaults();
+
+        final Converter<Long> longConverter = registry.converterFor(JDBCType.INTEGER, Long.class);
+        assertNull(longConverter.fromSql(null));
+        assertEquals(Long.valueOf(1), longConverter.fromSql(1));
+        assertEquals(Long.valueOf(2), longConverter.fromSql(2L));
+        assertSame(longConverter, registry.converterFor(JDBCType.INTEGER, Long.class));
+
+        final Converter<LocalDate> dateConverter = registry.converterFor(JDBCType.DATE, LocalDate.class);
+        assertEquals(LocalDate.of(2019, 3, 4), dateConverter.fromSql(java.sql.Date.valueOf("2019-03-04")));
+
+        final Converter<Long> noHandler = PrimitiveTypeRegistry.empty().converterFor(JDBCType.BIGINT, Long.class);
+        assertNull(noHandler.fromSql(null));
+        assertEquals(Long.valueOf(1), noHandler.fromSql(1L));
+        assertThrows(IllegalArgumentException.class, () -> noHandler.fromSql(1));
+    }
+
+    @Test void testRawConverterFor() {
+        final PrimitiveTypeRegistry registry = PrimitiveTypeRegistry.defaults();
+
+        final Instant now = Instant.now();
+        assertEquals(now, registry.rawConverterFor(JDBCType.TIMESTAMP).fromSql(java.sql.Timestamp.from(now)));
+        assertEquals(now, registry.rawConverterFor(JDBCType.OTHER).fromSql(java.sql.Timestamp.from(now)));
+        assertEquals("abc", registry.rawConverterFor(JDBCType.VARCHAR).fromSql("abc"));
+        assertNull(registry.rawConverterFor(JDBCType.VARCHAR).fromSql(null));
+    }
+
     @Test void testToSql() {
         assertThrows(IllegalArgumentException.class, () -> PrimitiveTypeRegistry.empty().toSql(1L));
 
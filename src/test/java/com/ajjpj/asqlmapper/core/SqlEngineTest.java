@@ -1,19 +1,34 @@
 package com.ajjpj.asqlmapper.core;
 
+import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
 import static com.ajjpj.asqlmapper.core.SqlSnippet.sql;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.ajjpj.acollections.AList;
 import com.ajjpj.acollections.util.AOption;
 import com.ajjpj.asqlmapper.AbstractDatabaseTest;
 import com.ajjpj.asqlmapper.core.common.CommonPrimitiveHandlers;
+import com.ajjpj.asqlmapper.core.common.DetachedSqlRow;
 import com.ajjpj.asqlmapper.core.common.RawRowExtractor;
 import com.ajjpj.asqlmapper.core.common.ScalarRowExtractor;
 import com.ajjpj.asqlmapper.core.common.SqlRow;
+import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -138,6 +153,61 @@ public class SqlEngineTest extends AbstractDatabaseTest {
         }
     }
 
+    @Test void testGroupedBatch() {
+        createPerson(1, "Arno1");
+        createPerson(2, "Arno2");
+
+        final SqlEngine engine = SqlEngine.create();
+        final List<SqlSnippet> items = AList.of(
+                sql("UPDATE person SET name=? WHERE id=?", "A", 1),
+                sql("DELETE FROM person WHERE id=?", 3),
+                sql("UPDATE person SET name=? WHERE id=?", "B", 3),
+                sql("INSERT INTO person (id, name) VALUES (?,?)", 4, "D"),
+                sql("UPDATE person SET name=? WHERE id=?", "C", 2)
+        );
+
+        final int[] results = engine.executeGroupedBatch(conn, items);
+        assertArrayEquals(new int[] {1, 0, 0, 1, 1}, results);
+        assertEquals(AList.of("A", "C", "D"), engine.stringQuery("SELECT name FROM person ORDER BY id").list(conn));
+
+        // preserving the order, the UPDATE sees the row inserted before it
+        final List<SqlSnippet> dependent = AList.of(
+                sql("INSERT INTO person (id, name) VALUES (?,?)", 5, "E"),
+                sql("UPDATE person SET name=? WHERE id=?", "E2", 5),
+                sql("INSERT INTO person (id, name) VALUES (?,?)", 6, "F"),
+                sql("INSERT INTO person (id, name) VALUES (?,?)", 7, "G")
+        );
+        assertArrayEquals(new int[] {1, 1, 1, 1}, engine.executeGroupedBatch(conn, dependent, true));
+        assertEquals("E2", engine.stringQuery("SELECT name FROM person WHERE id=?", 5).single(conn));
+    }
+
+    @Test void testChunkedBatch() {
+        final SqlEngine engine = SqlEngine.create();
+
+        final BatchSummary inserted = engine.executeBatch(conn, "INSERT INTO person (id, name) VALUES (?,?)",
+                LongStream.range(0, 25).mapToObj(i -> AList.of(i, "Person " + i)), 10, ChunkBoundary.NONE);
+        assertEquals(25, inserted.numItems());
+        assertEquals(3, inserted.numChunks());
+        assertEquals(25, inserted.numRowsAffected());
+        assertEquals(25L, engine.longQuery("SELECT COUNT(*) FROM person").single(conn).longValue());
+
+        final Iterator<SqlSnippet> updates = LongStream.range(20, 30)
+                .mapToObj(i -> sql("UPDATE person SET name=? WHERE id=?", "Updated", i))
+                .iterator();
+        final BatchSummary updated = engine.executeBatch(conn, updates, 4, ChunkBoundary.SAVEPOINT);
+        assertEquals(10, updated.numItems());
+        assertEquals(3, updated.numChunks());
+        assertEquals(5, updated.numRowsAffected());
+
+        // a failing chunk is rolled back to its savepoint, previous chunks are kept
+        assertThrows(Exception.class, () -> engine.executeBatch(conn, "INSERT INTO person (id, name) VALUES (?,?)",
+                Stream.of(AList.of(100, "a"), AList.of(101, "b"), AList.of(102, "c"), AList.of(103, "d"), AList.of(100, "duplicate")), 3,
+                ChunkBoundary.SAVEPOINT));
+        assertEquals(3L, engine.longQuery("SELECT COUNT(*) FROM person WHERE id >= 100").single(conn).longValue());
+
+        assertThrows(IllegalArgumentException.class, () -> engine.executeBatch(conn, updates, 0, ChunkBoundary.NONE));
+    }
+
     @Test void testLargeBatchParams() {
         createPerson(1, "Arno1");
         createPerson(2, "Arno2");
@@ -515,6 +585,101 @@ public class SqlEngineTest extends AbstractDatabaseTest {
         assertEquals(AList.of("Arno", "Bert", "Curt"), engine.rawQuery(sql("SELECT name FROM person"), sql("ORDER BY id")).list(conn).map(row -> row.getString(0)));
     }
 
+    @Test void testPrimitiveRowAccess() throws SQLException {
+        createPerson(1, "Arno");
+        executeUpdate("INSERT INTO person (id, name) VALUES (2, NULL)");
+
+        final SqlEngine engine = SqlEngine.create();
+        final String query = "SELECT id, CAST(id*1.5 AS DOUBLE) AS d, id=1 AS b, CASE WHEN name IS NULL THEN NULL ELSE id END AS n FROM person ORDER BY id";
+
+        final List<SqlRow> detached = engine.rawQuery(query).list(conn);
+        final List<SqlRow> live = new ArrayList<>();
+        engine.rawQuery(query).forEachWithRowAccess(conn, (el, row) -> {
+            assertPrimitiveRowAccess(row, live.isEmpty());
+            live.add(el);
+        });
+        assertEquals(2, live.size());
+
+        assertPrimitiveRowAccess(detached.get(0), true);
+        assertPrimitiveRowAccess(detached.get(1), false);
+        assertPrimitiveRowAccess(new MinimalSqlRow(detached.get(0)), true);
+        assertPrimitiveRowAccess(new MinimalSqlRow(detached.get(1)), false);
+        assertEquals(detached.get(0).get(0), new MinimalSqlRow(detached.get(0)).getRaw(0));
+    }
+
+    @Test void testLiveRowAccess() {
+        createPerson(1, "Arno");
+
+        final List<String> result = new ArrayList<>();
+        SqlEngine.create().rawQuery("SELECT id, name, name AS n2 FROM person").forEachWithRowAccess(conn, (el, row) -> {
+            assertEquals(3, row.numColumns());
+            assertEquals(Long.valueOf(1), row.get(0));
+            assertEquals("Arno", row.get(1));
+            assertEquals("Arno", row.get("NAME"));
+            assertEquals("Arno", row.get("name"));
+            assertEquals("Arno", row.get(String.class, "N2"));
+            assertEquals(Long.valueOf(1), row.getLong("Id"));
+            assertThrows(Exception.class, () -> row.get("no_such_column"));
+            result.add(row.getString(1));
+        });
+        assertEquals(AList.of("Arno"), result);
+    }
+
+    @Test void testDetachedRows() {
+        createPerson(1, "Arno");
+        createPerson(2, "Bert");
+
+        final SqlEngine engine = SqlEngine.create();
+        final List<SqlRow> rows = engine.rawQuery("SELECT id, name FROM person ORDER BY id").list(conn);
+        assertSame(((DetachedSqlRow) rows.get(0)).schema(), ((DetachedSqlRow) rows.get(1)).schema());
+
+        assertEquals("DetachedSqlRow{ID->1,NAME->Arno}", rows.get(0).toString());
+        assertEquals("Bert", rows.get(1).get("name"));
+        assertEquals(Long.valueOf(2), rows.get(1).get(Long.class, 0));
+        assertNull(rows.get(1).get("no_such_column"));
+
+        final List<SqlRow> reordered = engine.rawQuery("SELECT name, id FROM person ORDER BY id").list(conn);
+        assertEquals(rows, reordered);
+        assertEquals(rows.get(0).hashCode(), reordered.get(0).hashCode());
+        assertNotEquals(rows.get(0), reordered.get(1));
+    }
+
+    /**
+     * implements only SqlRow's abstract methods, like implementations outside the library would
+     */
+    private static class MinimalSqlRow implements SqlRow {
+        private final SqlRow inner;
+
+        MinimalSqlRow(SqlRow inner) {
+            this.inner = inner;
+        }
+
+        @Override public DetachedSqlRow detach() {
+            return inner.detach();
+        }
+        @Override public List<String> columnNames() {
+            return inner.columnNames();
+        }
+        @Override public <T> T get(Class<T> cls, String columnName) {
+            return inner.get(cls, columnName);
+        }
+        @Override public Object get(String columnName) {
+            return inner.get(columnName);
+        }
+    }
+
+    private void assertPrimitiveRowAccess(SqlRow row, boolean isFirst) {
+        assertEquals(isFirst ? 1 : 2, row.getIntValue(0));
+        assertFalse(row.wasNull());
+        assertEquals(isFirst ? 1L : 2L, row.getLongValue("id"));
+        assertFalse(row.wasNull());
+        assertEquals(isFirst ? 1.5 : 3.0, row.getDoubleValue(1));
+        assertEquals(isFirst, row.getBooleanValue("b"));
+
+        assertEquals(isFirst ? 1L : 0L, row.getLongValue("n"));
+        assertEquals(!isFirst, row.wasNull());
+    }
+
     @Test void testLongQuery() {
         final SqlEngine engine = SqlEngine.create();
 
@@ -568,6 +733,264 @@ public class SqlEngineTest extends AbstractDatabaseTest {
         assertEquals(1.0, engine.doubleQuery(sql("SELECT id"), sql("FROM person")).single(conn), .000001);
     }
 
+    @Test void testStatementCache() {
+        final AtomicInteger hits = new AtomicInteger();
+        final AtomicInteger misses = new AtomicInteger();
+        final SqlEngine engine = SqlEngine
+                .create()
+                .withStatementCache(2)
+                .withListener(new SqlEngineEventListener() {
+                    @Override public void onStatementCacheHit(String sql) {
+                        hits.incrementAndGet();
+                    }
+                    @Override public void onStatementCacheMiss(String sql) {
+                        misses.incrementAndGet();
+                    }
+                });
+
+        try {
+            engine.executeUpdate(conn, "INSERT INTO person (id, name) VALUES (?,?)", 2, "Bert");
+            engine.executeUpdate(conn, "INSERT INTO person (id, name) VALUES (?,?)", 3, "Christa");
+            assertEquals(1, misses.get());
+            assertEquals(1, hits.get());
+
+            assertEquals("Bert", engine.stringQuery("SELECT name FROM person WHERE id=?", 2).single(conn));
+            assertEquals("Christa", engine.stringQuery("SELECT name FROM person WHERE id=?", 3).single(conn));
+            assertEquals(2, misses.get());
+            assertEquals(2, hits.get());
+
+            // a third statement evicts the least recently used one, i.e. the INSERT
+            assertEquals(2L, engine.longQuery("SELECT COUNT(*) FROM person").single(conn).longValue());
+            engine.executeUpdate(conn, "INSERT INTO person (id, name) VALUES (?,?)", 4, "Dora");
+            assertEquals(4, misses.get());
+            assertEquals(2, hits.get());
+
+            // nested use of the same SQL must not share a statement
+            final List<Long> ids = new ArrayList<>();
+            final List<Integer> nestedSizes = new ArrayList<>();
+            engine.longQuery("SELECT id FROM person ORDER BY id").forEach(conn, id -> {
+                ids.add(id);
+                nestedSizes.add(engine.longQuery("SELECT id FROM person ORDER BY id").list(conn).size());
+            });
+            assertEquals(Arrays.asList(2L, 3L, 4L), ids);
+            assertEquals(Arrays.asList(3, 3, 3), nestedSizes);
+        }
+        finally {
+            engine.releaseCachedStatements(conn);
+        }
+    }
+
+    @Test void testParallelStream() throws SQLException {
+        for (int i=0; i<100; i++) {
+            createPerson(i, "p" + i);
+        }
+        // partitions are read on separate connections
+        conn.commit();
+
+        final SqlEngine engine = SqlEngine.create();
+        final Set<Long> expected = LongStream.range(0, 100).boxed().collect(Collectors.toSet());
+
+        try (Stream<Long> s = engine.longQuery("SELECT id FROM person").parallelStream(() -> executeUnchecked(() -> ds.getConnection()), "id", Arrays.asList(10, 50, 90))) {
+            assertTrue(s.isParallel());
+            assertEquals(expected, s.collect(Collectors.toSet()));
+        }
+        try (Stream<Long> s = engine.longQuery("SELECT id FROM person").parallelStream(() -> executeUnchecked(() -> ds.getConnection()), "id", Collections.emptyList())) {
+            assertEquals(expected, s.collect(Collectors.toSet()));
+        }
+        try (Stream<String> s = engine.stringQuery("SELECT name FROM person")
+                .parallelStream(() -> executeUnchecked(() -> ds.getConnection()), Arrays.asList(sql("id<?", 3), sql("id=?", 50)))) {
+            assertEquals(new HashSet<>(Arrays.asList("p0", "p1", "p2", "p50")), s.collect(Collectors.toSet()));
+        }
+    }
+
+    @Test void testAsync() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final SqlEngine engine = SqlEngine.create();
+            final Supplier<Connection> connectionSupplier = () -> executeUnchecked(() -> {
+                final Connection result = ds.getConnection();
+                result.setAutoCommit(true);
+                return result;
+            });
+
+            assertEquals(1, engine.executeUpdateAsync(executor, connectionSupplier, "INSERT INTO person (id, name) VALUES (?,?)", 1, "Arno").get().intValue());
+            assertArrayEquals(new int[] {1, 1}, engine.executeBatchAsync(executor, connectionSupplier, Arrays.asList(
+                    sql("INSERT INTO person (id, name) VALUES (?,?)", 2, "Bert"),
+                    sql("INSERT INTO person (id, name) VALUES (?,?)", 3, "Christa"))).get());
+
+            final CompletableFuture<Long> count = engine.longQuery("SELECT COUNT(*) FROM person").singleAsync(executor, connectionSupplier);
+            final CompletableFuture<AList<String>> names = engine.stringQuery("SELECT name FROM person ORDER BY id").listAsync(executor, connectionSupplier);
+            assertEquals(3L, count.get().longValue());
+            assertEquals(AList.of("Arno", "Bert", "Christa"), names.get());
+            assertEquals("Arno,Bert,Christa",
+                    engine.stringQuery("SELECT name FROM person ORDER BY id").collectAsync(executor, connectionSupplier, Collectors.joining(",")).get());
+
+            final ExecutionException exc = assertThrows(ExecutionException.class,
+                    () -> engine.longQuery("SELECT id FROM person WHERE id=?", 99).singleAsync(executor, connectionSupplier).get());
+            assertTrue(exc.getCause() instanceof NoSuchElementException);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void testCursor() {
+        for (int i=0; i<5; i++) {
+            createPerson(i, "p" + i);
+        }
+
+        final SqlEngine engine = SqlEngine.create();
+
+        try (ACursor<Long> cursor = engine.longQuery("SELECT id FROM person ORDER BY id").cursor(conn)) {
+            assertEquals(AList.of(0L, 1L), cursor.next(2));
+            assertFalse(cursor.isExhausted());
+            assertEquals(AList.of(2L, 3L, 4L), cursor.next(10));
+            assertTrue(cursor.isExhausted());
+            assertTrue(cursor.next(1).isEmpty());
+        }
+
+        // closing a cursor before its end releases the statement, which is checked when the test's connection is closed
+        try (ACursor<Long> cursor = engine.longQuery("SELECT id FROM person ORDER BY id").cursor(conn)) {
+            assertEquals(AList.of(0L), cursor.next(1));
+        }
+
+        try (ACursor<Long> cursor = engine.longQuery("SELECT id FROM person ORDER BY id").cursor(conn)) {
+            assertThrows(IllegalArgumentException.class, () -> cursor.next(0));
+        }
+    }
+
+    @Test void testQueryCache() throws SQLException {
+        final AtomicInteger numQueries = new AtomicInteger();
+        final SqlEngine engine = SqlEngine
+                .create()
+                .withQueryCache(100, Duration.ofMinutes(1))
+                .withListener(new SqlEngineEventListener() {
+                    @Override public void onBeforeQuery(SqlSnippet sql, Class<?> rowClass) {
+                        numQueries.incrementAndGet();
+                    }
+                });
+        createPerson(1, "Arno");
+
+        final AQuery<String> byId = engine.stringQuery("SELECT name FROM person WHERE id=?", 1).cached("person");
+        assertEquals("Arno", byId.single(conn));
+        assertEquals("Arno", byId.single(conn));
+        assertEquals(1, numQueries.get());
+
+        // different parameters are different cache entries, and queries that are not marked as cached always go to the database
+        assertEquals(AOption.none(), engine.stringQuery("SELECT name FROM person WHERE id=?", 2).cached("person").optional(conn));
+        assertEquals("Arno", engine.stringQuery("SELECT name FROM person WHERE id=?", 1).single(conn));
+        assertEquals(3, numQueries.get());
+
+        // writes through the engine invalidate entries for the table
+        engine.executeUpdate(conn, "UPDATE person SET name=? WHERE id=?", "Arno2", 1);
+        conn.commit();
+        engine.transactionEnded(conn);
+        assertEquals("Arno2", byId.single(conn));
+        assertEquals("Arno2", byId.single(conn));
+        assertEquals(4, numQueries.get());
+
+        // writes bypassing the engine are not noticed
+        final AQuery<String> all = engine.stringQuery("SELECT name FROM person ORDER BY id").cached("PERSON");
+        assertEquals(AList.of("Arno2"), all.list(conn));
+        createPerson(2, "Bert");
+        assertEquals(AList.of("Arno2"), all.list(conn));
+        assertEquals(5, numQueries.get());
+
+        engine.executeUpdate(conn, "DELETE FROM Person WHERE id=?", 99);
+        assertEquals(AList.of("Arno2", "Bert"), all.list(conn));
+        assertEquals(6, numQueries.get());
+    }
+
+    @Test void testQueryCacheIgnoresUncommittedWrites() throws SQLException {
+        final AtomicInteger numQueries = new AtomicInteger();
+        final SqlEngine engine = SqlEngine
+                .create()
+                .withQueryCache(100, Duration.ofMinutes(1))
+                .withListener(new SqlEngineEventListener() {
+                    @Override public void onBeforeQuery(SqlSnippet sql, Class<?> rowClass) {
+                        numQueries.incrementAndGet();
+                    }
+                });
+        createPerson(1, "Arno");
+        conn.commit();
+
+        // the writing connection sees its uncommitted change, but it does not go into the cache
+        final AQuery<String> byId = engine.stringQuery("SELECT name FROM person WHERE id=?", 1).cached("person");
+        engine.executeUpdate(conn, "UPDATE person SET name=? WHERE id=?", "Uncommitted", 1);
+        assertEquals("Uncommitted", byId.single(conn));
+        conn.rollback();
+
+        try (Connection conn2 = ds.getConnection()) {
+            assertEquals("Arno", byId.single(conn2));
+            assertEquals("Arno", byId.single(conn2));
+        }
+        assertEquals(2, numQueries.get());
+
+        // the cache is bypassed for the writing connection until the end of its transaction is reported, which invalidates the tables
+        //  it wrote once more
+        assertEquals("Arno", byId.single(conn));
+        assertEquals(3, numQueries.get());
+        engine.transactionEnded(conn);
+        assertEquals("Arno", byId.single(conn));
+        assertEquals("Arno", byId.single(conn));
+        assertEquals(4, numQueries.get());
+    }
+
+    @Test void testQueryCacheAfterConcurrentCommit() throws SQLException {
+        final SqlEngine engine = SqlEngine.create().withQueryCache(100, Duration.ofMinutes(1));
+        createPerson(1, "Arno");
+        conn.commit();
+
+        final AQuery<String> byId = engine.stringQuery("SELECT name FROM person WHERE id=?", 1).cached("person");
+        engine.executeUpdate(conn, "UPDATE person SET name=? WHERE id=?", "Arno2", 1);
+
+        try (Connection conn2 = ds.getConnection()) {
+            // other transactions read the old row until the write is committed, and it goes into the cache...
+            assertEquals("Arno", byId.single(conn2));
+
+            // ... but committing the write invalidates it
+            conn.commit();
+            engine.transactionEnded(conn);
+            assertEquals("Arno2", byId.single(conn2));
+        }
+    }
+
+    @Test void testColumnarQuery() {
+        final SqlEngine engine = SqlEngine.create();
+        for (int i=0; i<100; i++) {
+            engine.executeUpdate(conn, "INSERT INTO person (id, name) VALUES (?,?)", i, i%3 == 2 ? null : "name" + i%3);
+        }
+
+        final ColumnarResult result = engine.columnarQuery(conn,
+                "SELECT id, CAST(id AS INT) AS small_id, CAST(id * 1.5 AS DOUBLE) AS amount, name, CAST(? AS TIMESTAMP) AS ts " +
+                        "FROM person WHERE id < ? ORDER BY id",
+                Timestamp.valueOf("2020-02-03 04:05:06"), 99);
+        assertEquals(99, result.numRows());
+        assertEquals(AList.of("ID", "SMALL_ID", "AMOUNT", "NAME", "TS"), result.columnNames());
+
+        assertEquals(99, result.longColumn("id").values().length);
+        assertEquals(98, result.longColumn("id").getLong(98));
+        assertEquals(17, result.intColumn("SMALL_ID").getInt(17));
+        assertEquals(15.0, result.doubleColumn("amount").getDouble(10));
+        assertEquals(Long.valueOf(3), result.column("id").get(3));
+
+        final ColumnarResult.StringColumn names = result.stringColumn("name");
+        assertEquals(AList.of("name0", "name1"), AList.from(names.dictionary()));
+        assertEquals("name1", names.get(97));
+        assertEquals(1, names.getCode(97));
+        assertNull(names.get(98));
+        assertEquals(-1, names.getCode(98));
+        assertTrue(names.isNull(98));
+        assertFalse(names.isNull(97));
+
+        final long expectedMillis = Timestamp.valueOf("2020-02-03 04:05:06").getTime();
+        assertEquals(expectedMillis, result.instantColumn("ts").getEpochMillis(50));
+        assertEquals(Instant.ofEpochMilli(expectedMillis), result.instantColumn("ts").get(50));
+
+        assertThrows(IllegalArgumentException.class, () -> result.column("no_such_column"));
+        assertThrows(IllegalArgumentException.class, () -> result.longColumn("name"));
+    }
+
     @Test
     @Disabled
     void testRawTypeMapping() {
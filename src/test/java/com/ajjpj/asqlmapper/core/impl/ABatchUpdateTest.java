@@ -18,7 +18,9 @@ class ABatchUpdateTest extends AbstractDatabaseTest {
         int[] result = new ABatchUpdate(Collections.emptyList(),
                 PrimitiveTypeRegistry.defaults(),
                 AVector.empty(),
-                AOption.of(Suppliers.ofInstance(conn))
+                AOption.of(Suppliers.ofInstance(conn)),
+                StatementCache.NONE,
+                QueryCache.NONE
                 ).execute();
         assertArrayEquals(new int[0], result);
     }
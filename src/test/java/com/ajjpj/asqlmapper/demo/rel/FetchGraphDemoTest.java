@@ -0,0 +1,162 @@
+package com.ajjpj.asqlmapper.demo.rel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import com.ajjpj.acollections.AList;
+import com.ajjpj.acollections.ASet;
+import com.ajjpj.acollections.immutable.AVector;
+import com.ajjpj.asqlmapper.AbstractDatabaseTest;
+import com.ajjpj.asqlmapper.SqlMapperBuilder;
+import com.ajjpj.asqlmapper.javabeans.annotations.Table;
+import com.ajjpj.asqlmapper.mapper.AMapperQuery;
+import com.ajjpj.asqlmapper.mapper.DatabaseDialect;
+import com.ajjpj.asqlmapper.mapper.FetchGraph;
+import com.ajjpj.asqlmapper.mapper.SqlMapper;
+import com.ajjpj.asqlmapper.mapper.injectedproperties.RelationFetchMode;
+import lombok.Builder;
+import lombok.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FetchGraphDemoTest extends AbstractDatabaseTest {
+    @SuppressWarnings("WeakerAccess")
+    @Value @Builder @Table("person")
+    static class PersonWithOrders {
+        long id;
+        String name;
+        ASet<Order> orders;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Value @Builder @Table("orders")
+    static class Order {
+        long id;
+        long personId;
+        ASet<OrderLine> lines;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Value @Builder @Table("order_line")
+    static class OrderLine {
+        long id;
+        long orderId;
+        long productId;
+        Product product;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Value @Builder @Table("product")
+    static class Product {
+        long id;
+        String name;
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        executeUpdate("create table person(id bigint primary key, name varchar(200))");
+        executeUpdate("create table product(id bigint primary key, name varchar(200))");
+        executeUpdate("create table orders(id bigint primary key, personId bigint references person)");
+        executeUpdate("create table order_line(id bigint primary key, orderId bigint references orders, productId bigint references product)");
+
+        executeUpdate("insert into person(id, name) values (1, 'Arno'), (2, 'Albrecht'), (3, 'Nobody')");
+        executeUpdate("insert into product(id, name) values (1, 'apple'), (2, 'banana')");
+        executeUpdate("insert into orders(id, personId) values (11, 1), (12, 1), (21, 2)");
+        executeUpdate("insert into order_line(id, orderId, productId) values (111, 11, 1), (112, 11, 2), (211, 21, 2)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        executeUpdate("drop table order_line");
+        executeUpdate("drop table orders");
+        executeUpdate("drop table product");
+        executeUpdate("drop table person");
+    }
+
+    private SqlMapper mapper(RelationFetchMode fetchMode) {
+        return new SqlMapperBuilder()
+                .withDefaultPkName("id")
+                .withBeanStyle(SqlMapperBuilder.BeanStyle.lombok)
+                .withDefaultConnectionSupplier(() -> conn)
+                .withRelationFetchMode(fetchMode)
+                .build(DatabaseDialect.H2);
+    }
+
+    @Test
+    void testFetchGraph() {
+        final Product apple = Product.builder().id(1).name("apple").build();
+        final Product banana = Product.builder().id(2).name("banana").build();
+
+        final AList<PersonWithOrders> expected = AList.of(
+                PersonWithOrders.builder().id(1).name("Arno").orders(ASet.of(
+                        Order.builder().id(11).personId(1).lines(ASet.of(
+                                OrderLine.builder().id(111).orderId(11).productId(1).product(apple).build(),
+                                OrderLine.builder().id(112).orderId(11).productId(2).product(banana).build()
+                        )).build(),
+                        Order.builder().id(12).personId(1).lines(ASet.empty()).build()
+                )).build(),
+                PersonWithOrders.builder().id(2).name("Albrecht").orders(ASet.of(
+                        Order.builder().id(21).personId(2).lines(ASet.of(
+                                OrderLine.builder().id(211).orderId(21).productId(2).product(banana).build()
+                        )).build()
+                )).build(),
+                PersonWithOrders.builder().id(3).name("Nobody").orders(ASet.empty()).build()
+        );
+
+        for (RelationFetchMode fetchMode : RelationFetchMode.values()) {
+            final AMapperQuery<PersonWithOrders> query = mapper(fetchMode)
+                    .query(PersonWithOrders.class, "select * from person order by id")
+                    .withFetchGraph(FetchGraph.of("orders", FetchGraph.of("lines", "product")));
+
+            assertEquals(expected, query.list());
+            assertEquals(expected.get(0), query.first().get());
+            for (int fetchSize = 1; fetchSize <= 3; fetchSize++) {
+                assertEquals(expected, AVector.from(query.stream(fetchSize).collect(Collectors.toList())));
+            }
+        }
+    }
+
+    @Test
+    void testCachedFetchGraphs() {
+        final SqlMapper mapper = new SqlMapperBuilder()
+                .withDefaultPkName("id")
+                .withBeanStyle(SqlMapperBuilder.BeanStyle.lombok)
+                .withDefaultConnectionSupplier(() -> conn)
+                .withQueryCache(100, Duration.ofMinutes(1))
+                .build(DatabaseDialect.H2);
+        final String sql = "select * from person where id=1";
+
+        // queries differing only in their fetch graphs have separate cache entries
+        final PersonWithOrders shallow = mapper.query(PersonWithOrders.class, sql)
+                .withFetchGraph(FetchGraph.of("orders"))
+                .cached("person", "orders", "order_line", "product")
+                .single();
+        final PersonWithOrders deep = mapper.query(PersonWithOrders.class, sql)
+                .withFetchGraph(FetchGraph.of("orders", FetchGraph.of("lines", "product")))
+                .cached("person", "orders", "order_line", "product")
+                .single();
+        assertEquals(2, shallow.getOrders().size());
+        assertEquals(2, deep.getOrders().size());
+        for (Order order : shallow.getOrders()) {
+            assertNull(order.getLines());
+        }
+        for (Order order : deep.getOrders()) {
+            assertNotNull(order.getLines());
+        }
+
+        // equal fetch graphs share them
+        assertSame(deep, mapper.query(PersonWithOrders.class, sql)
+                .withFetchGraph(FetchGraph.of("orders", FetchGraph.of("lines", "product")))
+                .cached("person", "orders", "order_line", "product")
+                .single());
+    }
+
+    @Test
+    void testFetchGraphToString() {
+        assertEquals("orders(lines(product), notes)", FetchGraph.of("orders", FetchGraph.of("lines", "product")).with("notes").toString());
+    }
+}
@@ -3,6 +3,8 @@ package com.ajjpj.asqlmapper.demo.rel;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,13 +12,18 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import com.ajjpj.acollections.AList;
 import com.ajjpj.acollections.ASet;
+import com.ajjpj.acollections.immutable.AVector;
 import com.ajjpj.asqlmapper.AbstractDatabaseTest;
 import com.ajjpj.asqlmapper.SqlMapperBuilder;
+import com.ajjpj.asqlmapper.core.ACursor;
 import com.ajjpj.asqlmapper.core.SqlEngine;
+import com.ajjpj.asqlmapper.core.SqlSnippet;
 import com.ajjpj.asqlmapper.core.common.CollectionBuildStrategy;
 import com.ajjpj.asqlmapper.core.injectedproperties.InjectedToManyProperty;
+import com.ajjpj.asqlmapper.core.listener.SqlEngineEventListener;
 import com.ajjpj.asqlmapper.mapper.DatabaseDialect;
 import com.ajjpj.asqlmapper.mapper.SqlMapper;
+import com.ajjpj.asqlmapper.mapper.injectedproperties.RelationFetchMode;
 
 public class OneToManyDemoTest extends AbstractDatabaseTest  {
     private SqlMapper mapper;
@@ -116,4 +123,110 @@ public class OneToManyDemoTest extends AbstractDatabaseTest  {
             assertEquals(ASet.of(Address.of("street23", "city23"), Address.of("street22", "city22"), Address.of("street21", "city21")), persons.get(1).addresses().toSet());
         }
     }
+
+    @Test
+    void testOneToManyByKeys() {
+        final AList<Long> personIds = mapper
+                .insertMany(AList.of(Person.of(0L, "Arno1"), Person.of(0L, "Arno2"), Person.of(0L, "Albrecht")))
+                .map(Person::id);
+
+        mapper.engine().executeUpdate("insert into address(person_id, street, city) values (?,?,?)", personIds.get(0), "street11", "city11");
+        mapper.engine().executeUpdate("insert into address(person_id, street, city) values (?,?,?)", personIds.get(0), "street12", "city12");
+        mapper.engine().executeUpdate("insert into address(person_id, street, city) values (?,?,?)", personIds.get(1), "street21", "city21");
+
+        final SqlMapper keysMapper = new SqlMapperBuilder()
+                .withDefaultPkName("id")
+                .withDefaultConnectionSupplier(() -> conn)
+                .withBeanStyle(SqlMapperBuilder.BeanStyle.immutables)
+                .build(DatabaseDialect.H2);
+
+        final AList<PersonWithAddresses> persons = keysMapper
+                .query(PersonWithAddresses.class, "select * from person order by id asc")
+                .withOneToMany("addresses")
+                .list();
+
+        assertEquals(3, persons.size());
+        assertEquals(ASet.of(Address.of("street11", "city11"), Address.of("street12", "city12")), persons.get(0).addresses().toSet());
+        assertEquals(ASet.of(Address.of("street21", "city21")), persons.get(1).addresses().toSet());
+        assertEquals(ASet.empty(), persons.get(2).addresses().toSet());
+
+        final PersonWithAddresses first = mapper
+                .query(PersonWithAddresses.class, "select * from person order by id asc")
+                .withInjectedProperty(mapper.oneToMany("addresses").withFetchMode(RelationFetchMode.KEYS))
+                .first().get();
+        assertEquals(persons.get(0).addresses().toSet(), first.addresses().toSet());
+
+        assertEquals(persons, AVector.from(keysMapper
+                .query(PersonWithAddresses.class, "select * from person order by id asc")
+                .withOneToMany("addresses")
+                .stream()
+                .collect(Collectors.toList())));
+    }
+
+    @Test
+    void testStreamInWindows() {
+        final AList<Long> personIds = mapper
+                .insertMany(AList.of(Person.of(0L, "P1"), Person.of(0L, "P2"), Person.of(0L, "P3"), Person.of(0L, "P4"), Person.of(0L, "P5")))
+                .map(Person::id);
+        for (long personId : personIds) {
+            mapper.engine().executeUpdate("insert into address(person_id, street, city) values (?,?,?)", personId, "street" + personId, "city");
+        }
+        mapper.engine().executeUpdate("insert into address(person_id, street, city) values (?,?,?)", personIds.get(3), "other street", "city");
+
+        final AList<PersonWithAddresses> expected = mapper
+                .query(PersonWithAddresses.class, "select * from person order by id asc")
+                .withOneToMany("addresses")
+                .list();
+
+        for (int fetchSize = 1; fetchSize <= 6; fetchSize++) {
+            assertEquals(expected, AVector.from(mapper
+                    .query(PersonWithAddresses.class, "select * from person order by id asc")
+                    .withOneToMany("addresses")
+                    .stream(fetchSize)
+                    .collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    void testCursorLoadsRelationsPerWindow() {
+        final AtomicInteger numDetailQueries = new AtomicInteger();
+        final SqlMapper countingMapper = new SqlMapperBuilder()
+                .withDefaultPkName("id")
+                .withDefaultConnectionSupplier(() -> conn)
+                .withBeanStyle(SqlMapperBuilder.BeanStyle.immutables)
+                .withDefaultFetchSize(3)
+                .withListener(new SqlEngineEventListener() {
+                    @Override public void onBeforeQuery(SqlSnippet sql, Class<?> rowClass) {
+                        if (sql.getSql().toLowerCase().contains("from address")) {
+                            numDetailQueries.incrementAndGet();
+                        }
+                    }
+                })
+                .build(DatabaseDialect.H2);
+
+        final AList<Long> personIds = mapper
+                .insertMany(AList.of(Person.of(0L, "P1"), Person.of(0L, "P2"), Person.of(0L, "P3"), Person.of(0L, "P4"), Person.of(0L, "P5")))
+                .map(Person::id);
+        for (long personId : personIds) {
+            mapper.engine().executeUpdate("insert into address(person_id, street, city) values (?,?,?)", personId, "street" + personId, "city");
+        }
+
+        final AList<PersonWithAddresses> expected = mapper
+                .query(PersonWithAddresses.class, "select * from person order by id asc")
+                .withOneToMany("addresses")
+                .list();
+
+        // the window has the default fetch size regardless of the demand, so reading one row at a time takes a detail query per window
+        final AVector.Builder<PersonWithAddresses> actual = AVector.builder();
+        try (ACursor<PersonWithAddresses> cursor = countingMapper
+                .query(PersonWithAddresses.class, "select * from person order by id asc")
+                .withOneToMany("addresses")
+                .cursor()) {
+            while (!cursor.isExhausted()) {
+                actual.addAll(cursor.next(1));
+            }
+        }
+        assertEquals(expected, actual.build());
+        assertEquals(2, numDetailQueries.get());
+    }
 }
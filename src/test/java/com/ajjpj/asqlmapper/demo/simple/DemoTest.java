@@ -1,9 +1,19 @@
 package com.ajjpj.asqlmapper.demo.simple;
 
+import static com.ajjpj.acollections.util.AUnchecker.executeUnchecked;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import com.ajjpj.acollections.AList;
 import com.ajjpj.acollections.AMap;
 import com.ajjpj.asqlmapper.AbstractDatabaseTest;
 import com.ajjpj.asqlmapper.SqlMapperBuilder;
@@ -11,8 +21,16 @@ import com.ajjpj.asqlmapper.core.AQuery;
 import com.ajjpj.asqlmapper.core.SqlEngine;
 import com.ajjpj.asqlmapper.core.SqlSnippet;
 import com.ajjpj.asqlmapper.core.listener.LoggingListener;
+import com.ajjpj.asqlmapper.javabeans.annotations.Table;
+import com.ajjpj.asqlmapper.mapper.AKeysetScan;
+import com.ajjpj.asqlmapper.mapper.AMapperQuery;
+import com.ajjpj.asqlmapper.mapper.ChangeTracker;
 import com.ajjpj.asqlmapper.mapper.DatabaseDialect;
+import com.ajjpj.asqlmapper.mapper.IdentityMap;
 import com.ajjpj.asqlmapper.mapper.SqlMapper;
+import com.ajjpj.asqlmapper.mapper.UnitOfWork;
+import com.ajjpj.asqlmapper.mapper.beans.EntityCache;
+import com.ajjpj.asqlmapper.mapper.beans.primarykey.ManualPkStrategy;
 import lombok.Builder;
 import lombok.Value;
 import lombok.experimental.Wither;
@@ -29,6 +47,22 @@ class DemoTest extends AbstractDatabaseTest {
         String name;
     }
 
+    @SuppressWarnings("WeakerAccess")
+    @Value @Builder @Table("person_note")
+    static class PersonNote {
+        long id;
+        long personId;
+        @Wither String note;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Value @Builder @Table("product")
+    static class Product {
+        long id;
+        String name;
+        long revision;
+    }
+
     private SqlMapperBuilder builder = new SqlMapperBuilder()
             .withDefaultPkName("id")
             .withBeanStyle(SqlMapperBuilder.BeanStyle.lombok)
@@ -87,4 +121,388 @@ class DemoTest extends AbstractDatabaseTest {
         assertEquals(0L, engine.longQuery("select count(*) from person where id=?", 2).single().longValue());
         assertFalse(mapper.delete(Person.class, 2L));
     }
+
+    @Test
+    void testScan() throws SQLException {
+        final SqlMapper mapper = builder.build(DatabaseDialect.H2);
+
+        final List<Person> persons = new ArrayList<>();
+        for (int i=0; i<25; i++) {
+            persons.add(new Person(0, "Person " + i));
+        }
+        final List<Long> ids = mapper.insertMany(persons).stream().map(Person::getId).collect(Collectors.toList());
+
+        final AKeysetScan<Person> scan = mapper.scan(Person.class, SqlSnippet.sql("select * from person"), "id").pageSize(10);
+        assertEquals(ids, scan.stream(conn).map(Person::getId).collect(Collectors.toList()));
+        assertEquals(ids, scan.pageSize(5).stream(conn).map(Person::getId).collect(Collectors.toList()));
+        assertEquals(ids, scan.pageSize(100).stream(conn).map(Person::getId).collect(Collectors.toList()));
+
+        // prefetching reads pages on connections of their own, so it needs committed data
+        conn.commit();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (Stream<Person> s = scan.stream(executor, () -> executeUnchecked(() -> ds.getConnection()))) {
+            assertEquals(ids, s.map(Person::getId).collect(Collectors.toList()));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testInsertManyInChunks() {
+        final DatabaseDialect dialect = new DatabaseDialect.H2Dialect() {
+            @Override public int maxRowsPerInsert() {
+                return 4;
+            }
+        };
+        final SqlMapper mapper = builder.build(dialect);
+
+        final List<Person> persons = new ArrayList<>();
+        for (int i=0; i<10; i++) {
+            persons.add(new Person(0, "Person " + i));
+        }
+        final List<Person> inserted = mapper.insertMany(persons);
+        assertEquals(10, inserted.size());
+        for (int i=0; i<10; i++) {
+            assertEquals(new Person(i+1, "Person " + i), inserted.get(i));
+        }
+        assertEquals(10L, engine.longQuery("select count(*) from person").single().longValue());
+
+        final SqlMapper manualPkMapper = builder
+                .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                .build(dialect);
+        final List<Person> withPk = new ArrayList<>();
+        for (int i=0; i<10; i++) {
+            withPk.add(new Person(100+i, "Manual " + i));
+        }
+        assertEquals(withPk, manualPkMapper.insertMany(withPk));
+        assertEquals("Manual 9", engine.stringQuery("select name from person where id=?", 109).single());
+    }
+
+    @Test
+    void testUnitOfWork() throws SQLException {
+        executeUpdate("create table person_note(id bigint primary key, personId bigint references person, note varchar(200))");
+        try {
+            final SqlMapper mapper = builder
+                    .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                    .build(DatabaseDialect.H2);
+            mapper.insert(new Person(1, "Existing"));
+            mapper.insert(new Person(2, "Two"));
+            mapper.insert(new PersonNote(12, 2, "to be deleted"));
+
+            final UnitOfWork uow = mapper.unitOfWork(conn);
+
+            // the note is recorded before the person it references
+            uow.insert(new PersonNote(10, 5, "note"));
+            uow.insert(new Person(5, "Five"));
+
+            // insert and delete cancel each other out
+            uow.insert(new Person(6, "Six"));
+            uow.delete(new Person(6, "Six"));
+
+            // updates and patches are coalesced
+            uow.patch(Person.class, 1L, AMap.of("name", "A"));
+            uow.update(new Person(1, "B"));
+            uow.insert(new PersonNote(11, 5, "x"));
+            uow.patch(PersonNote.class, 11L, AMap.of("note", "y"));
+
+            // the note is deleted before the person it references
+            uow.delete(Person.class, 2L);
+            uow.delete(PersonNote.class, 12L);
+
+            assertEquals(6, uow.numPendingOperations());
+            assertEquals(AList.of(new Person(5, "Five"), new PersonNote(10, 5, "note"), new PersonNote(11, 5, "y")), uow.flush());
+            assertEquals(0, uow.numPendingOperations());
+
+            assertEquals(AList.of("B", "Five"), engine.stringQuery("select name from person order by id").list());
+            assertEquals(AList.of("note", "y"), engine.stringQuery("select note from person_note order by id").list());
+
+            // primary keys are compared after conversion to the property type, so a delete with an Integer key and an insert of the
+            //  same row merge into a replacement
+            uow.delete(Person.class, 1);
+            uow.insert(new Person(1, "C"));
+            uow.patch(Person.class, 1, AMap.of("name", "D"));
+            assertEquals(1, uow.numPendingOperations());
+            uow.flush();
+            assertEquals(AList.of("D", "Five"), engine.stringQuery("select name from person order by id").list());
+
+            // replacing a row that does not exist inserts it
+            uow.delete(Person.class, 7L);
+            uow.insert(new Person(7, "Seven"));
+            assertEquals(AList.of(new Person(7, "Seven")), uow.flush());
+            assertEquals(AList.of("D", "Five", "Seven"), engine.stringQuery("select name from person order by id").list());
+
+            // updates that match no row do not register their beans
+            try (IdentityMap identityMap = mapper.openIdentityMap(conn)) {
+                uow.update(new Person(99, "missing"));
+                uow.flush();
+                assertTrue(identityMap.get(Person.class, 99L).isEmpty());
+            }
+        }
+        finally {
+            executeUpdate("drop table person_note");
+        }
+    }
+
+    @Test
+    void testUpdateChanged() throws SQLException {
+        executeUpdate("create table person_note(id bigint primary key, personId bigint references person, note varchar(200))");
+        try {
+            final SqlMapper mapper = builder
+                    .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                    .build(DatabaseDialect.H2);
+            mapper.insert(new Person(1, "One"));
+            mapper.insert(new Person(2, "Two"));
+            mapper.insert(new PersonNote(10, 1, "note"));
+
+            final ChangeTracker tracker = mapper.changeTracker(conn);
+            final PersonNote loaded = mapper.query(PersonNote.class, "select * from person_note where id=?", 10).trackedBy(tracker).single();
+            assertTrue(tracker.isTracked(loaded));
+
+            // a concurrent change to a column that is not modified in the bean
+            executeUpdate("update person_note set personId=2 where id=10");
+
+            assertTrue(mapper.updateChanged(tracker, loaded.withNote("changed")));
+            assertEquals(AList.of(new PersonNote(10, 2, "changed")), mapper.query(PersonNote.class, "select * from person_note").list());
+
+            // nothing changed since the last update, so there is no update that would overwrite the database
+            executeUpdate("update person_note set note='other' where id=10");
+            assertTrue(mapper.updateChanged(tracker, loaded.withNote("changed")));
+            assertEquals(AList.of("other"), engine.stringQuery("select note from person_note").list());
+
+            // untracked beans are updated in full
+            tracker.clear();
+            assertTrue(mapper.updateChanged(tracker, loaded.withNote("full")));
+            assertEquals(AList.of(new PersonNote(10, 1, "full")), mapper.query(PersonNote.class, "select * from person_note").list());
+
+            // a bean whose row does not exist is not snapshotted
+            final PersonNote missing = new PersonNote(99, 1, "missing");
+            tracker.track(missing);
+            assertFalse(mapper.updateChanged(tracker, missing.withNote("changed")));
+            assertFalse(tracker.isTracked(missing));
+        }
+        finally {
+            executeUpdate("drop table person_note");
+        }
+    }
+
+    @Test
+    void testIdentityMap() throws SQLException {
+        executeUpdate("create table person_note(id bigint primary key, personId bigint references person, note varchar(200))");
+        try {
+            final SqlMapper mapper = builder
+                    .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                    .build(DatabaseDialect.H2);
+            mapper.insert(new Person(1, "One"));
+            mapper.insert(new PersonNote(10, 1, "note"));
+            mapper.insert(new PersonNote(11, 1, "other"));
+
+            final PersonNote loaded;
+            try (IdentityMap identityMap = mapper.openIdentityMap(conn)) {
+                loaded = mapper.query(PersonNote.class, "select * from person_note where id=?", 10).single();
+                assertSame(loaded, mapper.query(PersonNote.class, "select * from person_note order by id").list().head());
+                assertSame(loaded, identityMap.load(PersonNote.class, 10L).get());
+                assertEquals(2, identityMap.size());
+
+                mapper.patch(PersonNote.class, 10L, AMap.of("note", "patched"));
+                final PersonNote patched = identityMap.get(PersonNote.class, 10L).get();
+                assertEquals(new PersonNote(10, 1, "patched"), patched);
+                assertSame(patched, mapper.query(PersonNote.class, "select * from person_note where id=?", 10).single());
+
+                mapper.delete(PersonNote.class, 11L);
+                assertTrue(identityMap.get(PersonNote.class, 11L).isEmpty());
+
+                assertEquals(1, identityMap.size());
+
+                // primary keys are converted to the primary key property's type for all operations
+                mapper.insert(new PersonNote(12, 1, "int"));
+                final PersonNote intKeyed = identityMap.load(PersonNote.class, 12).get();
+                assertSame(intKeyed, identityMap.get(PersonNote.class, 12L).get());
+                mapper.patch(PersonNote.class, 12, AMap.of("note", "int patched"));
+                assertEquals("int patched", mapper.findByPk(conn, PersonNote.class, 12L).get().getNote());
+                mapper.delete(PersonNote.class, 12);
+                assertTrue(identityMap.get(PersonNote.class, 12).isEmpty());
+                assertTrue(mapper.findByPk(conn, PersonNote.class, 12L).isEmpty());
+
+                // updates that match no row do not register the bean
+                assertFalse(mapper.update(conn, new PersonNote(99, 1, "missing")));
+                assertTrue(identityMap.get(PersonNote.class, 99L).isEmpty());
+
+                assertEquals(1, identityMap.size());
+
+                identityMap.clear();
+                assertNotSame(patched, mapper.query(PersonNote.class, "select * from person_note where id=?", 10).single());
+            }
+
+            assertNotSame(mapper.query(PersonNote.class, "select * from person_note").single(), mapper.query(PersonNote.class, "select * from person_note").single());
+        }
+        finally {
+            executeUpdate("drop table person_note");
+        }
+    }
+
+    @Test
+    void testQueryCacheWithIdentityMap() throws SQLException {
+        final SqlMapper mapper = builder
+                .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                .withQueryCache(100, Duration.ofMinutes(1))
+                .build(DatabaseDialect.H2);
+        mapper.insert(new Person(1, "One"));
+        conn.commit();
+        mapper.engine().transactionEnded(conn);
+
+        final AMapperQuery<Person> query = mapper.query(Person.class, "select * from person where id=?", 1).cached("person");
+        final Person cached = query.single();
+        assertSame(cached, query.single());
+
+        // cached results would bypass the identity map and change tracking, so the cache is not used while either is attached
+        try (IdentityMap identityMap = mapper.openIdentityMap(conn)) {
+            final Person registered = query.single();
+            assertNotSame(cached, registered);
+            assertSame(registered, identityMap.get(Person.class, 1L).get());
+            assertSame(registered, query.single());
+        }
+
+        final ChangeTracker tracker = mapper.changeTracker(conn);
+        final Person tracked = query.trackedBy(tracker).single();
+        assertNotSame(cached, tracked);
+        assertTrue(tracker.isTracked(tracked));
+        assertSame(cached, query.single());
+    }
+
+    @Test
+    void testEntityCache() throws SQLException {
+        executeUpdate("create table product(id bigint primary key, name varchar(200), revision bigint)");
+        try {
+            final SqlMapper mapper = builder
+                    .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                    .withEntityCache(Product.class, new EntityCache(100, Duration.ofMinutes(10)).withVersionColumn("revision"))
+                    .build(DatabaseDialect.H2);
+            final EntityCache cache = mapper.getBeanMappingRegistry().entityCache(Product.class).get();
+            mapper.insert(new Product(1, "one", 1));
+            mapper.insert(new Product(2, "two", 1));
+
+            final Product loaded;
+            try (IdentityMap identityMap = mapper.openIdentityMap(conn)) {
+                loaded = identityMap.load(Product.class, 1).get();
+            }
+            try (IdentityMap identityMap = mapper.openIdentityMap(conn)) {
+                assertSame(loaded, identityMap.load(Product.class, 1L).get());
+            }
+            assertEquals(1, cache.size());
+            assertEquals(1, cache.statistics().numHits());
+            assertEquals(1, cache.statistics().numMisses());
+
+            // a change that bypasses the mapper is found by revalidation, and keys that are not cached are ignored
+            executeUpdate("update product set name='changed', revision=2 where id=1");
+            assertEquals(0, mapper.revalidateCached(Product.class, AList.of(2L)));
+            assertEquals(1, mapper.revalidateCached(Product.class, AList.of(1L, 2L)));
+            assertEquals(0, cache.size());
+
+            try (IdentityMap identityMap = mapper.openIdentityMap(conn)) {
+                assertEquals(new Product(1, "changed", 2), identityMap.load(Product.class, 1L).get());
+                assertEquals(0, mapper.revalidateCached(Product.class, AList.of(1L)));
+            }
+
+            // writes through the mapper invalidate cached beans
+            mapper.update(new Product(1, "updated", 3));
+            assertEquals(0, cache.size());
+            assertEquals(2, cache.statistics().numInvalidations());
+        }
+        finally {
+            executeUpdate("drop table product");
+        }
+    }
+
+    @Test
+    void testEntityCacheIgnoresUncommittedWrites() throws SQLException {
+        executeUpdate("create table product(id bigint primary key, name varchar(200), revision bigint)");
+        try {
+            final SqlMapper mapper = builder
+                    .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                    .withEntityCache(Product.class, new EntityCache(100, Duration.ofMinutes(10)))
+                    .build(DatabaseDialect.H2);
+            final EntityCache cache = mapper.getBeanMappingRegistry().entityCache(Product.class).get();
+            mapper.insert(new Product(1, "one", 1));
+            conn.commit();
+
+            // the writing connection sees its uncommitted change, but it does not go into the cache
+            mapper.update(new Product(1, "uncommitted", 2));
+            assertEquals("uncommitted", mapper.findByPk(conn, Product.class, 1L).get().getName());
+            assertEquals(0, cache.size());
+            conn.rollback();
+
+            try (Connection conn2 = ds.getConnection()) {
+                assertEquals("one", mapper.findByPk(conn2, Product.class, 1L).get().getName());
+                assertEquals("one", mapper.findByPk(conn2, Product.class, 1L).get().getName());
+            }
+            assertEquals(1, cache.statistics().numHits());
+
+            // the cache is bypassed for the writing connection until the end of its transaction is reported, which invalidates the
+            //  rows it wrote once more
+            assertEquals("one", mapper.findByPk(conn, Product.class, 1L).get().getName());
+            assertEquals(1, cache.statistics().numHits());
+            mapper.transactionEnded(conn);
+            assertEquals("one", mapper.findByPk(conn, Product.class, 1L).get().getName());
+            assertEquals("one", mapper.findByPk(conn, Product.class, 1L).get().getName());
+            assertEquals(2, cache.statistics().numHits());
+        }
+        finally {
+            executeUpdate("drop table product");
+        }
+    }
+
+    @Test
+    void testEntityCacheAfterConcurrentCommit() throws SQLException {
+        executeUpdate("create table product(id bigint primary key, name varchar(200), revision bigint)");
+        try {
+            final SqlMapper mapper = builder
+                    .withPkStrategyDecider((c, beanType, tableMetaData) -> new ManualPkStrategy())
+                    .withEntityCache(Product.class, new EntityCache(100, Duration.ofMinutes(10)))
+                    .build(DatabaseDialect.H2);
+            mapper.insert(new Product(1, "one", 1));
+            conn.commit();
+            mapper.transactionEnded(conn);
+
+            mapper.update(new Product(1, "updated", 2));
+            try (Connection conn2 = ds.getConnection()) {
+                // other transactions read the old row until the update is committed, and it goes into the cache...
+                assertEquals("one", mapper.findByPk(conn2, Product.class, 1L).get().getName());
+
+                // ... but committing the update invalidates it
+                conn.commit();
+                mapper.transactionEnded(conn);
+                assertEquals("updated", mapper.findByPk(conn2, Product.class, 1L).get().getName());
+            }
+        }
+        finally {
+            executeUpdate("drop table product");
+        }
+    }
+
+    @Test
+    void testFindByPk() {
+        final SqlMapper mapper = builder.build(DatabaseDialect.H2);
+        final List<Person> persons = new ArrayList<>();
+        for (int i=0; i<10; i++) {
+            persons.add(mapper.insert(Person.builder().name("Person " + i).build()));
+        }
+
+        assertEquals(persons.get(3), mapper.findByPk(Person.class, persons.get(3).getId()).get());
+        assertTrue(mapper.findByPk(Person.class, -1L).isEmpty());
+
+        // results are in input order, without duplicates and without keys that have no row
+        final List<Object> pks = AList.of(persons.get(5).getId(), -1L, (int) persons.get(2).getId(), persons.get(5).getId(), persons.get(7).getId());
+        assertEquals(AList.of(persons.get(5), persons.get(2), persons.get(7)), mapper.findAllByPk(Person.class, pks));
+        assertEquals(AList.of(persons.get(5).getId(), persons.get(2).getId(), persons.get(7).getId()),
+                AList.from(mapper.findAllByPkAsMap(Person.class, pks).keySet()));
+
+        // keys are split across statements based on the dialect's limit for bind parameters
+        final SqlMapper limitedMapper = builder.build(new DatabaseDialect.H2Dialect() {
+            @Override public int maxBindParameters() {
+                return 3;
+            }
+        });
+        assertEquals(AList.from(persons), limitedMapper.findAllByPk(Person.class, AList.from(persons).map(Person::getId)));
+    }
 }
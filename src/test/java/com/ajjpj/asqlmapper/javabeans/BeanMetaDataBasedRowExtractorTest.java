@@ -0,0 +1,86 @@
+package com.ajjpj.asqlmapper.javabeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import com.ajjpj.asqlmapper.AbstractDatabaseTest;
+import com.ajjpj.asqlmapper.core.PrimitiveTypeRegistry;
+import com.ajjpj.asqlmapper.core.common.LiveSqlRow;
+import com.ajjpj.asqlmapper.javabeans.columnnames.DirectColumnNameExtractor;
+import com.ajjpj.asqlmapper.javabeans.extractors.LombokWithBuilderMetaDataExtractor;
+import lombok.Builder;
+import lombok.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BeanMetaDataBasedRowExtractorTest extends AbstractDatabaseTest {
+    @Value @Builder
+    static class Person {
+        long id;
+        String name;
+    }
+
+    private final PrimitiveTypeRegistry primTypes = PrimitiveTypeRegistry.defaults();
+    private final BeanMetaDataBasedRowExtractor extractor =
+            new BeanMetaDataBasedRowExtractor(new BeanMetaDataRegistryImpl(new LombokWithBuilderMetaDataExtractor(new DirectColumnNameExtractor())));
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        executeUpdate("create table person(id bigint primary key, name varchar(200))");
+        executeUpdate("insert into person(id, name) values(1, 'Arno')");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        executeUpdate("drop table person");
+    }
+
+    private BeanMetaDataBasedRowExtractor.ExtractionPlan plan(String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            return ((BeanMetaDataBasedRowExtractor.Memento) extractor.mementoPerQuery(Person.class, primTypes, rs, false)).plan;
+        }
+    }
+
+    @Test
+    void testPlanIsSharedPerResultSetShape() throws SQLException {
+        final BeanMetaDataBasedRowExtractor.ExtractionPlan p1 = plan("select id, name from person");
+        final BeanMetaDataBasedRowExtractor.ExtractionPlan p2 = plan("select id, name from person");
+        final BeanMetaDataBasedRowExtractor.ExtractionPlan p3 = plan("select name, id from person");
+
+        assertSame(p1, p2);
+        assertNotSame(p1, p3);
+    }
+
+    @Test
+    void testPlanCacheIsBounded() throws SQLException {
+        for (int i=0; i<BeanMetaDataBasedRowExtractor.MAX_CACHED_PLANS + 10; i++) {
+            plan("select id, name, " + i + " as c" + i + " from person");
+        }
+        assertEquals(BeanMetaDataBasedRowExtractor.MAX_CACHED_PLANS, extractor.numCachedPlans());
+
+        final BeanMetaDataBasedRowExtractor.ExtractionPlan p1 = plan("select id, name from person");
+        assertSame(p1, plan("select id, name from person"));
+    }
+
+    @Test
+    void testUnmappedColumnsAreIgnored() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("select 99 as other, name, id from person"); ResultSet rs = ps.executeQuery()) {
+            final Object memento = extractor.mementoPerQuery(Person.class, primTypes, rs, false);
+            assertTrue(rs.next());
+            assertEquals(new Person(1, "Arno"), extractor.fromSql(Person.class, primTypes, new LiveSqlRow(primTypes, rs), memento, false, Collections.emptyMap()));
+        }
+    }
+
+    @Test
+    void testWithoutMemento() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("select * from person"); ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(new Person(1, "Arno"), extractor.fromSql(Person.class, primTypes, new LiveSqlRow(primTypes, rs), null, false, Collections.emptyMap()));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.ajjpj.asqlmapper.javabeans;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class PropertyAccessorsTest {
+    @SuppressWarnings("WeakerAccess")
+    public static class PublicBean {
+        private long id;
+        private String name;
+
+        public long getId() {
+            return id;
+        }
+        public void setId(long id) {
+            this.id = id;
+        }
+        public String getName() {
+            return name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+        public PublicBean withName(String name) {
+            final PublicBean result = new PublicBean();
+            result.id = id;
+            result.name = name;
+            return result;
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    static class HiddenBean {
+        private long id;
+        private String name;
+
+        public long getId() {
+            return id;
+        }
+        public void setId(long id) {
+            this.id = id;
+        }
+        public String getName() {
+            return name;
+        }
+        public HiddenBean withName(String name) {
+            final HiddenBean result = new HiddenBean();
+            result.id = id;
+            result.name = name;
+            return result;
+        }
+    }
+
+    @Test
+    void testPublicBeanUsesLambdaMetafactory() throws Exception {
+        final Function<Object,Object> idGetter = PropertyAccessors.getter(PublicBean.class.getMethod("getId"));
+        final BiFunction<Object,Object,Object> idSetter = PropertyAccessors.setter(PublicBean.class.getMethod("setId", long.class), false);
+        final Function<Object,Object> nameGetter = PropertyAccessors.getter(PublicBean.class.getMethod("getName"));
+        final BiFunction<Object,Object,Object> nameWither = PropertyAccessors.setter(PublicBean.class.getMethod("withName", String.class), true);
+
+        assertFalse(idGetter instanceof PropertyAccessors.ReflectiveGetter);
+        assertFalse(idSetter instanceof PropertyAccessors.ReflectiveSetter);
+        assertFalse(nameGetter instanceof PropertyAccessors.ReflectiveGetter);
+        assertFalse(nameWither instanceof PropertyAccessors.ReflectiveSetter);
+
+        final PublicBean bean = new PublicBean();
+        assertSame(bean, idSetter.apply(bean, 5L));
+        assertEquals(5L, idGetter.apply(bean));
+
+        final Object withName = nameWither.apply(bean, "Arno");
+        assertNotSame(bean, withName);
+        assertNull(nameGetter.apply(bean));
+        assertEquals("Arno", nameGetter.apply(withName));
+        assertEquals(5L, idGetter.apply(withName));
+    }
+
+    @Test
+    void testNonPublicBeanUsesReflection() throws Exception {
+        final Function<Object,Object> idGetter = PropertyAccessors.getter(HiddenBean.class.getMethod("getId"));
+        final BiFunction<Object,Object,Object> idSetter = PropertyAccessors.setter(HiddenBean.class.getMethod("setId", long.class), false);
+        final Function<Object,Object> nameGetter = PropertyAccessors.getter(HiddenBean.class.getMethod("getName"));
+        final BiFunction<Object,Object,Object> nameWither = PropertyAccessors.setter(HiddenBean.class.getMethod("withName", String.class), true);
+
+        assertTrue(idGetter instanceof PropertyAccessors.ReflectiveGetter);
+        assertTrue(idSetter instanceof PropertyAccessors.ReflectiveSetter);
+        assertTrue(nameGetter instanceof PropertyAccessors.ReflectiveGetter);
+        assertTrue(nameWither instanceof PropertyAccessors.ReflectiveSetter);
+
+        final HiddenBean bean = new HiddenBean();
+        assertSame(bean, idSetter.apply(bean, 5L));
+        assertEquals(5L, idGetter.apply(bean));
+
+        final Object withName = nameWither.apply(bean, "Arno");
+        assertNotSame(bean, withName);
+        assertNull(nameGetter.apply(bean));
+        assertEquals("Arno", nameGetter.apply(withName));
+        assertEquals(5L, idGetter.apply(withName));
+    }
+
+    @Test
+    void testSetterIgnoringResult() throws Exception {
+        final BiFunction<Object,Object,Object> wither = PropertyAccessors.setter(PublicBean.class.getMethod("withName", String.class), false);
+        final PublicBean bean = new PublicBean();
+        assertSame(bean, wither.apply(bean, "Arno"));
+    }
+}